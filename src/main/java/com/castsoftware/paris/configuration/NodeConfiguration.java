@@ -26,6 +26,8 @@ public class NodeConfiguration {
   private static final String NODE_LABEL = "ArtemisConfiguration";
   private static final String LAST_UPDATE_PROP = "LastUpdate";
   private static final String WORKSPACE_PROP = "Workspace";
+  private static final String KEY_PROP = "Key";
+  private static final String KEY_VALUE = "Paris";
   private static NodeConfiguration INSTANCE;
   private Node node;
   private Long lastUpdate;
@@ -34,7 +36,7 @@ public class NodeConfiguration {
   private NodeConfiguration(Node node) {
     this.node = node;
 
-    String workspace = Configuration.get("artemis.workspace.folder");
+    String workspace = Configuration.get("paris.workspace.folder");
     Long lastUpdate = 0L;
 
     if (!node.hasProperty(WORKSPACE_PROP)) {
@@ -65,7 +67,7 @@ public class NodeConfiguration {
       throws Neo4jQueryException, Neo4jBadRequestException {
     NodeConfiguration nc = NodeConfiguration.getInstance(neo4jAL);
 
-    if (nc.getWorkspace().isBlank()) return Path.of(Configuration.get("artemis.workspace.folder"));
+    if (nc.getWorkspace().isBlank()) return Path.of(Configuration.get("paris.workspace.folder"));
     return Path.of(nc.getWorkspace());
   }
 
@@ -97,8 +99,7 @@ public class NodeConfiguration {
    */
   private static NodeConfiguration retrieveConfiguration(Neo4jAL neo4jAL)
       throws Neo4jQueryException, Neo4jBadRequestException {
-    String req = String.format("MATCH (o:%s) RETURN o as node LIMIT 1", NODE_LABEL);
-    Result res = neo4jAL.executeQuery(req);
+    Result res = neo4jAL.executeQuery(getRetrieveRequest());
 
     // Create if not exists
     if (!res.hasNext()) return createConfiguration(neo4jAL);
@@ -152,14 +153,15 @@ public class NodeConfiguration {
    */
   private static NodeConfiguration createConfiguration(Neo4jAL neo4jAL)
       throws Neo4jQueryException, Neo4jBadRequestException {
-    String workspace = Configuration.get("artemis.workspace.folder");
+    String workspace = Configuration.get("paris.workspace.folder");
     Long lastUpdate = 0L;
 
     String req =
         String.format(
-            "MERGE (o:%s) SET o.%s=$workspace SET o.%s=$lastUpdate RETURN o as node",
-            NODE_LABEL, WORKSPACE_PROP, LAST_UPDATE_PROP);
-    Map<String, Object> params = Map.of("workspace", workspace, "lastUpdate", lastUpdate);
+            "MERGE (o:%s { %s:$key }) SET o.%s=$workspace SET o.%s=$lastUpdate RETURN o as node",
+            NODE_LABEL, KEY_PROP, WORKSPACE_PROP, LAST_UPDATE_PROP);
+    Map<String, Object> params =
+        Map.of("key", KEY_VALUE, "workspace", workspace, "lastUpdate", lastUpdate);
 
     Result res = neo4jAL.executeQuery(req, params);
     if (!res.hasNext())
@@ -171,6 +173,27 @@ public class NodeConfiguration {
     return new NodeConfiguration(n);
   }
 
+  /**
+   * Request used to retrieve the configuration node
+   *
+   * @return The request
+   */
+  public static String getRetrieveRequest() {
+    return String.format("MATCH (o:%s) RETURN o as node LIMIT 1", NODE_LABEL);
+  }
+
+  public static String getLabel() {
+    return NODE_LABEL;
+  }
+
+  public static String getKeyProperty() {
+    return KEY_PROP;
+  }
+
+  public static String getKeyValue() {
+    return KEY_VALUE;
+  }
+
   public Long getLastUpdate() {
     return lastUpdate;
   }
@@ -0,0 +1,88 @@
+package com.castsoftware.paris.controllers;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.metaLanguage.SimpleRequestCompiler;
+import com.castsoftware.paris.results.ColumnarCacheResult;
+import com.castsoftware.paris.utils.ColumnarCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ColumnarCacheController {
+
+	/**
+	 * Build the columnar cache of the objects of an application
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @param properties Properties to cache, the configured ones if empty
+	 * @return The description of the cache, empty if it exceeds the size bound
+	 */
+	public static List<ColumnarCacheResult> build(Neo4jAL neo4jAL, String application, List<String> properties) {
+		ColumnarCache cache = ColumnarCache.build(neo4jAL, application, properties);
+		return cache == null ? List.of() : List.of(new ColumnarCacheResult(cache));
+	}
+
+	/**
+	 * Get the ids of the objects matching a simple request, evaluated on the columnar cache. The cache is rebuilt if
+	 * the graph changed and the cache is enabled in the configuration.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @param request Request on a single node, with a filter on its labels and properties
+	 * @param returnValue Value returned by the request
+	 * @return The ids of the objects
+	 * @throws IllegalArgumentException If the request can't be evaluated on the cache
+	 */
+	public static List<Long> match(Neo4jAL neo4jAL, String application, String request, String returnValue) {
+		ColumnarCache cache = getCache(neo4jAL, application);
+		long[] ids = cache.match(compile(cache, request, returnValue)).toArray();
+		List<Long> results = new ArrayList<>(ids.length);
+		for (long id : ids) results.add(id);
+		return results;
+	}
+
+	/**
+	 * Count the objects matching a simple request, evaluated on the columnar cache
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @param request Request on a single node, with a filter on its labels and properties
+	 * @param returnValue Value returned by the request
+	 * @return The number of objects
+	 * @throws IllegalArgumentException If the request can't be evaluated on the cache
+	 */
+	public static Long count(Neo4jAL neo4jAL, String application, String request, String returnValue) {
+		ColumnarCache cache = getCache(neo4jAL, application);
+		return cache.count(compile(cache, request, returnValue));
+	}
+
+	/**
+	 * Drop the columnar cache of an application
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @return True if a cache was dropped
+	 */
+	public static Boolean drop(Neo4jAL neo4jAL, String application) {
+		return ColumnarCache.drop(neo4jAL, application);
+	}
+
+	private static ColumnarCache getCache(Neo4jAL neo4jAL, String application) {
+		ColumnarCache cache = ColumnarCache.getIfValid(neo4jAL, application);
+		if (cache == null) {
+			throw new IllegalArgumentException(String.format("No valid columnar cache for application '%s'. Build it first.", application));
+		}
+		return cache;
+	}
+
+	private static SimpleRequestCompiler.SimpleRequest compile(ColumnarCache cache, String request, String returnValue) {
+		SimpleRequestCompiler.SimpleRequest compiled = SimpleRequestCompiler.compile(request, returnValue);
+		if (compiled == null) {
+			throw new IllegalArgumentException(String.format("The request '%s' is not a simple request on a single node.", request));
+		}
+		if (!compiled.getLabels().contains(cache.getApplication())) {
+			throw new IllegalArgumentException(String.format("The request must match the label of the application '%s'.", cache.getApplication()));
+		}
+		if (!cache.covers(compiled)) {
+			throw new IllegalArgumentException(String.format("The columnar cache holds %s, the request reads %s.", cache.getProperties(), compiled.getProperties()));
+		}
+		return compiled;
+	}
+}
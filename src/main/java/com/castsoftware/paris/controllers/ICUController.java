@@ -0,0 +1,205 @@
+package com.castsoftware.paris.controllers;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ExtensionException;
+import com.castsoftware.paris.exceptions.file.FileIOException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.results.ICUResult;
+import com.castsoftware.paris.utils.IdBitmap;
+import com.castsoftware.paris.utils.TransactionMembershipCache;
+import com.castsoftware.paris.utils.Workspace;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class ICUController {
+
+	private static final String DELIMITER = Configuration.get("io.csv.delimiter");
+	private static final String EXTENSION = Configuration.get("io.csv.csv_extension");
+	private static final String REPORT_PREFIX = "ICU_Endpoints_";
+
+	private static final String PAGE_METHOD_REQUEST =
+			"MATCH (page:Object:ICU_Census)-[r]->(s:SubObject:ICU_Census)  "
+					+ "WHERE page.Type='Active Server PageX' AND s.Type='C# Method' "
+					+ "WITH page, s "
+					+ "MATCH (s)<-[:Contains]-(t:Transaction)-[:EndsWith]->(endPoint:TransactionNode) "
+					+ "WHERE (t)-[:Contains]->(:Object) "
+					+ "WITH page, s, t as tran, endPoint "
+					+ "OPTIONAL MATCH (endPoint)<-[:OUT]-(oEnd:Object) "
+					+ "OPTIONAL MATCH (endPoint)<-[:OUT]-(sub:SubObject)-[:BELONGTO]->(oEnd:Object) "
+					+ "RETURN page as page, s as method, ID(tran) as transaction, COLLECT(DISTINCT oEnd) as endPoints  ";
+
+	/**
+	 * Get the end points reachable from the methods of the ICU pages. The rows are computed and written
+	 * to the report one at a time, as the stream is consumed. A failure while iterating is raised as an
+	 * IllegalStateException caused by the error of the controller. Closing the stream releases the
+	 * result of the request and the report.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param exportCsv If true, the rows are also written to a CSV report in the workspace
+	 * @return Stream of rows (page, method, number of end points, end points)
+	 * @throws Neo4jQueryException If the request failed
+	 * @throws FileIOException If the report cannot be created
+	 */
+	public static Stream<ICUResult> getPageMethodEndpoints(Neo4jAL neo4jAL, Boolean exportCsv) throws Neo4jQueryException, FileIOException {
+		Path report = null;
+		BufferedWriter writer = null;
+		if (exportCsv) {
+			report = Workspace.getReportFolder(neo4jAL)
+					.resolve(REPORT_PREFIX + System.currentTimeMillis() + EXTENSION);
+			try {
+				writer = Files.newBufferedWriter(report, StandardCharsets.UTF_8);
+				writer.write(String.join(DELIMITER, "Page Name", "Method Name", "Number of End points", "End Points"));
+				writer.newLine();
+			} catch (IOException e) {
+				if (writer != null) closeReport(neo4jAL, writer, report);
+				throw new FileIOException("Failed to create the ICU report.", report.toString(), e, "ICUCxGPME1");
+			}
+			neo4jAL.logInfo(String.format("ICU report will be written to '%s'.", report.toString()));
+		}
+
+		Result results;
+		try {
+			results = neo4jAL.executeQuery(PAGE_METHOD_REQUEST);
+		} catch (Neo4jQueryException e) {
+			if (writer != null) closeReport(neo4jAL, writer, report);
+			throw e;
+		}
+
+		// Membership of the transactions, shared by all the rows of the run
+		TransactionMembershipCache memberships = new TransactionMembershipCache(neo4jAL);
+		BufferedWriter out = writer;
+		Path file = report;
+
+		Iterator<ICUResult> it = new Iterator<ICUResult>() {
+			@Override
+			public boolean hasNext() {
+				try {
+					return results.hasNext();
+				} catch (RuntimeException e) {
+					throw failure(new Neo4jQueryException("Failed to read the ICU pages.", PAGE_METHOD_REQUEST, e, "ICUCxGPME3"));
+				}
+			}
+
+			@Override
+			public ICUResult next() {
+				if (!hasNext()) throw new NoSuchElementException();
+				try {
+					ICUResult row = processRow(memberships, results.next());
+					if (out != null) writeRow(out, row);
+					return row;
+				} catch (UncheckedIOException e) {
+					throw failure(new FileIOException("Failed to write the ICU report.", file.toString(), e.getCause(), "ICUCxGPME2"));
+				} catch (RuntimeException e) {
+					throw failure(new Neo4jQueryException("Failed to process the ICU pages.", PAGE_METHOD_REQUEST, e, "ICUCxGPME3"));
+				}
+			}
+		};
+
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+				.onClose(() -> {
+					results.close();
+					if (out != null) closeReport(neo4jAL, out, file);
+					neo4jAL.logInfo("ICU analysis done. " + memberships.toString());
+				});
+	}
+
+	// Error raised while the stream is consumed, carrying the error of the controller
+	private static IllegalStateException failure(ExtensionException e) {
+		return new IllegalStateException(e.getMessage(), e);
+	}
+
+	/**
+	 * Restrict the end points of a row to the ones reachable from the method through the objects of
+	 * the transaction
+	 * @param memberships Objects contained by each transaction
+	 * @param row Row returned by the page/method request
+	 * @return The result of the row
+	 */
+	@SuppressWarnings("unchecked")
+	private static ICUResult processRow(TransactionMembershipCache memberships, Map<String, Object> row) {
+		Node page = (Node) row.get("page");
+		Node method = (Node) row.get("method");
+
+		IdBitmap transactionObjects = memberships.getObjects((Long) row.get("transaction"));
+
+		IdBitmap endPoints = new IdBitmap();
+		for (Node n : (List<Node>) row.get("endPoints")) endPoints.add(n.getId());
+
+		List<String> reached = new ArrayList<>();
+		IdBitmap reachedIds = new IdBitmap();
+		IdBitmap visited = new IdBitmap();
+		Deque<Node> toVisit = new ArrayDeque<>();
+
+		// Start with the method and parse the objects in the transaction
+		visited.add(method.getId());
+		for (Relationship rel : method.getRelationships(Direction.OUTGOING)) {
+			Node end = rel.getEndNode();
+			if (transactionObjects.contains(end.getId())) toVisit.push(end);
+		}
+
+		while (!toVisit.isEmpty()) {
+			Node voyager = toVisit.pop();
+			if (!visited.add(voyager.getId())) continue; // Skip if already visited
+
+			for (Relationship rel : voyager.getRelationships(Direction.OUTGOING)) {
+				long endId = rel.getEndNodeId();
+
+				if (transactionObjects.contains(endId) && !visited.contains(endId)) {
+					toVisit.push(rel.getEndNode());
+				}
+
+				if (endPoints.contains(endId) && reachedIds.add(endId)) {
+					Node end = rel.getEndNode();
+					reached.add(String.format("Name : %s - Type : %s", end.getProperty("Name", ""), end.getProperty("Type", "")));
+				}
+			}
+		}
+
+		return new ICUResult((String) page.getProperty("Name", ""), (String) method.getProperty("Name", ""), reached);
+	}
+
+	private static void writeRow(BufferedWriter writer, ICUResult row) {
+		try {
+			writer.write(String.join(DELIMITER,
+					escapeCsv(row.page),
+					escapeCsv(row.method),
+					String.valueOf(row.endpointCount),
+					escapeCsv("[ " + String.join(", ", row.endpoints) + " ]")));
+			writer.newLine();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void closeReport(Neo4jAL neo4jAL, BufferedWriter writer, Path report) {
+		try {
+			writer.close();
+		} catch (IOException e) {
+			neo4jAL.logError(String.format("Failed to close the ICU report '%s'.", report.toString()), e);
+		}
+	}
+
+	private static String escapeCsv(String value) {
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+}
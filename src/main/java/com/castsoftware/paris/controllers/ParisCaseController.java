@@ -3,18 +3,33 @@ package com.castsoftware.paris.controllers;
 import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.paris.models.Case.Case;
+import com.castsoftware.paris.models.Case.CaseHierarchy;
 import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.models.Group.GroupType;
+import com.castsoftware.paris.results.CaseHierarchyResult;
+import com.castsoftware.paris.results.CaseTreeResult;
+import com.castsoftware.paris.utils.CategoryIndex;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class ParisCaseController {
 
+	private static final String TREE_CASE_KIND = "Case";
+	private static final String TREE_GROUP_KIND = "Group";
+	private static final String TREE_CYCLE_MARKER = "cycle";
+
 	// Get all Diocase
 
 	/**
@@ -39,15 +54,43 @@ public class ParisCaseController {
 	 * @throws Neo4jQueryException
 	 */
 	public static List<String> getAllCaseCategories(Neo4jAL neo4jAL) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s) UNWIND o.%2$s as x RETURN DISTINCT x as cat", Case.getLabelPropertyAsString(), Case.getCategoriesProperty());
-		Result result = neo4jAL.executeQuery(req);
+		return getCategoryIndex(neo4jAL).getCategories();
+	}
 
-		List<String> categories = new ArrayList<>();
-		while (result.hasNext()) {
-			categories.add((String) result.next().get("cat"));
+	/**
+	 * Get the categories of the cases starting with a prefix ( case insensitive )
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param prefix Beginning of the category
+	 * @param limit Maximum number of categories returned
+	 * @return The list of categories, sorted
+	 * @throws Neo4jQueryException
+	 */
+	public static List<String> searchCaseCategories(Neo4jAL neo4jAL, String prefix, Long limit) throws Neo4jQueryException {
+		return getCategoryIndex(neo4jAL).getCategories(prefix, limit);
+	}
+
+	/**
+	 * Get the cases related to one category
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param category Category
+	 * @return The list of cases
+	 * @throws Neo4jQueryException
+	 */
+	public static List<Case> getCasesByCategory(Neo4jAL neo4jAL, String category) throws Neo4jQueryException {
+		CategoryIndex index = getCategoryIndex(neo4jAL);
+		List<Case> retList = new ArrayList<>();
+
+		for (Long id : index.getIds(category)) {
+			Node n = neo4jAL.getNodeById(id);
+			Case c = n == null ? null : Case.fromNode(n);
+			if (c != null) retList.add(c); // Null if deleted by the current transaction
 		}
 
-		return categories;
+		return retList;
+	}
+
+	private static CategoryIndex getCategoryIndex(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		return CategoryIndex.getInstance(neo4jAL, Case.getLabelProperty(), Case.getCategoriesProperty());
 	}
 
 	/**
@@ -237,17 +280,10 @@ public class ParisCaseController {
 	 * @throws Neo4jQueryException
 	 */
 	public static List<Case> getAttachedCases(Neo4jAL neo4jAL, Long idUseCase) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s)-[:%2$s]->(g:%3$s) WHERE ID(o)=$idUseCase RETURN g as node",
-				Case.getLabelPropertyAsString(),
-				Case.getToCaseRelationship() , Case.getLabelPropertyAsString()
-		);
-		Map<String, Object> params = Map.of("idUseCase", idUseCase);
-
 		List<Case> returnList = new ArrayList<>();
-		Result res = neo4jAL.executeQuery(req, params);
-		while(res.hasNext()) {
-			Node n = (Node) res.next().get("node");
-			returnList.add(Case.fromNode(n));
+		for (Long id : CaseHierarchy.getInstance(neo4jAL).getChildCases(idUseCase)) {
+			Case c = getCaseFromHierarchy(neo4jAL, id);
+			if (c != null) returnList.add(c);
 		}
 
 		return returnList;
@@ -261,17 +297,12 @@ public class ParisCaseController {
 	 * @throws Neo4jQueryException
 	 */
 	public static List<Group> getAttachedGroups(Neo4jAL neo4jAL, Long idUseCase) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s)<-[:%2$s]-(g:%3$s) WHERE ID(o)=$idUseCase RETURN g as node",
-				Case.getLabelPropertyAsString(),
-				Group.getToDiocaseRelationship() , Group.getLabelPropertyAsString()
-		);
-		Map<String, Object> params = Map.of("idUseCase", idUseCase);
-
 		List<Group> returnList = new ArrayList<>();
-		Result res = neo4jAL.executeQuery(req, params);
-		while(res.hasNext()) {
-			Node n = (Node) res.next().get("node");
-			returnList.add(Group.fromNode(n));
+		for (Long id : CaseHierarchy.getInstance(neo4jAL).getChildGroups(idUseCase)) {
+			Node n = neo4jAL.getNodeById(id);
+			Group g = n == null ? null : Group.fromNode(n);
+
+			if (g != null) returnList.add(g); // Null if deleted by the current transaction
 		}
 
 		return returnList;
@@ -284,36 +315,171 @@ public class ParisCaseController {
 	 * @throws Neo4jQueryException
 	 */
 	public static List<Case> getRootCase(Neo4jAL neo4jAL) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s) WHERE NOT (o)<-[]-(:%1$s) " +
-						"RETURN o as node", Case.getLabelPropertyAsString()
-		);
-
 		List<Case> returnList = new ArrayList<>();
-		Result res = neo4jAL.executeQuery(req);
-		while(res.hasNext()) {
-			Node n = (Node) res.next().get("node");
-			returnList.add(Case.fromNode(n));
+		for (Long id : CaseHierarchy.getInstance(neo4jAL).getRootCases()) {
+			Case c = getCaseFromHierarchy(neo4jAL, id);
+			if (c != null) returnList.add(c);
+		}
+
+		return returnList;
+	}
+
+	/**
+	 * Get the whole hierarchy of cases in one call. Each case is returned with its parents, its child
+	 * cases and the groups attached to it.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return The adjacency of every case
+	 * @throws Neo4jQueryException
+	 */
+	public static List<CaseHierarchyResult> getHierarchy(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		CaseHierarchy hierarchy = CaseHierarchy.getInstance(neo4jAL);
+		List<CaseHierarchyResult> returnList = new ArrayList<>();
+
+		for (Long id : hierarchy.getCases()) {
+			Case c = getCaseFromHierarchy(neo4jAL, id);
+			if (c == null) continue;
+
+			returnList.add(new CaseHierarchyResult(c,
+					hierarchy.getParentCases(id),
+					hierarchy.getChildCases(id),
+					hierarchy.getChildGroups(id)));
 		}
 
 		return returnList;
 	}
 
 	/**
-	 * Detach  a Group  from a Case
+	 * Flatten the whole tree of cases and groups in pre-order. Each row references the id of its parent
+	 * (-1 for the roots) so the tree can be rebuilt from a single response. The cases only reachable
+	 * through a cycle of INCLUDES have no root : each such cycle is walked from its first case, emitted
+	 * as a root whose payload holds the cycle marker.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return The rows of the tree in pre-order
+	 * @throws Neo4jQueryException
+	 */
+	public static List<CaseTreeResult> getTree(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		CaseHierarchy hierarchy = CaseHierarchy.getInstance(neo4jAL);
+		List<CaseTreeResult> rows = new ArrayList<>();
+		Set<Long> visited = new HashSet<>();
+
+		for (Long root : hierarchy.getRootCases()) walkTree(neo4jAL, hierarchy, root, false, visited, rows);
+
+		// Cases left unvisited by the roots
+		for (Long id : hierarchy.getCases()) {
+			if (!visited.contains(id)) walkTree(neo4jAL, hierarchy, id, true, visited, rows);
+		}
+		return rows;
+	}
+
+	/**
+	 * Walk the tree below a case in pre-order, and add the cases visited to the set
+	 */
+	private static void walkTree(Neo4jAL neo4jAL, CaseHierarchy hierarchy, Long start, boolean cycle,
+								 Set<Long> visited, List<CaseTreeResult> rows) throws Neo4jQueryException {
+		// Elements to visit : { id, parent id, depth, is a case }
+		Deque<long[]> toVisit = new ArrayDeque<>();
+		toVisit.push(new long[] {start, -1L, 0L, 1L});
+
+		// Cases on the current path, protects against cycles of INCLUDES
+		Deque<Long> path = new ArrayDeque<>();
+
+		while (!toVisit.isEmpty()) {
+			long[] current = toVisit.pop();
+			long id = current[0];
+			long depth = current[2];
+
+			while (path.size() > depth) path.pop();
+
+			Node n = neo4jAL.getNodeById(id);
+			if (n == null) continue;
+
+			if (current[3] == 0L) {
+				Group g = Group.fromNode(n);
+				if (g != null) rows.add(new CaseTreeResult(id, current[1], depth, TREE_GROUP_KIND, getGroupPayload(g)));
+				continue;
+			}
+
+			Case c = Case.fromNode(n);
+			if (c == null || path.contains(id)) continue;
+
+			Map<String, Object> payload = getCasePayload(c);
+			if (cycle && depth == 0L) payload.put(TREE_CYCLE_MARKER, true);
+			rows.add(new CaseTreeResult(id, current[1], depth, TREE_CASE_KIND, payload));
+			visited.add(id);
+			path.push(id);
+
+			// Push in reverse order to keep the order of the hierarchy : cases first, then groups
+			List<Long> groups = hierarchy.getChildGroups(id);
+			for (int i = groups.size() - 1; i >= 0; i--) toVisit.push(new long[] {groups.get(i), id, depth + 1, 0L});
+
+			List<Long> cases = hierarchy.getChildCases(id);
+			for (int i = cases.size() - 1; i >= 0; i--) toVisit.push(new long[] {cases.get(i), id, depth + 1, 1L});
+		}
+	}
+
+	private static Map<String, Object> getCasePayload(Case c) {
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("title", c.getTitle());
+		payload.put("description", c.getDescription());
+		payload.put("categories", c.getCategories());
+		payload.put("active", c.getActive());
+		payload.put("selected", c.getSelected());
+		return payload;
+	}
+
+	private static Map<String, Object> getGroupPayload(Group g) {
+		Map<String, Object> payload = new HashMap<>();
+		payload.put("name", g.getName());
+		payload.put("groupName", g.getGroupName());
+		payload.put("description", g.getDescription());
+		payload.put("categories", g.getCategories());
+		payload.put("creationDate", g.getCreationDate());
+		payload.put("cypherRequest", g.getCypherRequest());
+		payload.put("cypherRequestReturn", g.getCypherRequestReturn());
+		payload.put("active", g.getActive());
+		payload.put("selected", g.getSelected());
+		payload.put("types", g.getTypes().stream().map(GroupType::toString).collect(Collectors.toList()));
+		return payload;
+	}
+
+	/**
+	 * Drop the cached hierarchy of cases and the category indexes, they will be reloaded from the database at the next call
+	 * @param neo4jAL Neo4j Access Layer
+	 */
+	public static void refreshHierarchy(Neo4jAL neo4jAL) {
+		CaseHierarchy.invalidate(neo4jAL);
+		CategoryIndex.invalidate(neo4jAL);
+	}
+
+	/**
+	 * Get a case referenced by the hierarchy. The hierarchy only holds committed cases, the node may
+	 * have been deleted by the current transaction.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param id Id of the case
+	 * @return The case, null if the node wasn't found
+	 * @throws Neo4jQueryException
+	 */
+	private static Case getCaseFromHierarchy(Neo4jAL neo4jAL, Long id) throws Neo4jQueryException {
+		Node n = neo4jAL.getNodeById(id);
+		return n == null ? null : Case.fromNode(n);
+	}
+
+	/**
+	 * Detach a Case from its parent Case
 	 * @param neo4jAL Neo4j Access Layer
 	 * @param idParent Id of the parent Case
 	 * @param idChild Id of the Children
-	 * @return
+	 * @return True if a relationship was removed
 	 * @throws Neo4jQueryException
 	 */
-	public static Relationship detachFromCase(Neo4jAL neo4jAL, Long idParent, Long idChild) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s)-[r:%2$s]->(g:%3$s) WHERE ID(o)=$idParent AND WHERE ID(g)=$idChild " +
-				"RETURN r as rel;", Case.getLabelPropertyAsString(),  Case.getToCaseRelationship(), Case.getLabelPropertyAsString());
+	public static Boolean detachFromCase(Neo4jAL neo4jAL, Long idParent, Long idChild) throws Neo4jQueryException {
+		String req = String.format("MATCH (o:%1$s)-[r:%2$s]->(g:%3$s) WHERE ID(o)=$idParent AND ID(g)=$idChild " +
+				"DELETE r RETURN COUNT(r) as deleted;", Case.getLabelPropertyAsString(),  Case.getToCaseRelationship(), Case.getLabelPropertyAsString());
 		Map<String, Object> params = Map.of("idParent", idParent, "idChild", idChild);
 		Result res = neo4jAL.executeQuery(req, params);
 
-		if(!res.hasNext()) return null;
+		if(!res.hasNext() || (Long) res.next().get("deleted") == 0) return false;
 
-		return (Relationship) res.next().get("rel");
+		return true;
 	}
 }
@@ -1,16 +1,59 @@
 package com.castsoftware.paris.controllers;
 
+import com.castsoftware.paris.configuration.Configuration;
 import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.paris.metaLanguage.MetaLanguageProcessor;
 import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.RequestLinter;
+import com.castsoftware.paris.metaLanguage.RequestNormalizer;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+import org.neo4j.graphdb.Result;
 
-import java.util.regex.Matcher;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class ParisCypherRequestsController {
 
+	private static final String VALIDATION_APPLICATION = "Test";
+	private static final String ESTIMATED_ROWS_ARGUMENT = "EstimatedRows";
+
+	// Semi-colons separating the statements, outside of the strings
+	private static final Pattern STATEMENT_SEPARATOR = Pattern.compile("(?!\\B\"[^\"]*);(?![^\"]*\"\\B)(?![\\s]*$)");
+
+	private static final int CACHE_MAX_ENTRIES = Integer.parseInt(Configuration.get("paris.validation.cache.max_entries"));
+
+	// Verdicts by database and hash of the normalized request, least recently used evicted first
+	private static final Map<String, Verdict> VERDICTS = new LinkedHashMap<>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Verdict> eldest) {
+			return size() > CACHE_MAX_ENTRIES;
+		}
+	};
+
+	/**
+	 * Result of the validation of a request
+	 */
+	public static class Verdict {
+		public final boolean valid;
+		public final String error;
+		public final long estimatedRows;
+
+		private Verdict(boolean valid, String error, long estimatedRows) {
+			this.valid = valid;
+			this.error = error;
+			this.estimatedRows = estimatedRows;
+		}
+
+		private static Verdict invalid(String error) {
+			return new Verdict(false, error, 0L);
+		}
+	}
+
 	/**
 	 * Check the validity of a query before the insertion in the database
 	 * @param neo4jAL
@@ -19,52 +62,126 @@ public class ParisCypherRequestsController {
 	 * @return
 	 */
 	public static Boolean checkValidityRequest(Neo4jAL neo4jAL, String request, String awaitedReturn) {
-		neo4jAL.logInfo(String.format("Submitting the query '%s' for verification.", request));
-		// Add a first explain and after all the semi-colons to prevent the execution of the query);
+		Verdict verdict = validateRequest(neo4jAL, request, awaitedReturn);
+		if (!verdict.valid) {
+			neo4jAL.logInfo(String.format("The query '%s' doesn't seem to be valid : %s", request, verdict.error));
+		}
+		return verdict.valid;
+	}
+
+	/**
+	 * Validate a request without executing it. Each statement is planned with EXPLAIN, and the awaited
+	 * return must be one of the columns of the plan. The verdicts are cached by the hash of the
+	 * normalized request, so two requests differing only by their layout are validated once.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param request Request to validate
+	 * @param awaitedReturn Name of the column returned
+	 * @return The verdict, with the rows estimated by the planner
+	 */
+	public static Verdict validateRequest(Neo4jAL neo4jAL, String request, String awaitedReturn) {
+		return validateRequest(neo4jAL, request, awaitedReturn, VALIDATION_APPLICATION, true);
+	}
+
+	/**
+	 * Validate a request forged for an application, without executing it
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param request Request to validate
+	 * @param awaitedReturn Name of the column returned
+	 * @param application Name of the application used to forge the request, a test name if empty
+	 * @param useCache False to plan the request again, the new verdict replaces the cached one
+	 * @return The verdict, with the rows estimated by the planner
+	 */
+	public static Verdict validateRequest(Neo4jAL neo4jAL, String request, String awaitedReturn, String application, boolean useCache) {
+		String app = application == null || application.isBlank() ? VALIDATION_APPLICATION : application;
+		String key = neo4jAL.getDb().databaseName() + "::" + RequestNormalizer.hash(request, awaitedReturn, app);
+		if (useCache) {
+			synchronized (VERDICTS) {
+				Verdict cached = VERDICTS.get(key);
+				if (cached != null) return cached;
+			}
+		}
 
-    	String[] splitQuery = request.split("(?!\\B\"[^\"]*);(?![^\"]*\"\\B)(?![\\s]*$)");
+		Verdict verdict = explain(neo4jAL, request, awaitedReturn, app);
+		synchronized (VERDICTS) {
+			VERDICTS.put(key, verdict);
+		}
+		return verdict;
+	}
 
+	/**
+	 * Drop the cached verdicts, to validate the requests again after a change of the schema
+	 */
+	public static void clearValidationCache() {
+		synchronized (VERDICTS) {
+			VERDICTS.clear();
+		}
+	}
 
-		for(String req : splitQuery) {
+	private static Verdict explain(Neo4jAL neo4jAL, String request, String awaitedReturn, String application) {
+		if (request == null || request.isBlank()) return Verdict.invalid("The request is empty.");
 
-			String toExecute = String.format("Explain %s", req);
-      		// Verify the presence of a return value
-			String regexReturn = "as[\\s]+([\\w]*)(?:[\\s]*(?:;|,|$))";
-			Pattern pattern = Pattern.compile(regexReturn);
-			Matcher matcher = pattern.matcher(toExecute);
+		long estimatedRows = 0L;
+		for (String req : STATEMENT_SEPARATOR.split(request)) {
+			if (req.isBlank()) continue;
 
-			// If no return value is found, return invalid query
-			boolean found = false;
-			while (matcher.find()) {
-				System.out.println("Full return match: " + matcher.group(0));
+			MetaRequest forged;
+			try {
+				forged = MetaLanguageProcessor.forgeRequest(req, awaitedReturn, application);
+			} catch (Neo4JTemplateLanguageException e) {
+				return Verdict.invalid(e.getMessage());
+			}
+			if (forged == null) return Verdict.invalid("The request is empty.");
 
-				for (int i = 1; i <= matcher.groupCount(); i++) {
-					System.out.println("Group " + i + ": " + matcher.group(i));
-					if (matcher.group(i).equals(awaitedReturn)) {
-						found = true;
-						break;
-					}
+			// Only planned, never executed
+			try (Result res = neo4jAL.executeQuery("EXPLAIN " + RequestNormalizer.stripTerminator(forged.getRequest()))) {
+				if (!res.columns().contains(awaitedReturn)) {
+					return Verdict.invalid(String.format("No return matching '%s' was found. Columns returned : %s.", awaitedReturn, String.join(", ", res.columns())));
 				}
+				estimatedRows = Math.max(estimatedRows, getEstimatedRows(res.getExecutionPlanDescription()));
+			} catch (Neo4jQueryException e) {
+				return Verdict.invalid(e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
 			}
+		}
 
-			// Mark as failed if no return was found
-			if(!found) {
-				neo4jAL.logInfo(String.format("No return matching '%s' was found.", awaitedReturn));
-				return false;
-			}
+		return new Verdict(true, "", estimatedRows);
+	}
 
-			try {
-				MetaRequest forged = MetaLanguageProcessor.forgeRequest(req, awaitedReturn, "Test");
-				if(forged == null) return false;
+	/**
+	 * Lint the plan of a request, to find the patterns known to be slow. Each statement is forged and
+	 * planned with EXPLAIN, the statements which can't be planned are ignored : they are reported by the
+	 * validation.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param request Request to lint
+	 * @param awaitedReturn Name of the column returned
+	 * @param application Name of the application used to forge the request, a test name if empty
+	 * @return The findings of all the statements
+	 */
+	public static List<RequestLinter.Finding> lintRequest(Neo4jAL neo4jAL, String request, String awaitedReturn, String application) {
+		List<RequestLinter.Finding> findings = new ArrayList<>();
+		if (request == null || request.isBlank()) return findings;
+		String app = application == null || application.isBlank() ? VALIDATION_APPLICATION : application;
 
-				neo4jAL.executeQuery(forged.getRequest());
+		for (String req : STATEMENT_SEPARATOR.split(request)) {
+			if (req.isBlank()) continue;
+			try {
+				MetaRequest forged = MetaLanguageProcessor.forgeRequest(req, awaitedReturn, app);
+				if (forged == null) continue;
+				findings.addAll(RequestLinter.lint(neo4jAL.explainQuery(RequestNormalizer.stripTerminator(forged.getRequest()))));
 			} catch (Neo4JTemplateLanguageException | Neo4jQueryException e) {
-				neo4jAL.logError(String.format("The query '%s' doesn't seem to be valid.", request), e);
-				return false;
+				neo4jAL.logInfo(String.format("The statement '%s' couldn't be planned and wasn't linted : %s", req, e.getMessage()));
 			}
 		}
+		return findings;
+	}
 
-		// All the tests were passed successfully
-		return true;
+	/**
+	 * Get the number of rows estimated by the planner at the root of a plan
+	 * @param plan Plan of the request
+	 * @return The rows estimated, 0 if not available
+	 */
+	public static long getEstimatedRows(ExecutionPlanDescription plan) {
+		if (plan == null) return 0L;
+		Object estimated = plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+		return estimated instanceof Number ? Math.round(((Number) estimated).doubleValue()) : 0L;
 	}
 }
@@ -1,24 +1,63 @@
 package com.castsoftware.paris.controllers;
 
+import com.castsoftware.paris.configuration.Configuration;
 import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ExtensionException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.RequestLinter;
+import com.castsoftware.paris.metaLanguage.RequestNormalizer;
 import com.castsoftware.paris.models.Case.Case;
+import com.castsoftware.paris.models.Group.CostEstimator;
+import com.castsoftware.paris.models.Group.ExecutionBudget;
+import com.castsoftware.paris.models.Group.ForecastCache;
+import com.castsoftware.paris.models.Group.FusedScanEngine;
 import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.models.Group.GroupDependencyGraph;
+import com.castsoftware.paris.models.Group.GroupRunner;
+import com.castsoftware.paris.models.Group.GroupStatistics;
 import com.castsoftware.paris.models.Group.GroupType;
 import com.castsoftware.paris.models.Group.GroupResult;
+import com.castsoftware.paris.models.Group.TagBatch;
+import com.castsoftware.paris.models.Group.TagState;
+import com.castsoftware.paris.models.Group.TagStorage;
+import com.castsoftware.paris.results.GroupExecutionResult;
+import com.castsoftware.paris.results.GroupValidationResult;
+import com.castsoftware.paris.results.IncrementalTagResult;
+import com.castsoftware.paris.results.LintResult;
+import com.castsoftware.paris.results.ScheduleResult;
+import com.castsoftware.paris.results.StatisticsResult;
+import com.castsoftware.paris.results.TagWriteResult;
+import com.castsoftware.paris.results.ViolationResult;
+import com.castsoftware.paris.utils.CategoryIndex;
+import com.castsoftware.paris.utils.GraphVersion;
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.Result;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ParisGroupController {
 
+	// Version of the groups at which the committed groups all held a content hash, per database
+	private static final Map<String, Long> BACKFILLED_VERSIONS = new ConcurrentHashMap<>();
+	private static final String DEFAULT_TAG_STORAGE = Configuration.get("paris.tag.storage");
+	private static final int VALIDATION_QUEUE_SIZE = 1_000;
+	private static final int VIOLATION_QUEUE_SIZE = 10_000;
+
 	/**
 	 * Return all the Group Nodes
 	 * @param neo4jAL Neo4j access Layer
@@ -31,7 +70,7 @@ public class ParisGroupController {
 		List<Group> retList = new ArrayList<>();
 		while (it.hasNext()) {
 			Node n = it.next();
-			if(!n.getRelationships().iterator().hasNext()) continue; // Get only nodes with parent
+			if(!n.hasRelationship(Direction.OUTGOING, RelationshipType.withName(Group.getToDiocaseRelationship()))) continue; // Get only nodes with parent
 			retList.add(Group.fromNode(n));
 		}
 		return retList;
@@ -45,29 +84,36 @@ public class ParisGroupController {
 	 * @throws Neo4jQueryException
 	 */
 	public static List<Group> getGroupsByCategory(Neo4jAL neo4jAL, String category) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s) WHERE o.%2$s CONTAINS $category RETURN o as node", Group.getLabelPropertyAsString(), Group.getCategoriesProperty());
-		Map<String, Object> params = Map.of("category", category);
-
-		Result res = neo4jAL.executeQuery(req, params);
+		CategoryIndex index = getCategoryIndex(neo4jAL);
 		List<Group> retList = new ArrayList<>();
 
-		while(res.hasNext()) {
-			retList.add(Group.fromNode((Node) res.next().get("node")));
+		for (Long id : index.getIds(category)) {
+			Node n = neo4jAL.getNodeById(id);
+			Group g = n == null ? null : Group.fromNode(n);
+			if (g != null) retList.add(g); // Null if deleted by the current transaction
 		}
 
 		return retList;
 	}
 
 	public static List<String> getAllGroupCategories(Neo4jAL neo4jAL) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s) UNWIND o.%2$s as x RETURN DISTINCT x as cat", Group.getLabelPropertyAsString(), Group.getCategoriesProperty());
-		Result result = neo4jAL.executeQuery(req);
+		return getCategoryIndex(neo4jAL).getCategories();
+	}
 
-		List<String> categories = new ArrayList<>();
-		while (result.hasNext()) {
-			categories.add((String) result.next().get("cat"));
-		}
+	/**
+	 * Get the categories of the groups starting with a prefix ( case insensitive )
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param prefix Beginning of the category
+	 * @param limit Maximum number of categories returned
+	 * @return The list of categories, sorted
+	 * @throws Neo4jQueryException
+	 */
+	public static List<String> searchGroupCategories(Neo4jAL neo4jAL, String prefix, Long limit) throws Neo4jQueryException {
+		return getCategoryIndex(neo4jAL).getCategories(prefix, limit);
+	}
 
-		return categories;
+	private static CategoryIndex getCategoryIndex(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		return CategoryIndex.getInstance(neo4jAL, Group.getLabelProperty(), Group.getCategoriesProperty());
 	}
 
 	/**
@@ -77,6 +123,12 @@ public class ParisGroupController {
 	 * @throws Neo4jQueryException
 	 */
 	public static Boolean deleteById(Neo4jAL neo4jAL, Long id) throws Neo4jQueryException {
+		// Remove the tags applied by the group, its statistics and its estimates
+		ParisTagController.untagGroup(neo4jAL, id, null);
+		CostEstimator.remove(neo4jAL, id);
+		Node group = neo4jAL.getNodeById(id);
+		if (group != null) GroupStatistics.deleteAll(group);
+
 		String req = String.format("MATCH (o:%1$s) WHERE ID(o)=$id DETACH DELETE o", Group.getLabelPropertyAsString());
 		Map<String, Object> params = Map.of("id", id);
 
@@ -151,12 +203,13 @@ public class ParisGroupController {
 											String name,
 											Boolean selected,
 											List<String> typesAsList) throws Neo4jQueryException {
-		// Find a node with
-		String req = String.format("MATCH (o:%s) WHERE o.%s=$CypherReq AND o.%s=$CypherReturn RETURN o as node LIMIT 1",
+		backfillContentHash(neo4jAL);
+
+		// Find a node with the same content
+		String req = String.format("MATCH (o:%s) WHERE o.%s=$hash RETURN o as node LIMIT 1",
 				Group.getLabelPropertyAsString(),
-				Group.getCypherRequestProperty(),
-				Group.getCypherRequestReturnProperty());
-		Map<String, Object> params = Map.of("CypherReq", cypherRequest, "CypherReturn", cypherRequestReturn);
+				Group.getContentHashProperty());
+		Map<String, Object> params = Map.of("hash", RequestNormalizer.hash(cypherRequest, cypherRequestReturn));
 
 		Result res = neo4jAL.executeQuery(req, params);
 
@@ -211,6 +264,85 @@ public class ParisGroupController {
 		return g;
 	}
 
+	/**
+	 * Merge a list of groups in one pass. The hashes of the existing groups are read once, and the
+	 * groups sharing the same content ( existing or in the list ) are only created once.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param groups List of groups as maps ( Active, Categories, CreationDate, CypherRequest, CypherRequestReturn, Description, GroupName, Name, Selected, Types )
+	 * @param toSort If true, the groups created are attached to the 'To Sort' case
+	 * @return The list of groups created
+	 * @throws Neo4jQueryException
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Group> mergeBulk(Neo4jAL neo4jAL, List<Map<String, Object>> groups, Boolean toSort) throws Neo4jQueryException {
+		// Hashes already in the database, missing ones are computed on the way
+		Set<String> known = new HashSet<>();
+		Iterator<Node> it = neo4jAL.findNodes(Group.getLabelProperty());
+		while (it.hasNext()) known.add(Group.getOrSetContentHash(it.next()));
+
+		List<Group> created = new ArrayList<>();
+		for (Map<String, Object> g : groups) {
+			String cypherRequest = (String) g.getOrDefault("CypherRequest", "");
+			String cypherRequestReturn = (String) g.getOrDefault("CypherRequestReturn", "");
+			if (!known.add(RequestNormalizer.hash(cypherRequest, cypherRequestReturn))) continue;
+
+			created.add(createGroup(neo4jAL,
+					(Boolean) g.getOrDefault("Active", true),
+					(List<String>) g.getOrDefault("Categories", new ArrayList<>()),
+					((Number) g.getOrDefault("CreationDate", System.currentTimeMillis())).longValue(),
+					cypherRequest,
+					cypherRequestReturn,
+					(String) g.getOrDefault("Description", ""),
+					(String) g.getOrDefault("GroupName", ""),
+					(String) g.getOrDefault("Name", ""),
+					(Boolean) g.getOrDefault("Selected", false),
+					(List<String>) g.getOrDefault("Types", new ArrayList<>())));
+		}
+
+		if (toSort && !created.isEmpty()) {
+			Case c = ParisCaseController.findByTitle(neo4jAL, "To Sort");
+			if(c == null) {
+				c = ParisCaseController.createCase(neo4jAL, "To Sort", "Groups to be sorted", new ArrayList<>(), false, false);
+			}
+			for (Group g : created) attachToCase(neo4jAL, g.getNode().getId(), c.getNode().getId());
+		}
+
+		neo4jAL.logInfo(String.format("Bulk merge : %d groups received, %d created.", groups.size(), created.size()));
+		return created;
+	}
+
+	/**
+	 * Set the content hash on the groups missing it : created before its introduction, or outside of Paris.
+	 * The groups are checked again each time a committed transaction changed them, and the database is
+	 * only marked as done once a read transaction sees no group without hash. A backfill written by a
+	 * transaction which is later rolled back is then done again.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @throws Neo4jQueryException
+	 */
+	private static void backfillContentHash(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		String database = neo4jAL.getDb().databaseName();
+		long version = GraphVersion.get(neo4jAL, List.of(
+				GraphVersion.label(Group.getLabelPropertyAsString()),
+				GraphVersion.property(Group.getContentHashProperty()),
+				GraphVersion.property(Group.getCypherRequestProperty()),
+				GraphVersion.property(Group.getCypherRequestReturnProperty())));
+		if (version != GraphVersion.UNKNOWN && Long.valueOf(version).equals(BACKFILLED_VERSIONS.get(database))) return;
+
+		String req = String.format("MATCH (o:%s) WHERE o.%s IS NULL RETURN o as node",
+				Group.getLabelPropertyAsString(), Group.getContentHashProperty());
+
+		// Committed state, read in a dedicated transaction
+		boolean missing = neo4jAL.getDb().executeTransactionally(req + " LIMIT 1", Map.of(), Result::hasNext);
+		if (!missing) {
+			BACKFILLED_VERSIONS.put(database, version);
+			return;
+		}
+
+		Result res = neo4jAL.executeQuery(req);
+		while (res.hasNext()) Group.getOrSetContentHash((Node) res.next().get("node"));
+		res.close();
+	}
+
 	/**
 	 * Update a group by its id
 	 * @param neo4jAL Neo4j Access Layer
@@ -249,12 +381,25 @@ public class ParisGroupController {
 		Result res = neo4jAL.executeQuery(req, params);
 		if(res.hasNext()) {
 			Node n = (Node) res.next().get("node");
+			List<TagState> states = TagState.findAll(n);
+			String oldContentHash = (String) n.getProperty(Group.getContentHashProperty(), "");
+			Group old = Group.fromNode(n);
+			GroupStatistics.deleteAll(n); // Outdated by the new request
+			CostEstimator.remove(neo4jAL, n.getId()); // The group gets a new node
 
 			// Detach delete
 			for(Relationship rel : n.getRelationships()) rel.delete();
 			n.delete();
 
 			dn.createNode(neo4jAL);
+			if (old != null) {
+				dn.setReads(old.getReads());
+				dn.setWrites(old.getWrites());
+			}
+
+			// Keep the tagging history of the group, and rename its tag on the nodes already tagged
+			for (TagState state : states) state.moveTo(dn.getNode());
+			ParisTagController.retagGroup(neo4jAL, dn, states, oldContentHash);
 			return dn;
 		}
 
@@ -291,18 +436,18 @@ public class ParisGroupController {
 	 * @param neo4jAL Neo4j Access Layer
 	 * @param idDioGroup Id of the Dio Group
 	 * @param idDioCase Id Of tje
-	 * @return
+	 * @return True if a relationship was removed
 	 * @throws Neo4jQueryException
 	 */
-	public static Relationship detachFromCase(Neo4jAL neo4jAL, Long idDioGroup, Long idDioCase) throws Neo4jQueryException {
-		String req = String.format("MATCH (o:%1$s)<-[r:%2$s]-(g:%3$s) WHERE ID(o)=$idDioCase AND WHERE ID(g)=$idDioGroup " +
-						"RETURN r as rel;", Case.getLabelPropertyAsString(),  Group.getToDiocaseRelationship(), Group.getLabelPropertyAsString());
+	public static Boolean detachFromCase(Neo4jAL neo4jAL, Long idDioGroup, Long idDioCase) throws Neo4jQueryException {
+		String req = String.format("MATCH (o:%1$s)<-[r:%2$s]-(g:%3$s) WHERE ID(o)=$idDioCase AND ID(g)=$idDioGroup " +
+						"DELETE r RETURN COUNT(r) as deleted;", Case.getLabelPropertyAsString(),  Group.getToDiocaseRelationship(), Group.getLabelPropertyAsString());
 		Map<String, Object> params = Map.of("idDioCase", idDioCase, "idDioGroup", idDioGroup);
 		Result res = neo4jAL.executeQuery(req, params);
 
-		if(!res.hasNext()) return null;
+		if(!res.hasNext() || (Long) res.next().get("deleted") == 0) return false;
 
-		return (Relationship) res.next().get("rel");
+		return true;
 	}
 
 	/**
@@ -316,13 +461,17 @@ public class ParisGroupController {
 		List<Group> groups = getAllGroupNodes(neo4jAL);
 		List<GroupResult> results = new ArrayList<>();
 
-		try {
-			for (Group dg : groups) {
-				results.add(dg.forecast(neo4jAL, application));
+		for (Group dg : groups) {
+			try {
+				GroupResult gr = dg.forecast(neo4jAL, application);
+				if (gr != null) results.add(gr);
+			} catch (Neo4JTemplateLanguageException e) {
+				neo4jAL.logError(String.format("Failed to forecast the group '%s'.", dg.getName()), e);
 			}
-		} catch (Neo4JTemplateLanguageException ignored) {
 		}
 
+		ForecastCache cache = ForecastCache.getInstance(neo4jAL.getDb().databaseName());
+		neo4jAL.logInfo(String.format("Forecast cache : %d entries, %d hits, %d misses.", cache.size(), cache.getHits(), cache.getMisses()));
 		return results;
 	}
 
@@ -333,10 +482,10 @@ public class ParisGroupController {
 	 * @param application Name of the application concerned
 	 * @param executionType Type of the execution ( Tag, Statistics, etc ...)
 	 * @return
-	 * @throws Neo4jQueryException
-	 * @throws Neo4JTemplateLanguageException
+	 * @throws Exception
+	 * @throws ExtensionException
 	 */
-	public static Long executeTag(Neo4jAL neo4jAL, Long idGroup, String application, String executionType) throws Neo4jQueryException, Neo4JTemplateLanguageException {
+	public static Long executeTag(Neo4jAL neo4jAL, Long idGroup, String application, String executionType) throws Exception, ExtensionException {
 		String req = String.format("MATCH (o:%1$s) WHERE ID(o)=$id RETURN o as node LIMIT 1", Group.getLabelPropertyAsString());
 		Map<String, Object> params = Map.of("id", idGroup);
 		Result res = neo4jAL.executeQuery(req, params);
@@ -364,14 +513,544 @@ public class ParisGroupController {
 	 */
 	public static Long executeListTags(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, String executionType) throws Neo4jQueryException, Neo4JTemplateLanguageException {
 		Long total = 0L;
-		for(Long id : listIDGroup) {
+		for (GroupExecutionResult result : executeListBounded(neo4jAL, listIDGroup, application, executionType, ExecutionBudget.getDefault())) {
+			total += result.result;
+		}
+
+		return total;
+	}
+
+	/**
+	 * Launch a list of groups on an application, each one bounded by a budget. A group over its
+	 * timeout is terminated and the execution continues with the next group.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @param executionType  Type of the execution ( Tag, Statistics, etc ...)
+	 * @param budget Timeout, maximum number of rows and memory of each group
+	 * @return The status of each group : OK, TIMED_OUT, TRUNCATED, SKIPPED, NOT_FOUND or FAILED
+	 * @throws Neo4jQueryException
+	 */
+	public static List<GroupExecutionResult> executeListBounded(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, String executionType, ExecutionBudget budget) throws Neo4jQueryException {
+		GroupType type = GroupType.getFromString(executionType);
+		if (type == GroupType.TAG) return executeListShared(neo4jAL, listIDGroup, application, budget);
+		return executeEach(neo4jAL, listIDGroup, application, (al, gr) -> gr.execute(al, application, type, budget));
+	}
+
+	/**
+	 * Launch a list of groups as tags, running each distinct request only once. The groups whose forged
+	 * requests have the same fingerprint are tagged with the result of the first one, when it runs, and
+	 * get its status : a failure of the first group fails the groups sharing its request. The groups
+	 * reading tags are always executed on their own, as their results depend on the groups run before.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @param budget Timeout, maximum number of rows and memory of each request
+	 * @return The status of each group, with the id of the group whose execution was reused
+	 * @throws Neo4jQueryException
+	 */
+	private static List<GroupExecutionResult> executeListShared(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, ExecutionBudget budget) throws Neo4jQueryException {
+		Map<String, Group> leaders = new HashMap<>();
+		Map<Long, List<Group>> sharing = new HashMap<>();
+		Map<Long, Long> leaderOf = new HashMap<>();
+
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr == null || !gr.getReads().isEmpty()) continue;
+
+			MetaRequest mr;
+			try {
+				mr = gr.forgeRequest(application);
+			} catch (Neo4JTemplateLanguageException e) {
+				continue; // Reported by the execution
+			}
+			if (mr == null) continue;
+
+			Group leader = leaders.putIfAbsent(Group.getRequestFingerprint(mr), gr);
+			if (leader == null || leader.getNode().getId() == id || leaderOf.containsKey(id)) continue;
+			sharing.computeIfAbsent(leader.getNode().getId(), k -> new ArrayList<>()).add(gr);
+			leaderOf.put(id, leader.getNode().getId());
+		}
+
+		Map<Long, ExecutionBudget.Execution> executions = new HashMap<>();
+		Set<Long> failed = new HashSet<>();
+		List<GroupExecutionResult> results = executeEach(neo4jAL, listIDGroup, application, (al, gr) -> {
+			Long id = gr.getNode().getId();
+			if (leaderOf.containsKey(id)) {
+				Long leader = leaderOf.get(id);
+				if (failed.contains(leader)) {
+					throw new IllegalStateException(String.format("The group with ID %d, whose request is shared, failed.", leader));
+				}
+				return executions.get(leader);
+			}
+
+			try {
+				ExecutionBudget.Execution execution = gr.executeAsSharedTag(al, application, sharing.getOrDefault(id, List.of()), budget);
+				executions.put(id, execution);
+				return execution;
+			} catch (Exception | ExtensionException e) {
+				failed.add(id);
+				throw e;
+			}
+		});
+
+		for (GroupExecutionResult result : results) {
+			if (leaderOf.containsKey(result.idGroup)) result.sharedWith = leaderOf.get(result.idGroup);
+		}
+		if (!leaderOf.isEmpty()) {
+			neo4jAL.logInfo(String.format("%d executions saved on %d groups, sharing the same requests.", leaderOf.size(), listIDGroup.size()));
+		}
+		return results;
+	}
+
+	/**
+	 * Launch a list of groups as tags, evaluating the simple groups in a single scan. The groups matching a
+	 * label and filtering on the properties of the node are compiled and evaluated together, in one parallel
+	 * pass over the nodes, and their tags are committed in batches. The other groups are then run by the
+	 * database, one after the other, so they read the tags written by the scan.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The status of each group, with the engine which executed it : FUSED or CYPHER
+	 * @throws Neo4jQueryException
+	 */
+	public static List<GroupExecutionResult> executeListFused(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException {
+		ExecutionBudget budget = ExecutionBudget.getDefault();
+		List<Group> groups = new ArrayList<>();
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr != null) groups.add(gr);
+		}
+
+		FusedScanEngine.Plan plan = FusedScanEngine.prepare(groups, application);
+		Map<Long, GroupExecutionResult> fused = new HashMap<>();
+		long start = System.currentTimeMillis();
+		try {
+			List<ExecutionBudget.Execution> executions = new FusedScanEngine(neo4jAL, budget).execute(plan, application,
+					batch -> ParisTagController.writeBatch(neo4jAL, batch, TagStorage.PROPERTY));
+			long elapsed = System.currentTimeMillis() - start;
+			for (int i = 0; i < executions.size(); i++) {
+				Group gr = plan.getFused().get(i);
+				ExecutionBudget.Execution execution = executions.get(i);
+				fused.put(gr.getNode().getId(), new GroupExecutionResult(gr.getNode().getId(), gr.getName(), application,
+						execution.getStatus(), execution.getRows(), execution.getResult(), elapsed));
+			}
+		} catch (Exception e) {
+			neo4jAL.logError("The fused scan failed.", e);
+			for (Group gr : plan.getFused()) {
+				fused.put(gr.getNode().getId(), new GroupExecutionResult(gr.getNode().getId(), gr.getName(), application,
+						"FAILED", 0L, 0L, System.currentTimeMillis() - start));
+			}
+		}
+		fused.values().forEach(r -> r.engine = "FUSED");
+
+		List<Long> fallback = plan.getFallback().stream().map(g -> g.getNode().getId()).collect(Collectors.toList());
+		Map<Long, GroupExecutionResult> others = new HashMap<>();
+		for (GroupExecutionResult r : executeEach(neo4jAL, fallback, application, (al, gr) -> gr.execute(al, application, GroupType.TAG, budget))) {
+			others.put(r.idGroup, r);
+		}
+		neo4jAL.logInfo(String.format("%d groups executed by the fused scan, %d by the database.", fused.size(), others.size()));
+
+		List<GroupExecutionResult> results = new ArrayList<>();
+		for (Long id : listIDGroup) {
+			GroupExecutionResult r = fused.containsKey(id) ? fused.get(id) : others.get(id);
+			results.add(r != null ? r : new GroupExecutionResult(id, "", application, "NOT_FOUND", 0L, 0L, 0L));
+		}
+		return results;
+	}
+
+	/**
+	 * Launch a list of groups as tags applied by the database : each request tags its results itself, in
+	 * batches of ids when a batch size is given. No row nor id is read by the procedure.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @param batchSize Maximum number of nodes tagged per transaction, 0 or less for one transaction per group
+	 * @param storage Representation of the tags ( Property or Relationship ), default from the configuration if empty
+	 * @return The status and the number of nodes tagged of each group
+	 * @throws Neo4jQueryException
+	 */
+	public static List<GroupExecutionResult> executeListInDatabase(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, Long batchSize, String storage) throws Neo4jQueryException {
+		ExecutionBudget budget = ExecutionBudget.getDefault();
+		long size = batchSize == null ? 0L : batchSize;
+		TagStorage tagStorage = TagStorage.getFromString(storage == null || storage.isEmpty() ? DEFAULT_TAG_STORAGE : storage);
+		TagStorage usedStorage = tagStorage == null ? TagStorage.PROPERTY : tagStorage;
+		return executeEach(neo4jAL, listIDGroup, application, (al, gr) -> gr.executeAsTagInDatabase(al, application, size, usedStorage, budget));
+	}
+
+	/**
+	 * Run an execution on each group of a list, one after the other. A failing group is reported and
+	 * the execution continues with the next one.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @param task Execution of a group, returning null if the group has nothing to execute
+	 * @return The status of each group : OK, TIMED_OUT, TRUNCATED, SKIPPED, NOT_FOUND or FAILED
+	 * @throws Neo4jQueryException
+	 */
+	private static List<GroupExecutionResult> executeEach(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, GroupRunner.GroupTask<ExecutionBudget.Execution> task) throws Neo4jQueryException {
+		List<GroupExecutionResult> results = new ArrayList<>();
+
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr == null) {
+				neo4jAL.logInfo(String.format("Group Node with id '%d' was not found.", id));
+				results.add(new GroupExecutionResult(id, "", application, "NOT_FOUND", 0L, 0L, 0L));
+				continue;
+			}
+
+			long start = System.currentTimeMillis();
 			try {
-				total += executeTag(neo4jAL, id, application, executionType);
-			} catch (Exception  e) {
+				ExecutionBudget.Execution execution = task.run(neo4jAL, gr);
+				if (execution == null) {
+					results.add(new GroupExecutionResult(id, gr.getName(), application, "SKIPPED", 0L, 0L, 0L));
+					continue;
+				}
+
+				if (!execution.isOk()) {
+					neo4jAL.logError(String.format("Execution of the group '%s' stopped : %s after %d rows and %d ms.",
+							gr.getName(), execution.getStatus(), execution.getRows(), execution.getElapsed()));
+				}
+				GroupExecutionResult result = new GroupExecutionResult(id, gr.getName(), application, execution.getStatus(),
+						execution.getRows(), execution.getResult(), System.currentTimeMillis() - start);
+				result.sample = execution.getSample();
+				results.add(result);
+			} catch (Exception | ExtensionException e) {
 				neo4jAL.logError(String.format("Ignored tag with ID %d due to an error during its execution.", id), e);
+				results.add(new GroupExecutionResult(id, gr.getName(), application, "FAILED", 0L, 0L, System.currentTimeMillis() - start));
 			}
 		}
 
-		return total;
+		return results;
+	}
+
+	/**
+	 * Run the requests of a list of groups in parallel and collect the nodes to tag, without writing
+	 * them. The longest groups are started first. The requests run in the transactions of the workers,
+	 * on the committed state of the graph : the writes pending in the caller's transaction are not seen,
+	 * so this must be called before the caller writes anything.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The tags to apply
+	 */
+	public static TagBatch collectTags(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) {
+		GroupRunner runner = new GroupRunner(neo4jAL);
+		List<GroupRunner.Outcome<IdBitmap>> outcomes = runner.run(listIDGroup, (al, gr) -> {
+			MetaRequest mr = gr.forgeRequest(application);
+			return mr == null ? null : Group.getMatchingIds(al, mr);
+		}, getExpectedTimes(neo4jAL, listIDGroup, application));
+
+		TagBatch batch = new TagBatch();
+		for (GroupRunner.Outcome<IdBitmap> o : outcomes) {
+			if (o.status.equals("NOT_FOUND")) {
+				neo4jAL.logInfo(String.format("Group Node with id '%d' was not found.", o.idGroup));
+			}
+			if (!o.isOk() || o.value == null) continue;
+
+			CostEstimator.record(neo4jAL, o.idGroup, application, o.elapsed);
+			batch.add(o.tag, o.value);
+		}
+		return batch;
+	}
+
+	/**
+	 * Get the expected time of a list of groups, estimated from the plans of their requests and
+	 * their previous executions
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The expected time by id, in milliseconds
+	 */
+	private static Map<Long, Double> getExpectedTimes(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) {
+		List<Group> groups = new ArrayList<>();
+		for (Long id : listIDGroup) {
+			try {
+				Node n = neo4jAL.getNodeById(id);
+				Group gr = n == null ? null : Group.fromNode(n);
+				if (gr != null) groups.add(gr);
+			} catch (Neo4jQueryException e) {
+				neo4jAL.logError(String.format("Failed to retrieve the group with ID %d.", id), e);
+			}
+		}
+		return CostEstimator.getExpectedTimes(neo4jAL, groups, application);
+	}
+
+	/**
+	 * Launch a list of groups as tags, writing each node once with all the tags of the list
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @param storage Representation of the tags ( Property or Relationship ), default from the configuration if empty
+	 * @return The number of groups, matches, nodes tagged and writes
+	 */
+	public static TagWriteResult executeListTagsBatched(Neo4jAL neo4jAL, List<Long> listIDGroup, String application, String storage) {
+		TagStorage tagStorage = TagStorage.getFromString(storage == null || storage.isEmpty() ? DEFAULT_TAG_STORAGE : storage);
+		if (tagStorage == null) tagStorage = TagStorage.PROPERTY;
+
+		TagBatch batch = collectTags(neo4jAL, listIDGroup, application);
+		TagWriteResult result = ParisTagController.writeBatch(neo4jAL, batch, tagStorage);
+		neo4jAL.logInfo(String.format("Batched tagging : %d groups, %d matches, %d nodes written.", result.groups, result.matches, result.nodes));
+		return result;
+	}
+
+	/**
+	 * Execute a list of groups as tags, applying only the differences with their last incremental
+	 * execution on the application. The ids of the nodes tagged are recorded per group and per
+	 * application, with the fingerprint of the request executed.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The number of tags added, removed and unchanged for each group
+	 * @throws Neo4jQueryException
+	 */
+	public static List<IncrementalTagResult> executeIncremental(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException {
+		List<IncrementalTagResult> results = new ArrayList<>();
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr == null) {
+				neo4jAL.logInfo(String.format("Group Node with id '%d' was not found.", id));
+				continue;
+			}
+
+			try {
+				results.add(executeIncremental(neo4jAL, gr, application));
+			} catch (Exception | Neo4JTemplateLanguageException e) {
+				neo4jAL.logError(String.format("Ignored tag with ID %d due to an error during its execution.", id), e);
+				results.add(new IncrementalTagResult(gr, "FAILED", 0L, 0L, 0L));
+			}
+		}
+		return results;
+	}
+
+	private static IncrementalTagResult executeIncremental(Neo4jAL neo4jAL, Group gr, String application) throws Neo4jQueryException, Neo4JTemplateLanguageException {
+		MetaRequest mr = gr.forgeRequest(application);
+		if (mr == null) return new IncrementalTagResult(gr, "SKIPPED", 0L, 0L, 0L);
+
+		String tag = gr.getTagName();
+		String fingerprint = gr.getFingerprint(mr);
+		IdBitmap current = Group.getMatchingIds(neo4jAL, mr);
+
+		TagState state = TagState.find(gr.getNode(), application);
+		String status;
+		if (state == null) {
+			state = TagState.create(neo4jAL, gr.getNode(), application);
+			status = "NEW";
+		} else {
+			// Decided on the state recorded, before any tag is written
+			boolean sameRequest = state.getTag().equals(tag) && state.getFingerprint().equals(fingerprint);
+			status = sameRequest && ParisTagController.sameIds(state.getTaggedIds(), current) ? "UNCHANGED" : "CHANGED";
+		}
+
+		// Renamed groups get the old tag replaced on the nodes still matched
+		String previousTag = state.getTag().isEmpty() ? null : state.getTag();
+		ParisTagController.TagDiff diff = ParisTagController.applyDiff(neo4jAL, previousTag, state.getTaggedIds(), tag, current);
+		// Nodes of an unchanged set may still need a write if their ids were reused by a new analysis
+		if (status.equals("UNCHANGED") && (diff.added > 0 || diff.removed > 0 || diff.replaced > 0)) status = "CHANGED";
+
+		state.update(tag, fingerprint, current);
+		return new IncrementalTagResult(gr, status, diff.added + diff.replaced, diff.removed + diff.replaced, diff.unchanged);
+	}
+
+	/**
+	 * Set the tags or properties read and written by a group, used to order the scheduled executions
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param idGroup Id of the group
+	 * @param reads Tags or properties read by the request
+	 * @param writes Tags or properties written by the request, in addition to its own tag
+	 * @return The group updated, null if not found
+	 * @throws Neo4jQueryException
+	 */
+	public static Group setDependencies(Neo4jAL neo4jAL, Long idGroup, List<String> reads, List<String> writes) throws Neo4jQueryException {
+		Node n = neo4jAL.getNodeById(idGroup);
+		Group gr = n == null ? null : Group.fromNode(n);
+		if (gr == null) return null;
+
+		gr.setReads(reads);
+		gr.setWrites(writes);
+		return gr;
+	}
+
+	/**
+	 * Execute a list of groups as tags, in the order given by their dependencies. The groups are
+	 * ordered in waves; the requests of a wave run in parallel, then the tags of the wave are written
+	 * before the next wave starts.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The summary of the execution with its critical path
+	 * @throws Neo4jQueryException
+	 */
+	public static ScheduleResult executeScheduled(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException {
+		long start = System.currentTimeMillis();
+
+		List<Group> groups = new ArrayList<>();
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr == null) {
+				neo4jAL.logInfo(String.format("Group Node with id '%d' was not found.", id));
+				continue;
+			}
+			groups.add(gr);
+		}
+
+		GroupDependencyGraph graph = new GroupDependencyGraph(groups);
+		Map<Long, Double> expectedTimes = CostEstimator.getExpectedTimes(neo4jAL, groups, application);
+		GroupRunner runner = new GroupRunner(neo4jAL);
+		Map<Long, Long> durations = new HashMap<>();
+		List<String> failed = new ArrayList<>();
+		long nodesTagged = 0L;
+		long totalGroupTime = 0L;
+
+		for (List<Long> wave : graph.getWaves()) {
+			List<GroupRunner.Outcome<IdBitmap>> outcomes = runner.run(wave, (al, gr) -> {
+				MetaRequest mr = gr.forgeRequest(application);
+				return mr == null ? new IdBitmap() : Group.getMatchingIds(al, mr);
+			}, expectedTimes);
+
+			TagBatch batch = new TagBatch();
+			for (GroupRunner.Outcome<IdBitmap> o : outcomes) {
+				durations.put(o.idGroup, o.elapsed);
+				totalGroupTime += o.elapsed;
+				if (!o.isOk()) {
+					failed.add(graph.getName(o.idGroup));
+					continue;
+				}
+				CostEstimator.record(neo4jAL, o.idGroup, application, o.elapsed);
+				batch.add(o.tag, o.value);
+			}
+
+			// Tags of the wave are committed before the next one reads them
+			long writeStart = System.currentTimeMillis();
+			nodesTagged += ParisTagController.writeBatch(neo4jAL, batch, TagStorage.PROPERTY).nodes;
+			long writeTime = System.currentTimeMillis() - writeStart;
+			for (Long id : wave) durations.merge(id, writeTime, Long::sum);
+		}
+
+		List<Long> path = graph.getCriticalPath(durations);
+		long criticalPathTime = path.stream().mapToLong(id -> durations.getOrDefault(id, 0L)).sum();
+
+		List<String> cycles = graph.getCycles().stream().map(graph::getName).collect(Collectors.toList());
+		if (!cycles.isEmpty()) {
+			neo4jAL.logError(String.format("%d groups were not executed due to a dependency cycle : %s", cycles.size(), String.join(", ", cycles)));
+		}
+
+		return new ScheduleResult((long) groups.size(), (long) graph.getWaves().size(), nodesTagged,
+				System.currentTimeMillis() - start, totalGroupTime, criticalPathTime,
+				path.stream().map(graph::getName).collect(Collectors.toList()), failed, cycles);
+	}
+
+	/**
+	 * Compute the statistics of a list of groups on an application, in parallel. The counts are
+	 * aggregated by the database and saved in one statistics node per group and application.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return The statistics of each group
+	 * @throws Neo4jQueryException
+	 */
+	public static List<StatisticsResult> executeStatistics(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException {
+		GroupRunner runner = new GroupRunner(neo4jAL);
+		List<GroupRunner.Outcome<long[]>> outcomes = runner.run(listIDGroup, (al, gr) -> {
+			MetaRequest mr = gr.forgeRequest(application);
+			return mr == null ? new long[] {0L, 0L} : Group.computeStatistics(al, mr);
+		}, getExpectedTimes(neo4jAL, listIDGroup, application));
+
+		List<StatisticsResult> results = new ArrayList<>();
+		for (GroupRunner.Outcome<long[]> o : outcomes) {
+			long[] stats = o.isOk() ? o.value : new long[] {0L, 0L};
+			Node n = neo4jAL.getNodeById(o.idGroup);
+			if (o.isOk()) CostEstimator.record(neo4jAL, o.idGroup, application, o.elapsed);
+			if (o.isOk() && n != null) {
+				GroupStatistics.save(neo4jAL, n, application, stats[0], stats[1], o.elapsed);
+			}
+			results.add(new StatisticsResult(o.idGroup, o.name, application, o.status, stats[0], stats[1], o.elapsed));
+		}
+		return results;
+	}
+
+	/**
+	 * Evaluate a list of architecture rules on an application. The rules run in parallel and their
+	 * violations are streamed as soon as they are found, with the status VIOLATION. Each rule is then
+	 * summarized by one row carrying the status of its evaluation, its error and its number of violations :
+	 * a rule failed or timed out is not mistaken for a rule without violation.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids of the rules
+	 * @param application Name of the application concerned
+	 * @return The stream of violations, followed by the summary of each rule
+	 */
+	public static Stream<ViolationResult> evaluateRules(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) {
+		GroupRunner runner = new GroupRunner(neo4jAL);
+		return runner.stream(listIDGroup, (GroupRunner.StreamTask<ViolationResult>) (al, gr, emit) -> {
+			MetaRequest mr = gr.forgeRequest(application);
+			if (mr == null) return;
+
+			Long idGroup = gr.getNode().getId();
+			Group.streamViolations(al, mr, v -> emit.accept(new ViolationResult(idGroup, gr.getName(), application,
+					(Long) v.get("id"), String.valueOf(v.get("name")), String.valueOf(v.get("type")), String.valueOf(v.get("fullName")))));
+		}, VIOLATION_QUEUE_SIZE, o -> new ViolationResult(o.idGroup, o.name, application, o.status,
+				o.error == null ? "" : String.valueOf(o.error.getMessage()), o.value == null ? 0L : o.value));
+	}
+
+	/**
+	 * Validate the requests of all the groups stored, in parallel. Each request is forged and planned
+	 * with EXPLAIN, without being executed, in a transaction rolled back by the worker. The cached
+	 * verdicts are ignored, so the groups broken by a change of the schema are found.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application used to forge the requests, a test name if empty
+	 * @return The stream of verdicts, one per group
+	 * @throws Neo4jQueryException
+	 */
+	public static Stream<GroupValidationResult> validateAllGroups(Neo4jAL neo4jAL, String application) throws Neo4jQueryException {
+		List<Long> ids = getAllGroupNodes(neo4jAL).stream().map(g -> g.getNode().getId()).collect(Collectors.toList());
+		GroupRunner runner = new GroupRunner(neo4jAL);
+		return runner.stream(ids, (GroupRunner.StreamTask<GroupValidationResult>) (al, gr, emit) -> {
+			Long idGroup = gr.getNode().getId();
+			if (gr.getCypherRequest() == null || gr.getCypherRequest().isBlank()) {
+				emit.accept(new GroupValidationResult(idGroup, gr.getName(), "EMPTY", "", 0L));
+				return;
+			}
+
+			ParisCypherRequestsController.Verdict verdict = ParisCypherRequestsController.validateRequest(al, gr.getCypherRequest(), gr.getCypherRequestReturn(), application, false);
+			emit.accept(new GroupValidationResult(idGroup, gr.getName(), verdict.valid ? "VALID" : "INVALID", verdict.error, verdict.estimatedRows));
+		}, VALIDATION_QUEUE_SIZE);
+	}
+
+	/**
+	 * Lint the request of a group, to find the patterns known to be slow ( cartesian products, scans of all
+	 * the nodes, unbounded variable-length paths, substring filters ). The findings are logged.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param group Group to lint
+	 * @param application Name of the application used to forge the request, a test name if empty
+	 * @return The findings, the most severe first
+	 */
+	public static List<RequestLinter.Finding> lintGroup(Neo4jAL neo4jAL, Group group, String application) {
+		List<RequestLinter.Finding> findings = ParisCypherRequestsController.lintRequest(neo4jAL, group.getCypherRequest(), group.getCypherRequestReturn(), application);
+		for (RequestLinter.Finding f : findings) {
+			neo4jAL.logInfo(String.format("Group '%s' : %s", group.getName(), f));
+		}
+		return findings;
+	}
+
+	/**
+	 * Lint the request of a group
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param idGroup Id of the group
+	 * @param application Name of the application used to forge the request, a test name if empty
+	 * @return The findings of the group, empty if the group doesn't exist
+	 * @throws Neo4jQueryException
+	 */
+	public static List<LintResult> lintGroup(Neo4jAL neo4jAL, Long idGroup, String application) throws Neo4jQueryException {
+		Node n = neo4jAL.getNodeById(idGroup);
+		Group group = n == null ? null : Group.fromNode(n);
+		if (group == null) return List.of();
+		return lintGroup(neo4jAL, group, application).stream()
+				.map(f -> new LintResult(idGroup, group.getName(), f))
+				.collect(Collectors.toList());
 	}
 }
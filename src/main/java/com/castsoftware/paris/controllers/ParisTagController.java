@@ -0,0 +1,416 @@
+package com.castsoftware.paris.controllers;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ExtensionException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.models.Group.ExecutionBudget;
+import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.models.Group.TagBatch;
+import com.castsoftware.paris.models.Group.TagState;
+import com.castsoftware.paris.models.Group.TagStorage;
+import com.castsoftware.paris.results.IncrementalTagResult;
+import com.castsoftware.paris.results.TagWriteResult;
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Removal and replacement of the Paris tags on the nodes recorded in the tag states of the groups.
+ * Only the nodes whose tags change are written, in batches committed in their own transactions. The
+ * states are updated by the caller once the tags are written : if the caller fails, the states still
+ * record the previous tags, and applying the differences again only writes the nodes left behind.
+ */
+public class ParisTagController {
+
+	private static final int BATCH_SIZE = Integer.parseInt(Configuration.get("paris.tag.batch_size"));
+
+	/**
+	 * Number of nodes concerned by each kind of change
+	 */
+	public static class TagDiff {
+		public long added = 0L;
+		public long removed = 0L;
+		public long replaced = 0L;
+		public long unchanged = 0L;
+	}
+
+	/**
+	 * Replace a tag set by a new one. Nodes in both sets keep their tag if the tag didn't change, or
+	 * get the old tag replaced by the new one in a single write. The ids recorded may have been reused
+	 * by the nodes of a new analysis : the old tag is only removed from the nodes still carrying it, and
+	 * the nodes kept without the tag get it back. The nodes are written in batches of BATCH_SIZE, each
+	 * committed in its own transaction.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param oldTag Tag previously applied, can be null
+	 * @param oldIds Nodes carrying the old tag
+	 * @param newTag Tag to apply, can be null
+	 * @param newIds Nodes that must carry the new tag
+	 * @return The number of nodes added, removed, replaced and unchanged
+	 */
+	public static TagDiff applyDiff(Neo4jAL neo4jAL, String oldTag, IdBitmap oldIds, String newTag, IdBitmap newIds) {
+		TagDiff diff = new TagDiff();
+		IdBitmap previous = oldTag == null ? new IdBitmap() : oldIds;
+		IdBitmap next = newTag == null ? new IdBitmap() : newIds;
+
+		IdBitmap onlyOld = previous.andNot(next);
+		IdBitmap onlyNew = next.andNot(previous);
+
+		runInBatches(neo4jAL, onlyOld.toArray(), (tx, n) -> {
+			if (Group.updateTags(n, List.of(oldTag), List.of())) diff.removed++;
+		});
+		runInBatches(neo4jAL, onlyNew.toArray(), (tx, n) -> {
+			if (Group.updateTags(n, List.of(), List.of(newTag))) diff.added++;
+		});
+
+		// Nodes in both sets
+		IdBitmap common = previous.andNot(onlyOld);
+		boolean sameTag = oldTag != null && oldTag.equals(newTag);
+		runInBatches(neo4jAL, common.toArray(), (tx, n) -> {
+			if (!Group.hasTag(n, oldTag)) {
+				// Id reused, or tag removed since the last execution
+				if (Group.addTag(n, newTag)) diff.added++;
+				else diff.unchanged++;
+			} else if (sameTag) {
+				diff.unchanged++;
+			} else {
+				Group.updateTags(n, List.of(oldTag), List.of(newTag));
+				diff.replaced++;
+			}
+		});
+
+		return diff;
+	}
+
+	/**
+	 * Check if two sets of ids are equal
+	 * @param a First set
+	 * @param b Second set
+	 * @return True if they hold the same ids
+	 */
+	public static boolean sameIds(IdBitmap a, IdBitmap b) {
+		return a.size() == b.size() && a.andNot(b).isEmpty();
+	}
+
+	/**
+	 * Remove a tag from a set of nodes
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param tag Tag to remove
+	 * @param ids Nodes carrying the tag
+	 * @return The number of nodes cleaned
+	 */
+	public static long untag(Neo4jAL neo4jAL, String tag, IdBitmap ids) {
+		return applyDiff(neo4jAL, tag, ids, null, new IdBitmap()).removed;
+	}
+
+	/**
+	 * Remove the tag of a group from the nodes recorded in its states and delete the states. Without
+	 * any state, for groups only executed as plain tags, the nodes carrying the tag are scanned in
+	 * batches, within the default execution budget.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param idGroup Id of the group
+	 * @param application Name of the application, null or empty for all the applications
+	 * @return The number of tags removed for each state
+	 * @throws Neo4jQueryException If the scan failed or exceeded the budget
+	 */
+	public static List<IncrementalTagResult> untagGroup(Neo4jAL neo4jAL, Long idGroup, String application) throws Neo4jQueryException {
+		List<IncrementalTagResult> results = new ArrayList<>();
+		Node n = neo4jAL.getNodeById(idGroup);
+		Group gr = n == null ? null : Group.fromNode(n);
+		if (gr == null) {
+			neo4jAL.logInfo(String.format("Group Node with id '%d' was not found.", idGroup));
+			return results;
+		}
+
+		boolean allApplications = application == null || application.isEmpty();
+		for (TagState state : TagState.findAll(n)) {
+			if (!allApplications && !application.equals(state.getApplication())) continue;
+
+			long removed = untag(neo4jAL, state.getTag(), state.getTaggedIds());
+			results.add(new IncrementalTagResult(gr, "UNTAGGED", 0L, removed, 0L));
+			state.delete();
+		}
+
+		if (results.isEmpty()) {
+			long removed = untagByScan(neo4jAL, gr.getTagName(), allApplications ? null : application);
+			results.add(new IncrementalTagResult(gr, "UNTAGGED", 0L, removed, 0L));
+		}
+		return results;
+	}
+
+	/**
+	 * Remove a tag from all the nodes carrying it, in the Tags property or as a relationship to its tag node.
+	 * The nodes are cleaned in batches of BATCH_SIZE, each committed under the default execution budget : once the
+	 * budget is exceeded, the scan stops and fails, the batches already committed stay clean.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param tag Tag to remove
+	 * @param application Name of the application, null for all the applications
+	 * @return The number of tags removed
+	 * @throws Neo4jQueryException If a batch failed, or the budget is exceeded
+	 */
+	private static long untagByScan(Neo4jAL neo4jAL, String tag, String application) throws Neo4jQueryException {
+		String label = application == null ? "" : String.format(":`%s`", application);
+		Map<String, Object> params = Map.of("tag", tag, "batch", (long) BATCH_SIZE);
+
+		String propertyReq = String.format("MATCH (o%1$s) WHERE $tag IN o.%2$s WITH o LIMIT $batch " +
+				"SET o.%2$s = [t IN o.%2$s WHERE t <> $tag] RETURN count(o) as removed", label, Group.getTagsProperty());
+		String relationshipReq = String.format("MATCH (o%1$s)-[r:%2$s]->(:%3$s { %4$s : $tag }) WITH r LIMIT $batch DELETE r RETURN count(r) as removed",
+				label, TagBatch.getToTagRelationship().name(), TagBatch.getTagLabelPropertyAsString(), TagBatch.getTagNameProperty());
+
+		ExecutionBudget budget = ExecutionBudget.getDefault();
+		ExecutionBudget.Execution execution = budget.start();
+		long removed = 0L;
+		for (String req : List.of(propertyReq, relationshipReq)) {
+			Long batch;
+			do {
+				try {
+					batch = budget.run(neo4jAL, execution, al -> {
+						long count = 0L;
+						try (Result res = al.executeQuery(req, params)) {
+							if (res.hasNext()) count = (Long) res.next().get("removed");
+						}
+						al.getTransaction().commit();
+						return count;
+					});
+				} catch (Neo4jQueryException e) {
+					throw e;
+				} catch (Exception | ExtensionException e) {
+					throw new Neo4jQueryException(String.format("Failed to remove the tag '%s'.", tag), req, e, "PTAGCxUBSC1");
+				}
+
+				if (batch != null) removed += batch;
+				if (batch == null || (batch == BATCH_SIZE && execution.checkExpired())) {
+					throw new Neo4jQueryException(String.format("The removal of the tag '%s' exceeded the budget of %d ms after %d tags removed. " +
+							"Run it again to finish.", tag, budget.getTimeoutMs(), removed), req, null, "PTAGCxUBSC2");
+				}
+			} while (batch == BATCH_SIZE);
+		}
+		return removed;
+	}
+
+	/**
+	 * Carry the tags of a group over its modification. The tag recorded in each state is replaced by
+	 * the new tag of the group on the same nodes. If the request changed, the fingerprint is cleared
+	 * so the next incremental execution applies the differences.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param group Group modified
+	 * @param states States of the group before its modification
+	 * @param oldContentHash Content hash of the group before its modification
+	 */
+	public static void retagGroup(Neo4jAL neo4jAL, Group group, List<TagState> states, String oldContentHash) {
+		String tag = group.getTagName();
+		boolean sameContent = group.getContentHash().equals(oldContentHash);
+
+		for (TagState state : states) {
+			IdBitmap ids = state.getTaggedIds();
+			if (!state.getTag().equals(tag)) applyDiff(neo4jAL, state.getTag(), ids, tag, ids);
+
+			String fingerprint = "";
+			if (sameContent) {
+				try {
+					MetaRequest mr = group.forgeRequest(state.getApplication());
+					if (mr != null) fingerprint = group.getFingerprint(mr);
+				} catch (Neo4JTemplateLanguageException e) {
+					neo4jAL.logError(String.format("Failed to forge the request of the group '%s'.", group.getName()), e);
+				}
+			}
+			state.update(tag, fingerprint, ids);
+		}
+	}
+
+	/**
+	 * Write the tags accumulated in a batch. Each node is written once with all its tags, committing
+	 * every BATCH_SIZE nodes.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param batch Tags collected
+	 * @param storage Representation of the tags
+	 * @return The number of nodes tagged and the number of writes
+	 */
+	public static TagWriteResult writeBatch(Neo4jAL neo4jAL, TagBatch batch, TagStorage storage) {
+		long start = System.currentTimeMillis();
+		Map<Long, List<String>> tagsByNode = batch.getTagsByNode();
+		long[] ids = tagsByNode.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+
+		long[] writes = {0L};
+		runInBatches(neo4jAL, ids, (tx, n) -> writes[0] += batch.write(tx, n, tagsByNode.get(n.getId()), storage));
+
+		return new TagWriteResult(storage.toString(), batch.getGroups(), batch.getMatches(),
+				(long) ids.length, writes[0], System.currentTimeMillis() - start);
+	}
+
+	/**
+	 * Compare the tag representations on a list of groups : one append per group and per node (
+	 * current tagging ), one write per node in the Tags property, and relationships to tag nodes.
+	 * Each mode runs in its own transaction, rolled back at the end, so the benchmark leaves the
+	 * graph untouched. The tags are collected first, before any write, by workers reading the committed
+	 * state of the graph.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return One result per mode, plus the time spent running the requests
+	 * @throws Neo4jQueryException
+	 */
+	public static List<TagWriteResult> benchmarkStorage(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException {
+		List<TagWriteResult> results = new ArrayList<>();
+
+		long start = System.currentTimeMillis();
+		TagBatch batch = ParisGroupController.collectTags(neo4jAL, listIDGroup, application);
+		long groups = batch.getGroups();
+		results.add(new TagWriteResult("Collect", groups, batch.getMatches(), 0L, 0L, System.currentTimeMillis() - start));
+
+		// One append per group and per node
+		start = System.currentTimeMillis();
+		long nodes = 0L;
+		long writes = 0L;
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			IdBitmap touched = new IdBitmap();
+			for (Map.Entry<String, IdBitmap> en : batch.getIdsByTag().entrySet()) {
+				for (long id : en.getValue().toArray()) {
+					Node n = getNodeOrNull(tx, id);
+					if (n == null) continue;
+					touched.add(id);
+					if (Group.addTag(n, en.getKey())) writes++;
+				}
+			}
+			nodes = touched.size();
+			tx.rollback();
+		}
+		results.add(new TagWriteResult("Append", groups, batch.getMatches(), nodes, writes, System.currentTimeMillis() - start));
+
+		// Accumulated, one write per node
+		Map<Long, List<String>> tagsByNode = batch.getTagsByNode();
+		for (TagStorage storage : TagStorage.values()) {
+			start = System.currentTimeMillis();
+			writes = 0L;
+			nodes = 0L;
+			try (Transaction tx = neo4jAL.getDb().beginTx()) {
+				for (Map.Entry<Long, List<String>> en : tagsByNode.entrySet()) {
+					Node n = getNodeOrNull(tx, en.getKey());
+					if (n == null) continue;
+					nodes++;
+					writes += batch.write(tx, n, en.getValue(), storage);
+				}
+				tx.rollback();
+			}
+			results.add(new TagWriteResult(storage.toString(), groups, batch.getMatches(), nodes, writes, System.currentTimeMillis() - start));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Compare the tagging of a list of groups row by row in the procedure ( each row returned is tagged
+	 * in Java ) with the tagging done by the database ( the ids collected and tagged by the database ). Each
+	 * mode runs in its own transaction, rolled back at the end, so the benchmark leaves the graph
+	 * untouched. The requests of the database mode tag their results themselves and return a single row
+	 * of counters : its matches are the nodes tagged.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param listIDGroup List of Ids
+	 * @param application Name of the application concerned
+	 * @return One result per mode
+	 * @throws Neo4jQueryException
+	 * @throws Neo4jConnectionError
+	 */
+	public static List<TagWriteResult> benchmarkInDatabase(Neo4jAL neo4jAL, List<Long> listIDGroup, String application) throws Neo4jQueryException, Neo4jConnectionError {
+		// Requests are forged beforehand, the forging is not measured
+		Map<String, MetaRequest> requests = new LinkedHashMap<>();
+		for (Long id : listIDGroup) {
+			Node n = neo4jAL.getNodeById(id);
+			Group gr = n == null ? null : Group.fromNode(n);
+			if (gr == null) continue;
+			try {
+				MetaRequest mr = gr.forgeRequest(application);
+				if (mr != null) requests.put(gr.getTagName(), mr);
+			} catch (Neo4JTemplateLanguageException e) {
+				neo4jAL.logError(String.format("Failed to forge the request of the group '%s'.", gr.getName()), e);
+			}
+		}
+
+		List<TagWriteResult> results = new ArrayList<>();
+		long groups = requests.size();
+
+		// Row by row, each row is tagged in the procedure
+		long start = System.currentTimeMillis();
+		long matches = 0L;
+		long writes = 0L;
+		IdBitmap touched = new IdBitmap();
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Neo4jAL txAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (Map.Entry<String, MetaRequest> en : requests.entrySet()) {
+				Result res = txAL.executeQuery(en.getValue().getRequest());
+				while (res.hasNext()) {
+					Object returned = res.next().get(en.getValue().getReturnValue());
+					matches++;
+					List<Node> nodes = new ArrayList<>();
+					if (returned instanceof Node) {
+						nodes.add((Node) returned);
+					} else if (returned instanceof Relationship) {
+						nodes.add(((Relationship) returned).getStartNode());
+						nodes.add(((Relationship) returned).getEndNode());
+					}
+					for (Node n : nodes) {
+						touched.add(n.getId());
+						if (Group.addTag(n, en.getKey())) writes++;
+					}
+				}
+			}
+			tx.rollback();
+		}
+		results.add(new TagWriteResult("RowByRow", groups, matches, touched.size(), writes, System.currentTimeMillis() - start));
+
+		// In the database, a single row of counters returned
+		start = System.currentTimeMillis();
+		long tagged = 0L;
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Neo4jAL txAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (Map.Entry<String, MetaRequest> en : requests.entrySet()) {
+				Object first = Group.getFirstResult(txAL, en.getValue());
+				if (!(first instanceof Node) && !(first instanceof Relationship)) continue;
+				tagged += Group.tagInDatabase(txAL, en.getValue(), first instanceof Relationship, en.getKey(), TagStorage.PROPERTY, -1L, 0L)[0];
+			}
+			tx.rollback();
+		}
+		results.add(new TagWriteResult("InDatabase", groups, tagged, tagged, tagged, System.currentTimeMillis() - start));
+
+		return results;
+	}
+
+	private static Node getNodeOrNull(Transaction tx, long id) {
+		try {
+			return tx.getNodeById(id);
+		} catch (NotFoundException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Apply an update on nodes, committing every BATCH_SIZE nodes. Nodes deleted since they were recorded are ignored.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param ids Ids of the nodes to update
+	 * @param update Update to apply
+	 */
+	private static void runInBatches(Neo4jAL neo4jAL, long[] ids, BiConsumer<Transaction, Node> update) {
+		for (int start = 0; start < ids.length; start += BATCH_SIZE) {
+			int end = Math.min(start + BATCH_SIZE, ids.length);
+			try (Transaction tx = neo4jAL.getDb().beginTx()) {
+				for (int i = start; i < end; i++) {
+					Node n = getNodeOrNull(tx, ids[i]);
+					if (n != null) update.accept(tx, n); // Null if deleted by a new analysis
+				}
+				tx.commit();
+			}
+		}
+	}
+}
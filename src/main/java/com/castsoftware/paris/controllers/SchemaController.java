@@ -0,0 +1,562 @@
+package com.castsoftware.paris.controllers;
+
+import com.castsoftware.paris.configuration.NodeConfiguration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jBadRequestException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.RequestNormalizer;
+import com.castsoftware.paris.models.Case.Case;
+import com.castsoftware.paris.models.Group.CostEstimator;
+import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.models.Group.GroupProfiler;
+import com.castsoftware.paris.models.Group.TagBatch;
+import com.castsoftware.paris.results.IndexRecommendationResult;
+import com.castsoftware.paris.results.SchemaResult;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+public class SchemaController {
+
+	private static final long INDEX_ONLINE_TIMEOUT_SECONDS = 300L;
+	private static final String ESTIMATED_ROWS_ARGUMENT = "EstimatedRows";
+
+	// Arguments describing an operator, depending on the version of the planner
+	private static final List<String> DETAIL_ARGUMENTS = List.of("Details", "LabelName", "Expression", "LegacyExpression");
+
+	// Label of a variable ( o:Object ) and predicate on a property which an index can serve ( o.Type = ... )
+	private static final Pattern LABEL_OF_VARIABLE = Pattern.compile("\\b(\\w+)\\s*:\\s*`?(\\w+)`?");
+	private static final Pattern PROPERTY_PREDICATE = Pattern.compile(
+			"\\b(\\w+)\\.`?(\\w+)`?\\]?\\s*(=~|<>|<=|>=|=|<|>|IN\\b|STARTS\\s+WITH|ENDS\\s+WITH|CONTAINS|IS\\s+NOT\\s+NULL)",
+			Pattern.CASE_INSENSITIVE);
+	private static final List<String> NOT_INDEXABLE = List.of("=~", "<>");
+
+	/**
+	 * Element of the schema expected by Paris
+	 */
+	private static class SchemaElement {
+		private final String label;
+		private final String property;
+		private final Boolean unique;
+
+		private SchemaElement(String label, String property, Boolean unique) {
+			this.label = label;
+			this.property = property;
+			this.unique = unique;
+		}
+
+		private String getTarget() {
+			return String.format(":%s(%s)", label, property);
+		}
+
+		private String getKind() {
+			return unique ? "CONSTRAINT" : "INDEX";
+		}
+	}
+
+	/**
+	 * Indexes and constraints expected by Paris
+	 * @return The list of the elements
+	 */
+	private static List<SchemaElement> getSchemaElements() {
+		return List.of(
+				new SchemaElement(Case.getLabelPropertyAsString(), Case.getTitleProperty(), false),
+				new SchemaElement(Group.getLabelPropertyAsString(), Group.getGroupNameProperty(), false),
+				new SchemaElement(Group.getLabelPropertyAsString(), Group.getContentHashProperty(), false),
+				new SchemaElement(TagBatch.getTagLabelPropertyAsString(), TagBatch.getTagNameProperty(), true),
+				new SchemaElement(NodeConfiguration.getLabel(), NodeConfiguration.getKeyProperty(), true));
+	}
+
+	/**
+	 * Lookups used by the controllers, explained before and after the creation of the schema
+	 * @return Map of the name of the lookup and the query
+	 */
+	private static Map<String, String> getLookups() {
+		Map<String, String> lookups = new LinkedHashMap<>();
+		lookups.put("ParisCaseController.findByTitle",
+				String.format("MATCH (o:%s) WHERE o.%s=$Title RETURN o as case", Case.getLabelPropertyAsString(), Case.getTitleProperty()));
+		lookups.put("ParisGroup by GroupName",
+				String.format("MATCH (o:%s) WHERE o.%s=$GroupName RETURN o as node", Group.getLabelPropertyAsString(), Group.getGroupNameProperty()));
+		lookups.put("ParisGroupController.merge",
+				String.format("MATCH (o:%s) WHERE o.%s=$hash RETURN o as node LIMIT 1",
+						Group.getLabelPropertyAsString(), Group.getContentHashProperty()));
+		lookups.put("NodeConfiguration.retrieveConfiguration", NodeConfiguration.getRetrieveRequest());
+		return lookups;
+	}
+
+	/**
+	 * Create the missing indexes and constraints of the Paris labels, wait for them to be online and
+	 * report the plan of the lookups before and after the creation.
+	 * The schema is modified in dedicated transactions, as the indexes can only be populated once their creation is committed.
+	 * The lookups are planned in their own read transactions, closed before the schema is modified : planning takes schema
+	 * locks which are held until the end of the transaction, and would block the creation.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return The status of each element of the schema and of each lookup
+	 * @throws Neo4jQueryException
+	 * @throws Neo4jConnectionError
+	 */
+	public static List<SchemaResult> bootstrapSchema(Neo4jAL neo4jAL) throws Neo4jQueryException, Neo4jConnectionError {
+		List<SchemaResult> results = new ArrayList<>();
+		Map<String, String> lookups = getLookups();
+
+		// Plans before
+		Map<String, String> plansBefore = getAccessOperators(neo4jAL, lookups);
+
+		// The configuration node must be unique before creating the constraint
+		boolean uniqueConfiguration = prepareConfigurationNode(neo4jAL);
+
+		// Create missing elements
+		Map<SchemaElement, String> statusBefore = new LinkedHashMap<>();
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Neo4jAL schemaAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+
+			for (SchemaElement element : getSchemaElements()) {
+				if (exists(tx.schema(), element)) {
+					statusBefore.put(element, "EXISTING");
+					continue;
+				}
+
+				if (element.unique && element.label.equals(NodeConfiguration.getLabel()) && !uniqueConfiguration) {
+					statusBefore.put(element, "SKIPPED");
+					continue;
+				}
+
+				try {
+					if (element.unique) {
+						schemaAL.setUniqueConstraint(element.label, element.property);
+					} else {
+						schemaAL.setIndex(element.label, element.property);
+					}
+					statusBefore.put(element, "CREATED");
+				} catch (Neo4jBadRequestException e) {
+					neo4jAL.logError(String.format("Failed to create the %s on %s.", element.getKind(), element.getTarget()), e);
+					statusBefore.put(element, "FAILED");
+				}
+			}
+
+			tx.commit();
+		}
+
+		// Wait for the population of the indexes and report their state
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Schema schema = tx.schema();
+			String message = "";
+			try {
+				schema.awaitIndexesOnline(INDEX_ONLINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (IllegalStateException e) {
+				message = "Indexes were not online after " + INDEX_ONLINE_TIMEOUT_SECONDS + " seconds : " + e.getMessage();
+			}
+
+			for (Map.Entry<SchemaElement, String> en : statusBefore.entrySet()) {
+				SchemaElement element = en.getKey();
+				String state = getIndexState(schema, element);
+				String elementMessage = message;
+				if (en.getValue().equals("SKIPPED")) {
+					elementMessage = String.format("Several %s nodes exist. Remove the duplicates and run the bootstrap again.", element.label);
+				}
+				results.add(new SchemaResult(element.getKind(), element.getTarget(), en.getValue(), state, elementMessage));
+			}
+			tx.commit();
+		}
+
+		// Plans after, in a new transaction to see the new schema
+		Map<String, String> plansAfter = getAccessOperators(neo4jAL, lookups);
+		for (Map.Entry<String, String> en : lookups.entrySet()) {
+			results.add(new SchemaResult("LOOKUP", en.getKey(), plansBefore.get(en.getKey()), plansAfter.get(en.getKey()), en.getValue()));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Make sure the configuration node holds its key. Done in a dedicated transaction, data and schema cannot be modified in the same one.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return False if several configuration nodes exist
+	 */
+	private static boolean prepareConfigurationNode(Neo4jAL neo4jAL) {
+		String req = String.format("MATCH (o:%1$s) WITH COLLECT(o) as nodes " +
+						"FOREACH (n IN CASE WHEN SIZE(nodes) = 1 THEN nodes ELSE [] END | SET n.%2$s=$key) " +
+						"RETURN SIZE(nodes) as count",
+				NodeConfiguration.getLabel(), NodeConfiguration.getKeyProperty());
+		Long count = neo4jAL.getDb().executeTransactionally(req, Map.of("key", NodeConfiguration.getKeyValue()),
+				result -> result.hasNext() ? (Long) result.next().get("count") : 0L);
+		return count <= 1;
+	}
+
+	private static boolean exists(Schema schema, SchemaElement element) {
+		Label label = Label.label(element.label);
+		if (element.unique) {
+			for (ConstraintDefinition cd : schema.getConstraints(label)) {
+				if (List.of(element.property).equals(toList(cd.getPropertyKeys()))) return true;
+			}
+			return false;
+		}
+
+		for (IndexDefinition id : schema.getIndexes(label)) {
+			if (List.of(element.property).equals(toList(id.getPropertyKeys()))) return true;
+		}
+		return false;
+	}
+
+	private static String getIndexState(Schema schema, SchemaElement element) {
+		for (IndexDefinition id : schema.getIndexes(Label.label(element.label))) {
+			if (!List.of(element.property).equals(toList(id.getPropertyKeys()))) continue;
+			return schema.getIndexState(id).toString();
+		}
+		return "MISSING";
+	}
+
+	private static List<String> toList(Iterable<String> it) {
+		List<String> list = new ArrayList<>();
+		it.forEach(list::add);
+		return list;
+	}
+
+	/**
+	 * Get the access operators of a set of queries, planned in a dedicated read transaction closed before returning
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param queries Queries to explain, by name
+	 * @return The operators of each query, by name
+	 * @throws Neo4jConnectionError
+	 */
+	private static Map<String, String> getAccessOperators(Neo4jAL neo4jAL, Map<String, String> queries) throws Neo4jConnectionError {
+		Map<String, String> operators = new LinkedHashMap<>();
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Neo4jAL planAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (Map.Entry<String, String> en : queries.entrySet()) {
+				operators.put(en.getKey(), getAccessOperators(planAL, en.getValue()));
+			}
+		}
+		return operators;
+	}
+
+	/**
+	 * Get the operators used to access the nodes in the plan of a query (leaves of the plan)
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param query Query to explain
+	 * @return The operators, separated by a comma
+	 */
+	private static String getAccessOperators(Neo4jAL neo4jAL, String query) {
+		try {
+			ExecutionPlanDescription plan = neo4jAL.explainQuery(query);
+			TreeSet<String> leaves = new TreeSet<>();
+			collectLeaves(plan, leaves);
+			return String.join(", ", leaves);
+		} catch (Neo4jQueryException e) {
+			neo4jAL.logError(String.format("Failed to explain the query '%s'.", query), e);
+			return "ERROR";
+		}
+	}
+
+	private static void collectLeaves(ExecutionPlanDescription plan, TreeSet<String> leaves) {
+		if (plan.getChildren().isEmpty()) {
+			leaves.add(plan.getName().split("@")[0]);
+			return;
+		}
+		for (ExecutionPlanDescription child : plan.getChildren()) collectLeaves(child, leaves);
+	}
+
+	/**
+	 * Predicate on a label and a property, evaluated by a filter after a scan
+	 */
+	private static class ScannedPredicate {
+		private final String label;
+		private final String property;
+		private final String operator;
+		private final double rowsIn;
+		private final double rowsOut;
+
+		private ScannedPredicate(String label, String property, String operator, double rowsIn, double rowsOut) {
+			this.label = label;
+			this.property = property;
+			this.operator = operator;
+			this.rowsIn = rowsIn;
+			this.rowsOut = rowsOut;
+		}
+	}
+
+	/**
+	 * Index candidate, aggregated over the groups
+	 */
+	private static class IndexCandidate {
+		private final SchemaElement element;
+		private final Map<Long, Long> groups = new LinkedHashMap<>();
+		private final TreeSet<String> operators = new TreeSet<>();
+		private double hitsBefore = 0.0;
+		private double hitsAfter = 0.0;
+		private String status = "RECOMMENDED";
+		private String message = "";
+
+		private IndexCandidate(String label, String property) {
+			this.element = new SchemaElement(label, property, false);
+		}
+
+		private double getSaved() {
+			return hitsBefore - hitsAfter;
+		}
+	}
+
+	/**
+	 * Recommend the indexes removing the most scans from the requests of the groups. The plan of each
+	 * group is walked, and the predicates on a property evaluated by a filter after a label scan are
+	 * collected. Without index, every row scanned is read ; with an index, only the rows matching. The
+	 * difference is weighted by the number of executions of the group recorded by the profiler.
+	 * The requests are forged for an existing application, and the predicates are attributed to the stable labels
+	 * of the nodes ( Object, SubObject, ... ), never to the label of the application, whichever label the planner scans.
+	 * The groups are planned in a dedicated read transaction, closed before any index is created : the
+	 * locks taken by the planning would block the creation. The recommended indexes can be created : they
+	 * are created in a dedicated transaction, and the plans of the groups are compared before and after,
+	 * in a new transaction. The costs after include all the indexes created.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application used to forge the requests, must be a label of the database
+	 * @param limit Maximum number of indexes recommended
+	 * @param create True to create the recommended indexes
+	 * @return The recommendations, the most profitable first
+	 * @throws Neo4jQueryException
+	 * @throws Neo4jConnectionError
+	 * @throws Neo4jBadRequestException If the application is missing or doesn't exist
+	 */
+	public static List<IndexRecommendationResult> recommendIndexes(Neo4jAL neo4jAL, String application, Long limit, Boolean create) throws Neo4jQueryException, Neo4jConnectionError, Neo4jBadRequestException {
+		if (application == null || application.isBlank()) {
+			throw new Neo4jBadRequestException("An application is required to forge the requests of the groups.", "SCHCxRECI1");
+		}
+		String app = application;
+		Map<Long, Long> executions = GroupProfiler.getExecutionCounts();
+		Map<Long, Group> groups = new HashMap<>();
+		Map<Long, Double> costsBefore = new HashMap<>();
+		Map<String, IndexCandidate> candidates = new LinkedHashMap<>();
+
+		// Planned in a read transaction closed without commit, the transaction of the caller is left untouched
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			boolean exists = false;
+			for (Label label : tx.getAllLabelsInUse()) exists |= label.name().equals(app);
+			if (!exists) {
+				throw new Neo4jBadRequestException(String.format("The application '%s' doesn't exist.", app), "SCHCxRECI2");
+			}
+
+			Neo4jAL planAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (Group group : ParisGroupController.getAllGroupNodes(planAL)) {
+				MetaRequest mr = forgeGroup(planAL, group, app);
+				ExecutionPlanDescription plan = explainRequest(planAL, group, mr);
+				if (plan == null) continue;
+
+				Long idGroup = group.getNode().getId();
+				long frequency = 1L + executions.getOrDefault(idGroup, 0L);
+				groups.put(idGroup, group);
+				costsBefore.put(idGroup, CostEstimator.getCost(plan));
+
+				List<ScannedPredicate> predicates = new ArrayList<>();
+				collectScannedPredicates(plan, getLabelsOfVariables(mr.getRequest(), app), app, predicates);
+				for (ScannedPredicate p : predicates) {
+					IndexCandidate candidate = candidates.computeIfAbsent(p.label + ":" + p.property, k -> new IndexCandidate(p.label, p.property));
+					candidate.groups.put(idGroup, frequency);
+					candidate.operators.add(p.operator);
+					candidate.hitsBefore += frequency * p.rowsIn;
+					candidate.hitsAfter += frequency * Math.min(p.rowsIn, p.rowsOut);
+				}
+			}
+
+			Schema schema = tx.schema();
+			for (IndexCandidate candidate : candidates.values()) {
+				if (exists(schema, candidate.element)) {
+					candidate.status = "EXISTING";
+					candidate.message = "The index exists, but the predicates can't use it ( " + String.join(", ", candidate.operators) + " ).";
+				}
+			}
+		}
+
+		List<IndexCandidate> recommended = candidates.values().stream()
+				.filter(c -> c.getSaved() > 0)
+				.sorted(Comparator.comparingDouble(IndexCandidate::getSaved).reversed())
+				.limit(limit == null || limit < 0 ? Long.MAX_VALUE : limit)
+				.collect(Collectors.toList());
+
+		Map<Long, Double> costsAfter = Map.of();
+		if (Boolean.TRUE.equals(create)) costsAfter = createRecommendedIndexes(neo4jAL, recommended, groups, app);
+
+		List<IndexRecommendationResult> results = new ArrayList<>();
+		for (IndexCandidate c : recommended) {
+			double before = 0.0;
+			double after = costsAfter.isEmpty() ? -1.0 : 0.0;
+			for (Map.Entry<Long, Long> en : c.groups.entrySet()) {
+				before += en.getValue() * costsBefore.getOrDefault(en.getKey(), 0.0);
+				if (!costsAfter.isEmpty()) after += en.getValue() * costsAfter.getOrDefault(en.getKey(), 0.0);
+			}
+
+			results.add(new IndexRecommendationResult(c.element.label, c.element.property, c.status,
+					new ArrayList<>(c.groups.keySet()), c.groups.values().stream().mapToLong(Long::longValue).sum(),
+					new ArrayList<>(c.operators), Math.round(c.hitsBefore), Math.round(c.hitsAfter), before, after, c.message));
+		}
+		return results;
+	}
+
+	/**
+	 * Create the recommended indexes, wait for them to be online and explain the requests of the groups concerned again.
+	 * The schema is modified in a dedicated transaction, data and schema cannot be modified in the same one.
+	 * @return The cost of the plans after the creation, by id of group
+	 */
+	private static Map<Long, Double> createRecommendedIndexes(Neo4jAL neo4jAL, List<IndexCandidate> recommended, Map<Long, Group> groups, String application) {
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Neo4jAL schemaAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (IndexCandidate c : recommended) {
+				if (!c.status.equals("RECOMMENDED")) continue;
+				try {
+					schemaAL.setIndex(c.element.label, c.element.property);
+					c.status = "CREATED";
+				} catch (Neo4jBadRequestException e) {
+					neo4jAL.logError(String.format("Failed to create the %s on %s.", c.element.getKind(), c.element.getTarget()), e);
+					c.status = "FAILED";
+					c.message = e.getMessage();
+				}
+			}
+			tx.commit();
+		} catch (Neo4jConnectionError e) {
+			neo4jAL.logError("Failed to create the recommended indexes.", e);
+			return Map.of();
+		}
+
+		// Wait for the population, and explain again in a new transaction to see the new schema
+		Map<Long, Double> costsAfter = new HashMap<>();
+		try (Transaction tx = neo4jAL.getDb().beginTx()) {
+			Schema schema = tx.schema();
+			String message = "";
+			try {
+				schema.awaitIndexesOnline(INDEX_ONLINE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (IllegalStateException e) {
+				message = "Indexes were not online after " + INDEX_ONLINE_TIMEOUT_SECONDS + " seconds : " + e.getMessage();
+			}
+
+			Neo4jAL afterAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+			for (IndexCandidate c : recommended) {
+				if (c.status.equals("CREATED")) c.message = getIndexState(schema, c.element) + (message.isEmpty() ? "" : " " + message);
+				for (Long idGroup : c.groups.keySet()) {
+					if (costsAfter.containsKey(idGroup)) continue;
+					ExecutionPlanDescription plan = explainGroup(afterAL, groups.get(idGroup), application);
+					costsAfter.put(idGroup, plan == null ? 0.0 : CostEstimator.getCost(plan));
+				}
+			}
+			// Read only, closed without commit
+		} catch (Neo4jConnectionError e) {
+			neo4jAL.logError("Failed to explain the groups after the creation of the indexes.", e);
+			return Map.of();
+		}
+		return costsAfter;
+	}
+
+	private static MetaRequest forgeGroup(Neo4jAL neo4jAL, Group group, String application) {
+		try {
+			return group.forgeRequest(application);
+		} catch (Neo4JTemplateLanguageException e) {
+			neo4jAL.logInfo(String.format("The group '%s' couldn't be forged and was ignored : %s", group.getName(), e.getMessage()));
+			return null;
+		}
+	}
+
+	private static ExecutionPlanDescription explainRequest(Neo4jAL neo4jAL, Group group, MetaRequest mr) {
+		if (mr == null) return null;
+		try {
+			return neo4jAL.explainQuery(RequestNormalizer.stripTerminator(mr.getRequest()));
+		} catch (Neo4jQueryException e) {
+			neo4jAL.logInfo(String.format("The group '%s' couldn't be planned and was ignored : %s", group.getName(), e.getMessage()));
+			return null;
+		}
+	}
+
+	private static ExecutionPlanDescription explainGroup(Neo4jAL neo4jAL, Group group, String application) {
+		return explainRequest(neo4jAL, group, forgeGroup(neo4jAL, group, application));
+	}
+
+	/**
+	 * Labels of the variables declared in a request ( o:Object:App gives Object to o ), without the label of the application
+	 */
+	private static Map<String, List<String>> getLabelsOfVariables(String request, String application) {
+		Map<String, List<String>> labels = new HashMap<>();
+		Matcher m = LABEL_OF_VARIABLE.matcher(request == null ? "" : request);
+		while (m.find()) addLabel(labels, m.group(1), m.group(2), application);
+		return labels;
+	}
+
+	private static void addLabel(Map<String, List<String>> labels, String variable, String label, String application) {
+		if (label.equals(application)) return;
+		List<String> known = labels.computeIfAbsent(variable, k -> new ArrayList<>());
+		if (!known.contains(label)) known.add(label);
+	}
+
+	/**
+	 * Collect the predicates on a property evaluated by the filters of a plan, on variables bound by a label scan
+	 * ( or by a label check in the filter itself, after a scan of all the nodes ). A predicate is attributed to the
+	 * first stable label of its variable : the labels declared in the request, then the labels scanned or checked by the
+	 * plan. The label of the application is never retained, an index on it would only serve this application.
+	 */
+	private static void collectScannedPredicates(ExecutionPlanDescription plan, Map<String, List<String>> declared, String application, List<ScannedPredicate> predicates) {
+		for (ExecutionPlanDescription child : plan.getChildren()) collectScannedPredicates(child, declared, application, predicates);
+		if (!plan.getName().toLowerCase(Locale.ROOT).startsWith("filter")) return;
+
+		Map<String, List<String>> labels = new HashMap<>();
+		declared.forEach((variable, known) -> labels.put(variable, new ArrayList<>(known)));
+		double rowsIn = 0.0;
+		for (ExecutionPlanDescription child : plan.getChildren()) {
+			collectScannedLabels(child, labels, application);
+			rowsIn += getEstimatedRows(child);
+		}
+
+		String details = getDetails(plan);
+		Matcher lm = LABEL_OF_VARIABLE.matcher(details);
+		while (lm.find()) addLabel(labels, lm.group(1), lm.group(2), application);
+
+		Matcher pm = PROPERTY_PREDICATE.matcher(details);
+		while (pm.find()) {
+			String operator = pm.group(3).toUpperCase(Locale.ROOT).replaceAll("\\s+", " ");
+			List<String> known = labels.get(pm.group(1));
+			if (known == null || known.isEmpty() || NOT_INDEXABLE.contains(operator)) continue;
+			predicates.add(new ScannedPredicate(known.get(0), pm.group(2), operator, rowsIn, getEstimatedRows(plan)));
+		}
+	}
+
+	private static void collectScannedLabels(ExecutionPlanDescription plan, Map<String, List<String>> labels, String application) {
+		if (plan.getName().toLowerCase(Locale.ROOT).startsWith("nodebylabelscan")) {
+			Matcher m = LABEL_OF_VARIABLE.matcher(getDetails(plan));
+			if (m.find()) {
+				addLabel(labels, m.group(1), m.group(2), application);
+			} else if (plan.getArguments().get("LabelName") != null && plan.getIdentifiers().size() == 1) {
+				// Older planners only give the label, the variable is the single identifier
+				String label = String.valueOf(plan.getArguments().get("LabelName")).replace(":", "").trim();
+				addLabel(labels, plan.getIdentifiers().iterator().next(), label, application);
+			}
+		}
+		for (ExecutionPlanDescription child : plan.getChildren()) collectScannedLabels(child, labels, application);
+	}
+
+	private static String getDetails(ExecutionPlanDescription plan) {
+		StringBuilder sb = new StringBuilder();
+		for (String argument : DETAIL_ARGUMENTS) {
+			Object value = plan.getArguments().get(argument);
+			if (value != null) sb.append(value).append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	private static double getEstimatedRows(ExecutionPlanDescription plan) {
+		Object estimated = plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+		return estimated instanceof Number ? ((Number) estimated).doubleValue() : 0.0;
+	}
+}
@@ -0,0 +1,63 @@
+package com.castsoftware.paris.controllers;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.results.TrigramIndexResult;
+import com.castsoftware.paris.utils.TrigramIndex;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TrigramIndexController {
+
+	/**
+	 * Build the trigram indexes of string properties of the objects of an application
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @param properties Properties to index
+	 * @return The description of each index built
+	 */
+	public static List<TrigramIndexResult> build(Neo4jAL neo4jAL, String application, List<String> properties) {
+		List<TrigramIndexResult> results = new ArrayList<>();
+		for (String property : properties) {
+			results.add(new TrigramIndexResult(TrigramIndex.build(neo4jAL, application, property)));
+		}
+		return results;
+	}
+
+	/**
+	 * Get the ids of the objects whose property contains a substring, using the trigram index. The index is built
+	 * at the first call, and rebuilt once the objects of the application or the property changed.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @param property Property searched
+	 * @param substring Substring searched
+	 * @param verify True to check the value of each candidate, false to return the candidates of the index ( may contain false positives )
+	 * @return The ids of the objects
+	 * @throws Neo4jQueryException
+	 */
+	public static List<Long> search(Neo4jAL neo4jAL, String application, String property, String substring, Boolean verify) throws Neo4jQueryException {
+		long[] candidates = TrigramIndex.getInstance(neo4jAL, application, property).getCandidates(substring);
+		List<Long> ids = new ArrayList<>(candidates.length);
+		for (long id : candidates) {
+			if (Boolean.TRUE.equals(verify)) {
+				Node n = neo4jAL.getNodeById(id);
+				Object value = n == null ? null : n.getProperty(property, null);
+				if (!(value instanceof String) || !((String) value).contains(substring)) continue;
+			}
+			ids.add(id);
+		}
+		return ids;
+	}
+
+	/**
+	 * Drop the trigram indexes of an application
+	 * @param neo4jAL Neo4j Access Layer
+	 * @param application Name of the application
+	 * @return The number of indexes dropped
+	 */
+	public static Long drop(Neo4jAL neo4jAL, String application) {
+		return (long) TrigramIndex.drop(neo4jAL, application);
+	}
+}
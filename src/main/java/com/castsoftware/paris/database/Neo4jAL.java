@@ -54,7 +54,7 @@ public class Neo4jAL {
    * @throws Neo4jBadRequestException is thrown if the request contains an error, or if the
    *     execution failed.
    */
-  private void setIndex(String label, String property) throws Neo4jBadRequestException {
+  public void setIndex(String label, String property) throws Neo4jBadRequestException {
     String indexQuery = String.format("CREATE INDEX ON:%s(%s)", label, property);
     try {
       this.executeQuery(indexQuery);
@@ -64,6 +64,41 @@ public class Neo4jAL {
     }
   }
 
+  /**
+   * Create a uniqueness constraint on the desired property
+   *
+   * @param label Label concerned by the constraint
+   * @param property Property that must be unique
+   * @throws Neo4jBadRequestException is thrown if the request contains an error, or if the
+   *     execution failed.
+   */
+  public void setUniqueConstraint(String label, String property) throws Neo4jBadRequestException {
+    String constraintQuery =
+        String.format("CREATE CONSTRAINT ON (n:%s) ASSERT n.%s IS UNIQUE", label, property);
+    try {
+      this.executeQuery(constraintQuery);
+    } catch (Neo4jQueryException e) {
+      throw new Neo4jBadRequestException(
+          "Cannot set the constraint.", constraintQuery, e, ERROR_PREFIX + "SETC1");
+    }
+  }
+
+  /**
+   * Get the execution plan of a query without executing it
+   *
+   * @param query Cypher query to explain
+   * @return The plan of the query
+   * @throws Neo4jQueryException If the query cannot be planned
+   */
+  public ExecutionPlanDescription explainQuery(String query) throws Neo4jQueryException {
+    try (Result result = this.transaction.execute("EXPLAIN " + query)) {
+      return result.getExecutionPlanDescription();
+    } catch (QueryExecutionException e) {
+      throw new Neo4jQueryException(
+          "Error while explaining query.", query, e, ERROR_PREFIX + "EXPL1");
+    }
+  }
+
   /**
    * Execute a single query
    *
@@ -20,6 +20,7 @@ import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.exceptions.ProcedureException;
 import com.castsoftware.paris.exceptions.file.FileCorruptedException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.models.Group.Group;
 import org.neo4j.graphdb.*;
 import org.neo4j.logging.Log;
 
@@ -338,6 +339,9 @@ public class Importer {
         n.setProperty(headers.get(i), extractedVal);
       }
 
+      // Imported groups are merged on their content, as the ones created by the controllers
+      if (label.name().equals(Group.getLabelPropertyAsString())) Group.getOrSetContentHash(n);
+
       nodeCreated++;
       idBindingMap.put(
           id, n.getId()); // We need to keep a track of the csv id to bind node together later
@@ -91,6 +91,35 @@ public class MetaLanguageProcessor {
 				"Invalid return tag usage.", metaRequest.getRequest(), "TAGPxPRRT01");
 	}
 
+	/**
+	 * Forge a request tagging its results in the database. The start and end nodes of the relationships
+	 * returned are tagged instead of the relationships. Only counters are returned : the number of nodes
+	 * newly tagged as 'tagged', the number of nodes matched as 'matched' and the highest id matched as 'last'.
+	 * With a batch, the nodes are tagged by increasing id, after the id $last and at most $batch of them, so
+	 * the request can be run again from the last id returned until fewer nodes than the batch are matched.
+	 * @param metaRequest Forged request
+	 * @param relationships True if the request returns relationships
+	 * @param tagging Clauses tagging the node 'val' when 'missing' is true, keeping one row per node
+	 * @param batched True to tag the nodes by batches of $batch ids
+	 * @return The request
+	 */
+	public static String forgeTagRequest(MetaRequest metaRequest, boolean relationships, String tagging, boolean batched) {
+		String request = RequestNormalizer.stripTerminator(metaRequest.getRequest());
+		StringBuilder sb = new StringBuilder(String.format("CALL { %s } ", request));
+
+		if (relationships) {
+			sb.append(String.format("WITH `%s` AS rel WHERE rel IS NOT NULL UNWIND [startNode(rel), endNode(rel)] AS val ", metaRequest.getReturnValue()));
+		} else {
+			sb.append(String.format("WITH `%s` AS val ", metaRequest.getReturnValue()));
+		}
+
+		sb.append("WITH DISTINCT val WHERE val IS NOT NULL ");
+		if (batched) sb.append("AND ID(val) > $last WITH val ORDER BY ID(val) LIMIT $batch ");
+		sb.append(tagging);
+		sb.append(" RETURN sum(CASE WHEN missing THEN 1 ELSE 0 END) AS tagged, count(val) AS matched, max(ID(val)) AS last");
+		return sb.toString();
+	}
+
 	/**
 	 * Forge the meta request
 	 * @param request Request of the tag
@@ -0,0 +1,137 @@
+package com.castsoftware.paris.metaLanguage;
+
+import org.neo4j.graphdb.ExecutionPlanDescription;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Performance linter of the requests written in the groups. The plan of a forged request is walked
+ * and the operators known to be slow on large applications are reported : cartesian products, scans
+ * of all the nodes, variable-length expands without upper bound and filters on substrings, which
+ * can't use an index. Each finding carries a severity and the cost estimated by the planner under
+ * the operator.
+ */
+public class RequestLinter {
+
+	public static final String HIGH = "HIGH";
+	public static final String MEDIUM = "MEDIUM";
+
+	private static final String ESTIMATED_ROWS_ARGUMENT = "EstimatedRows";
+
+	// Arguments describing an operator, depending on the version of the planner
+	private static final List<String> DETAIL_ARGUMENTS = List.of("Details", "ExpandExpression", "Expression", "LegacyExpression");
+
+	// Bounded length : *3, *..5, *1..5
+	private static final Pattern BOUNDED_LENGTH = Pattern.compile("\\*\\s*(\\d+\\s*(?!\\.)|\\d*\\s*\\.\\.\\s*\\d+)");
+	private static final Pattern SUBSTRING_PREDICATE = Pattern.compile("\\b(CONTAINS|ENDS\\s+WITH)\\b", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * Operator of a plan flagged by the linter
+	 */
+	public static class Finding {
+		public final String operator;
+		public final String severity;
+		public final String message;
+		public final long estimatedRows;
+		public final double estimatedCost;
+
+		private Finding(String operator, String severity, String message, long estimatedRows, double estimatedCost) {
+			this.operator = operator;
+			this.severity = severity;
+			this.message = message;
+			this.estimatedRows = estimatedRows;
+			this.estimatedCost = estimatedCost;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("[%s] %s : %s (estimated cost : %.0f)", severity, operator, message, estimatedCost);
+		}
+	}
+
+	/**
+	 * Lint the plan of a request
+	 * @param plan Plan of the request, obtained with EXPLAIN
+	 * @return The findings, the most severe and expensive first
+	 */
+	public static List<Finding> lint(ExecutionPlanDescription plan) {
+		List<Finding> findings = new ArrayList<>();
+		if (plan != null) visit(plan, findings);
+		findings.sort(Comparator.comparingInt((Finding f) -> rank(f.severity))
+				.thenComparing(Comparator.comparingDouble((Finding f) -> f.estimatedCost).reversed()));
+		return findings;
+	}
+
+	private static void visit(ExecutionPlanDescription plan, List<Finding> findings) {
+		Finding finding = check(plan);
+		if (finding != null) findings.add(finding);
+		for (ExecutionPlanDescription child : plan.getChildren()) visit(child, findings);
+	}
+
+	private static Finding check(ExecutionPlanDescription plan) {
+		String operator = plan.getName();
+		if (operator == null) return null;
+		String name = operator.toLowerCase(Locale.ROOT);
+		String details = getDetails(plan);
+
+		if (name.startsWith("cartesianproduct")) {
+			return finding(plan, HIGH, "Cartesian product between disconnected patterns. Link the patterns or split the request.");
+		}
+		if (name.startsWith("allnodesscan")) {
+			return finding(plan, HIGH, String.format("Scan of all the nodes of the database%s. Add a label to the pattern.", identifiers(plan)));
+		}
+		if (name.startsWith("varlengthexpand") && !BOUNDED_LENGTH.matcher(details).find()) {
+			return finding(plan, HIGH, String.format("Variable-length path without upper bound%s. Set a maximum length.", details.isBlank() ? "" : " on " + details));
+		}
+		if (name.startsWith("filter") && SUBSTRING_PREDICATE.matcher(details).find()) {
+			return finding(plan, MEDIUM, "Substring predicate evaluated on every row, no index can be used. Narrow the scan with an equality or a prefix ( STARTS WITH ) first.");
+		}
+		return null;
+	}
+
+	private static Finding finding(ExecutionPlanDescription plan, String severity, String message) {
+		return new Finding(plan.getName(), severity, message, getRows(plan), getCost(plan));
+	}
+
+	private static String getDetails(ExecutionPlanDescription plan) {
+		StringBuilder sb = new StringBuilder();
+		for (String argument : DETAIL_ARGUMENTS) {
+			Object value = plan.getArguments().get(argument);
+			if (value != null) sb.append(value).append(' ');
+		}
+		return sb.toString().trim();
+	}
+
+	private static String identifiers(ExecutionPlanDescription plan) {
+		if (plan.getIdentifiers() == null || plan.getIdentifiers().isEmpty()) return "";
+		return " for " + String.join(", ", plan.getIdentifiers());
+	}
+
+	private static int rank(String severity) {
+		switch (severity) {
+			case HIGH:
+				return 0;
+			case MEDIUM:
+				return 1;
+			default:
+				return 2;
+		}
+	}
+
+	private static long getRows(ExecutionPlanDescription plan) {
+		Object estimated = plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+		return estimated instanceof Number ? Math.round(((Number) estimated).doubleValue()) : 0L;
+	}
+
+	// Rows estimated for the operator and all the operators feeding it
+	private static double getCost(ExecutionPlanDescription plan) {
+		Object estimated = plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+		double cost = estimated instanceof Number ? ((Number) estimated).doubleValue() : 0.0;
+		for (ExecutionPlanDescription child : plan.getChildren()) cost += getCost(child);
+		return cost;
+	}
+}
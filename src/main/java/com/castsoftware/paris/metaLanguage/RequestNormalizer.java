@@ -0,0 +1,134 @@
+package com.castsoftware.paris.metaLanguage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Canonical form of the Cypher requests written in the groups. Comments are removed, the whitespaces
+ * are collapsed and the keywords are upper-cased, so two requests that only differ by their layout
+ * share the same hash. Strings literals and escaped identifiers are kept untouched.
+ */
+public class RequestNormalizer {
+
+	private static final Set<String> KEYWORDS = Set.of(
+			"ALL", "AND", "AS", "ASC", "ASCENDING", "BY", "CALL", "CASE", "CONTAINS", "CREATE",
+			"DELETE", "DESC", "DESCENDING", "DETACH", "DISTINCT", "ELSE", "END", "ENDS", "EXISTS", "EXPLAIN",
+			"FALSE", "FOREACH", "IN", "IS", "LIMIT", "MATCH", "MERGE", "NOT", "NULL", "ON", "OPTIONAL",
+			"OR", "ORDER", "PROFILE", "REMOVE", "RETURN", "SET", "SKIP", "STARTS", "THEN", "TRUE", "UNION",
+			"UNWIND", "WHEN", "WHERE", "WITH", "XOR", "YIELD");
+
+	private static final String PUNCTUATION = "()[]{},:;.=<>+-*/|!";
+	private static final String NAME_PREFIXES = ":.$|";
+
+	/**
+	 * Get the canonical form of a request
+	 * @param request Request to normalize
+	 * @return The normalized request
+	 */
+	public static String normalize(String request) {
+		if (request == null) return "";
+
+		StringBuilder sb = new StringBuilder(request.length());
+		boolean pendingSpace = false;
+		int i = 0;
+		int len = request.length();
+
+		while (i < len) {
+			char c = request.charAt(i);
+
+			// Comments
+			if (c == '/' && i + 1 < len && request.charAt(i + 1) == '/') {
+				while (i < len && request.charAt(i) != '\n') i++;
+				pendingSpace = true;
+				continue;
+			}
+			if (c == '/' && i + 1 < len && request.charAt(i + 1) == '*') {
+				int end = request.indexOf("*/", i + 2);
+				i = end < 0 ? len : end + 2;
+				pendingSpace = true;
+				continue;
+			}
+
+			if (Character.isWhitespace(c)) {
+				pendingSpace = true;
+				i++;
+				continue;
+			}
+
+			// Keep a single space between two words only
+			if (pendingSpace && sb.length() > 0
+					&& PUNCTUATION.indexOf(c) < 0
+					&& PUNCTUATION.indexOf(sb.charAt(sb.length() - 1)) < 0) {
+				sb.append(' ');
+			}
+			pendingSpace = false;
+
+			// Literals and escaped identifiers
+			if (c == '\'' || c == '"' || c == '`') {
+				int start = i++;
+				while (i < len && request.charAt(i) != c) {
+					if (request.charAt(i) == '\\' && c != '`') i++;
+					i++;
+				}
+				i = Math.min(i + 1, len);
+				sb.append(request, start, i);
+				continue;
+			}
+
+			if (Character.isLetter(c) || c == '_') {
+				int start = i;
+				while (i < len && (Character.isLetterOrDigit(request.charAt(i)) || request.charAt(i) == '_')) i++;
+				String word = request.substring(start, i);
+				String upper = word.toUpperCase(Locale.ROOT);
+				// Labels, properties, parameters and relationship types ( [:CALL|IN] ) are case sensitive
+				boolean isName = start > 0 && NAME_PREFIXES.indexOf(request.charAt(start - 1)) >= 0;
+				sb.append(!isName && KEYWORDS.contains(upper) ? upper : word);
+				continue;
+			}
+
+			sb.append(c);
+			i++;
+		}
+
+		// Trailing semicolons are not part of the request
+		int end = sb.length();
+		while (end > 0 && sb.charAt(end - 1) == ';') end--;
+		return sb.substring(0, end);
+	}
+
+	/**
+	 * Remove the trailing semicolons and whitespaces of a request, so it can be embedded in another one
+	 * @param request Request to clean
+	 * @return The request without terminator
+	 */
+	public static String stripTerminator(String request) {
+		if (request == null) return "";
+		int end = request.length();
+		while (end > 0 && (request.charAt(end - 1) == ';' || Character.isWhitespace(request.charAt(end - 1)))) end--;
+		return request.substring(0, end);
+	}
+
+	/**
+	 * Hash of the normalized parts
+	 * @param parts Parts of the content to hash ( request, return value, ... )
+	 * @return SHA-256 of the normalized parts as an hexadecimal string
+	 */
+	public static String hash(String... parts) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String part : parts) {
+				digest.update(normalize(part).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
+			}
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available on this JVM.", e);
+		}
+	}
+}
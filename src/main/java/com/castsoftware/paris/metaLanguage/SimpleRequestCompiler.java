@@ -0,0 +1,563 @@
+package com.castsoftware.paris.metaLanguage;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Compiler of the simple group requests into Java conditions. A simple request matches a single
+ * node by its labels, filters it on its own properties and returns it :
+ *
+ * <pre>MATCH (o:Object:`App`) WHERE o.Type = 'C# Class' AND o.Name CONTAINS 'Controller' RETURN o AS val</pre>
+ *
+ * The conditions support the comparisons, CONTAINS, STARTS WITH, ENDS WITH, regular expressions,
+ * IN, IS NULL, exists() and the label checks, combined with AND, OR, NOT and parentheses. They are
+ * evaluated with the three-valued logic of Cypher. Any other request is not compiled, and must be
+ * run by the database.
+ */
+public class SimpleRequestCompiler {
+
+	/**
+	 * Values of a node read by the compiled conditions
+	 */
+	public interface Row {
+		Object getProperty(String key);
+
+		boolean hasLabel(String label);
+	}
+
+	/**
+	 * Compiled condition. Returns null when the result is unknown ( a null value is compared ).
+	 */
+	public interface Condition {
+		Boolean test(Row row);
+	}
+
+	/**
+	 * Simple request compiled
+	 */
+	public static class SimpleRequest {
+		private final List<String> labels;
+		private final Condition condition;
+		private final Set<String> properties;
+
+		private SimpleRequest(List<String> labels, Condition condition, Set<String> properties) {
+			this.labels = labels;
+			this.condition = condition;
+			this.properties = properties;
+		}
+
+		/**
+		 * Labels the node must hold
+		 * @return The labels, in the order of the request
+		 */
+		public List<String> getLabels() {
+			return labels;
+		}
+
+		/**
+		 * Properties read by the condition
+		 * @return The properties
+		 */
+		public Set<String> getProperties() {
+			return properties;
+		}
+
+		/**
+		 * Check if a node is returned by the request
+		 * @param row Values of the node
+		 * @return True if the node holds the labels and the condition is true
+		 */
+		public boolean matches(Row row) {
+			for (String label : labels) {
+				if (!row.hasLabel(label)) return false;
+			}
+			return condition == null || Boolean.TRUE.equals(condition.test(row));
+		}
+	}
+
+	// Raised when the request doesn't have the simple shape
+	private static class NotSimpleException extends RuntimeException {
+		private NotSimpleException() {
+			super(null, null, false, false);
+		}
+	}
+
+	private enum TokenType { WORD, QUOTED, STRING, NUMBER, SYMBOL }
+
+	private static class Token {
+		private final TokenType type;
+		private final String text;
+		private final Object value;
+
+		private Token(TokenType type, String text, Object value) {
+			this.type = type;
+			this.text = text;
+			this.value = value;
+		}
+
+		private boolean isKeyword(String keyword) {
+			return type == TokenType.WORD && text.equalsIgnoreCase(keyword);
+		}
+
+		private boolean isSymbol(String symbol) {
+			return type == TokenType.SYMBOL && text.equals(symbol);
+		}
+
+		private boolean isName() {
+			return type == TokenType.WORD || type == TokenType.QUOTED;
+		}
+	}
+
+	private final List<Token> tokens;
+	private final Set<String> properties = new LinkedHashSet<>();
+	private int position = 0;
+	private String variable;
+
+	private SimpleRequestCompiler(List<Token> tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Compile a forged request
+	 * @param mr Forged request
+	 * @return The compiled request, null if the request is not simple
+	 */
+	public static SimpleRequest compile(MetaRequest mr) {
+		if (mr == null || mr.getType() == MetaRequestType.RELATIONSHIP) return null;
+		return compile(mr.getRequest(), mr.getReturnValue());
+	}
+
+	/**
+	 * Compile a request
+	 * @param request Request, with the anchors already replaced
+	 * @param returnValue Name of the column returned
+	 * @return The compiled request, null if the request is not simple
+	 */
+	public static SimpleRequest compile(String request, String returnValue) {
+		if (request == null || request.isBlank()) return null;
+		try {
+			SimpleRequestCompiler compiler = new SimpleRequestCompiler(tokenize(RequestNormalizer.stripTerminator(RequestNormalizer.normalize(request))));
+			return compiler.parseRequest(returnValue);
+		} catch (NotSimpleException | PatternSyntaxException e) {
+			return null;
+		}
+	}
+
+	// MATCH (v:Label...) [WHERE condition] RETURN [DISTINCT] v [AS alias]
+	private SimpleRequest parseRequest(String returnValue) {
+		expectKeyword("MATCH");
+		expectSymbol("(");
+		variable = expectName();
+		List<String> labels = new ArrayList<>();
+		while (peek().isSymbol(":")) {
+			next();
+			labels.add(expectName());
+		}
+		if (labels.isEmpty()) throw new NotSimpleException();
+		expectSymbol(")");
+
+		Condition condition = null;
+		if (peek().isKeyword("WHERE")) {
+			next();
+			condition = parseOr();
+		}
+
+		expectKeyword("RETURN");
+		if (peek().isKeyword("DISTINCT")) next();
+		if (!expectName().equals(variable)) throw new NotSimpleException();
+		String alias = variable;
+		if (peek().isKeyword("AS")) {
+			next();
+			alias = expectName();
+		}
+		if (returnValue != null && !returnValue.isBlank() && !alias.equals(returnValue)) throw new NotSimpleException();
+		if (position != tokens.size()) throw new NotSimpleException();
+
+		return new SimpleRequest(Collections.unmodifiableList(labels), condition, Collections.unmodifiableSet(properties));
+	}
+
+	private Condition parseOr() {
+		List<Condition> operands = new ArrayList<>();
+		operands.add(parseAnd());
+		while (peek().isKeyword("OR")) {
+			next();
+			operands.add(parseAnd());
+		}
+		if (operands.size() == 1) return operands.get(0);
+
+		return row -> {
+			boolean unknown = false;
+			for (Condition c : operands) {
+				Boolean value = c.test(row);
+				if (value == null) unknown = true;
+				else if (value) return true;
+			}
+			return unknown ? null : false;
+		};
+	}
+
+	private Condition parseAnd() {
+		List<Condition> operands = new ArrayList<>();
+		operands.add(parseNot());
+		while (peek().isKeyword("AND")) {
+			next();
+			operands.add(parseNot());
+		}
+		if (operands.size() == 1) return operands.get(0);
+
+		return row -> {
+			boolean unknown = false;
+			for (Condition c : operands) {
+				Boolean value = c.test(row);
+				if (value == null) unknown = true;
+				else if (!value) return false;
+			}
+			return unknown ? null : true;
+		};
+	}
+
+	private Condition parseNot() {
+		if (peek().isKeyword("NOT")) {
+			next();
+			Condition operand = parseNot();
+			return row -> {
+				Boolean value = operand.test(row);
+				return value == null ? null : !value;
+			};
+		}
+		if (peek().isSymbol("(")) {
+			next();
+			Condition inner = parseOr();
+			expectSymbol(")");
+			return inner;
+		}
+		return parsePredicate();
+	}
+
+	private Condition parsePredicate() {
+		// exists(v.Prop)
+		if (peek().isKeyword("EXISTS")) {
+			next();
+			expectSymbol("(");
+			String key = parseProperty();
+			expectSymbol(")");
+			return row -> row.getProperty(key) != null;
+		}
+
+		// literal IN v.Prop
+		if (peek().type == TokenType.STRING || peek().type == TokenType.NUMBER) {
+			Object literal = parseLiteral();
+			expectKeyword("IN");
+			String key = parseProperty();
+			return row -> inList(literal, row.getProperty(key));
+		}
+
+		// v:Label
+		if (peek().isName() && peek(1).isSymbol(":")) {
+			if (!expectName().equals(variable)) throw new NotSimpleException();
+			List<String> labels = new ArrayList<>();
+			while (peek().isSymbol(":")) {
+				next();
+				labels.add(expectName());
+			}
+			return row -> {
+				for (String label : labels) {
+					if (!row.hasLabel(label)) return false;
+				}
+				return true;
+			};
+		}
+
+		String key = parseProperty();
+		Token op = next();
+
+		if (op.isKeyword("IS")) {
+			boolean negated = false;
+			if (peek().isKeyword("NOT")) {
+				next();
+				negated = true;
+			}
+			expectKeyword("NULL");
+			boolean notNull = negated;
+			return row -> (row.getProperty(key) != null) == notNull;
+		}
+
+		if (op.isKeyword("IN")) {
+			List<Object> list = parseList();
+			return row -> {
+				Object value = row.getProperty(key);
+				if (value == null) return null;
+				boolean unknown = false;
+				for (Object item : list) {
+					Boolean eq = equalsValue(value, item);
+					if (eq == null) unknown = true;
+					else if (eq) return true;
+				}
+				return unknown ? null : false;
+			};
+		}
+
+		if (op.isKeyword("CONTAINS")) {
+			String literal = parseString();
+			return row -> {
+				Object value = row.getProperty(key);
+				return value instanceof String ? ((String) value).contains(literal) : null;
+			};
+		}
+
+		if (op.isKeyword("STARTS") || op.isKeyword("ENDS")) {
+			expectKeyword("WITH");
+			String literal = parseString();
+			boolean starts = op.isKeyword("STARTS");
+			return row -> {
+				Object value = row.getProperty(key);
+				if (!(value instanceof String)) return null;
+				return starts ? ((String) value).startsWith(literal) : ((String) value).endsWith(literal);
+			};
+		}
+
+		if (op.isSymbol("=~")) {
+			Pattern pattern = Pattern.compile(parseString());
+			return row -> {
+				Object value = row.getProperty(key);
+				return value instanceof String ? pattern.matcher((String) value).matches() : null;
+			};
+		}
+
+		if (op.isSymbol("=") || op.isSymbol("<>")) {
+			Object literal = parseLiteral();
+			boolean equal = op.isSymbol("=");
+			return row -> {
+				Boolean eq = equalsValue(row.getProperty(key), literal);
+				return eq == null ? null : eq == equal;
+			};
+		}
+
+		if (op.isSymbol("<") || op.isSymbol(">") || op.isSymbol("<=") || op.isSymbol(">=")) {
+			Object literal = parseLiteral();
+			String symbol = op.text;
+			return row -> {
+				Integer cmp = compareValues(row.getProperty(key), literal);
+				if (cmp == null) return null;
+				switch (symbol) {
+					case "<":
+						return cmp < 0;
+					case ">":
+						return cmp > 0;
+					case "<=":
+						return cmp <= 0;
+					default:
+						return cmp >= 0;
+				}
+			};
+		}
+
+		throw new NotSimpleException();
+	}
+
+	// v.Prop
+	private String parseProperty() {
+		if (!expectName().equals(variable)) throw new NotSimpleException();
+		expectSymbol(".");
+		String key = expectName();
+		properties.add(key);
+		return key;
+	}
+
+	private List<Object> parseList() {
+		expectSymbol("[");
+		List<Object> list = new ArrayList<>();
+		if (peek().isSymbol("]")) {
+			next();
+			return list;
+		}
+		do {
+			list.add(parseLiteral());
+		} while (acceptSymbol(","));
+		expectSymbol("]");
+		return list;
+	}
+
+	private String parseString() {
+		Token t = next();
+		if (t.type != TokenType.STRING) throw new NotSimpleException();
+		return (String) t.value;
+	}
+
+	private Object parseLiteral() {
+		Token t = next();
+		if (t.type == TokenType.STRING || t.type == TokenType.NUMBER) return t.value;
+		if (t.isSymbol("-") && peek().type == TokenType.NUMBER) {
+			Object value = next().value;
+			return value instanceof Long ? (Object) (-(Long) value) : (Object) (-(Double) value);
+		}
+		if (t.isKeyword("TRUE")) return Boolean.TRUE;
+		if (t.isKeyword("FALSE")) return Boolean.FALSE;
+		if (t.isKeyword("NULL")) return null;
+		throw new NotSimpleException();
+	}
+
+	private static Boolean equalsValue(Object a, Object b) {
+		if (a == null || b == null) return null;
+		if (a instanceof Number && b instanceof Number) return compareNumbers((Number) a, (Number) b) == 0;
+		if (a.getClass().isArray() || b.getClass().isArray()) return false;
+		return a.equals(b);
+	}
+
+	private static Integer compareValues(Object a, Object b) {
+		if (a instanceof Number && b instanceof Number) return compareNumbers((Number) a, (Number) b);
+		if (a instanceof String && b instanceof String) return ((String) a).compareTo((String) b);
+		return null;
+	}
+
+	private static int compareNumbers(Number a, Number b) {
+		if ((a instanceof Long || a instanceof Integer) && (b instanceof Long || b instanceof Integer)) {
+			return Long.compare(a.longValue(), b.longValue());
+		}
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+
+	private static Boolean inList(Object literal, Object list) {
+		if (list == null || !list.getClass().isArray()) return null;
+		for (int i = 0; i < Array.getLength(list); i++) {
+			if (Boolean.TRUE.equals(equalsValue(Array.get(list, i), literal))) return true;
+		}
+		return false;
+	}
+
+	// Tokens
+
+	private Token peek() {
+		return peek(0);
+	}
+
+	private Token peek(int offset) {
+		int i = position + offset;
+		return i < tokens.size() ? tokens.get(i) : new Token(TokenType.SYMBOL, "", null);
+	}
+
+	private Token next() {
+		if (position >= tokens.size()) throw new NotSimpleException();
+		return tokens.get(position++);
+	}
+
+	private void expectKeyword(String keyword) {
+		if (!next().isKeyword(keyword)) throw new NotSimpleException();
+	}
+
+	private void expectSymbol(String symbol) {
+		if (!next().isSymbol(symbol)) throw new NotSimpleException();
+	}
+
+	private boolean acceptSymbol(String symbol) {
+		if (!peek().isSymbol(symbol)) return false;
+		next();
+		return true;
+	}
+
+	private String expectName() {
+		Token t = next();
+		if (!t.isName()) throw new NotSimpleException();
+		return t.text;
+	}
+
+	private static List<Token> tokenize(String request) {
+		List<Token> tokens = new ArrayList<>();
+		int i = 0;
+		int len = request.length();
+
+		while (i < len) {
+			char c = request.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+				continue;
+			}
+
+			// Strings
+			if (c == '\'' || c == '"') {
+				StringBuilder sb = new StringBuilder();
+				int j = i + 1;
+				while (j < len && request.charAt(j) != c) {
+					char d = request.charAt(j);
+					if (d == '\\' && j + 1 < len) {
+						char e = request.charAt(++j);
+						switch (e) {
+							case 'n':
+								sb.append('\n');
+								break;
+							case 't':
+								sb.append('\t');
+								break;
+							case 'r':
+								sb.append('\r');
+								break;
+							default:
+								sb.append(e);
+						}
+					} else {
+						sb.append(d);
+					}
+					j++;
+				}
+				if (j >= len) throw new NotSimpleException();
+				tokens.add(new Token(TokenType.STRING, request.substring(i, j + 1), sb.toString()));
+				i = j + 1;
+				continue;
+			}
+
+			// Escaped identifiers
+			if (c == '`') {
+				int end = request.indexOf('`', i + 1);
+				if (end < 0) throw new NotSimpleException();
+				tokens.add(new Token(TokenType.QUOTED, request.substring(i + 1, end), null));
+				i = end + 1;
+				continue;
+			}
+
+			if (Character.isDigit(c)) {
+				int j = i;
+				boolean decimal = false;
+				while (j < len && (Character.isDigit(request.charAt(j))
+						|| (request.charAt(j) == '.' && j + 1 < len && Character.isDigit(request.charAt(j + 1))))) {
+					if (request.charAt(j) == '.') decimal = true;
+					j++;
+				}
+				String text = request.substring(i, j);
+				Object value = decimal ? (Object) Double.parseDouble(text) : (Object) Long.parseLong(text);
+				tokens.add(new Token(TokenType.NUMBER, text, value));
+				i = j;
+				continue;
+			}
+
+			if (Character.isLetter(c) || c == '_') {
+				int j = i;
+				while (j < len && (Character.isLetterOrDigit(request.charAt(j)) || request.charAt(j) == '_')) j++;
+				tokens.add(new Token(TokenType.WORD, request.substring(i, j), null));
+				i = j;
+				continue;
+			}
+
+			String two = i + 1 < len ? request.substring(i, i + 2) : "";
+			if (two.equals("<>") || two.equals("<=") || two.equals(">=") || two.equals("=~")) {
+				tokens.add(new Token(TokenType.SYMBOL, two, null));
+				i += 2;
+				continue;
+			}
+			if ("()[]{},:.=<>-".indexOf(c) >= 0) {
+				tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), null));
+				i++;
+				continue;
+			}
+
+			// Parameters, maps, arithmetic, ... are not simple
+			throw new NotSimpleException();
+		}
+		return tokens;
+	}
+}
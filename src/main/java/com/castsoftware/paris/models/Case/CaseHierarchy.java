@@ -0,0 +1,157 @@
+package com.castsoftware.paris.models.Case;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.utils.GraphVersion;
+import com.castsoftware.paris.utils.VersionedCache;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory adjacency of the Case / Group tree. The hierarchy is loaded per database from a
+ * dedicated read transaction, so it only holds committed data, and bound to the version of the
+ * labels and relationships it reads : it is loaded again after a commit creating, deleting or
+ * moving a case or a group, whoever made it ( controllers, importer, plain Cypher ).
+ * Only the ids are kept, the nodes are read when the results are built.
+ */
+public class CaseHierarchy {
+
+	private static final VersionedCache<CaseHierarchy> INSTANCES = new VersionedCache<>();
+
+	private final Set<Long> cases = new LinkedHashSet<>();
+	private final Map<Long, Set<Long>> parentCases = new HashMap<>();
+	private final Map<Long, Set<Long>> childCases = new HashMap<>();
+	private final Map<Long, Set<Long>> childGroups = new HashMap<>();
+
+	private CaseHierarchy() {
+	}
+
+	/**
+	 * Scopes of the graph read by the hierarchy
+	 * @return The scopes
+	 */
+	private static List<String> getScopes() {
+		return List.of(
+				GraphVersion.label(Case.getLabelPropertyAsString()),
+				GraphVersion.label(Group.getLabelPropertyAsString()),
+				GraphVersion.relationship(Case.getToCaseRelationship()),
+				GraphVersion.relationship(Group.getToDiocaseRelationship()));
+	}
+
+	/**
+	 * Get the hierarchy of the database. The hierarchy is loaded at the first call, and again once
+	 * a committed transaction changed the cases, the groups or their links.
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return The hierarchy
+	 * @throws Neo4jQueryException If the hierarchy couldn't be loaded
+	 */
+	public static CaseHierarchy getInstance(Neo4jAL neo4jAL) throws Neo4jQueryException {
+		long version = GraphVersion.get(neo4jAL, getScopes());
+		try {
+			return INSTANCES.get(neo4jAL.getDb().databaseName(), version, () -> load(neo4jAL));
+		} catch (RuntimeException e) {
+			throw new Neo4jQueryException("Failed to load the case hierarchy.", e, "CASHxGETI1");
+		}
+	}
+
+	/**
+	 * Drop the hierarchy of the database. It will be reloaded at the next call.
+	 * @param neo4jAL Neo4j Access Layer
+	 */
+	public static void invalidate(Neo4jAL neo4jAL) {
+		INSTANCES.invalidate(neo4jAL.getDb().databaseName());
+	}
+
+	/**
+	 * Walk the INCLUDES and ADDRESSES relationships once to build the adjacency
+	 * @param neo4jAL Neo4j Access Layer
+	 * @return The hierarchy loaded
+	 */
+	private static CaseHierarchy load(Neo4jAL neo4jAL) {
+		CaseHierarchy hierarchy = new CaseHierarchy();
+		RelationshipType toCase = RelationshipType.withName(Case.getToCaseRelationship());
+		RelationshipType toGroup = RelationshipType.withName(Group.getToDiocaseRelationship());
+
+		try (Transaction tx = neo4jAL.getDb().beginTx();
+			 ResourceIterator<Node> it = tx.findNodes(Case.getLabelProperty())) {
+			while (it.hasNext()) {
+				Node n = it.next();
+				hierarchy.addCase(n.getId());
+
+				for (Relationship rel : n.getRelationships(Direction.OUTGOING, toCase)) {
+					Node child = rel.getEndNode();
+					if (child.hasLabel(Case.getLabelProperty())) hierarchy.attachCase(n.getId(), child.getId());
+				}
+
+				for (Relationship rel : n.getRelationships(Direction.INCOMING, toGroup)) {
+					Node group = rel.getStartNode();
+					if (group.hasLabel(Group.getLabelProperty())) hierarchy.attachGroup(n.getId(), group.getId());
+				}
+			}
+		}
+
+		neo4jAL.logInfo(String.format("Case hierarchy loaded with %d cases.", hierarchy.cases.size()));
+		return hierarchy;
+	}
+
+	private void addCase(Long idCase) {
+		cases.add(idCase);
+	}
+
+	private void attachCase(Long idParent, Long idChild) {
+		cases.add(idParent);
+		cases.add(idChild);
+		childCases.computeIfAbsent(idParent, k -> new LinkedHashSet<>()).add(idChild);
+		parentCases.computeIfAbsent(idChild, k -> new LinkedHashSet<>()).add(idParent);
+	}
+
+	private void attachGroup(Long idCase, Long idGroup) {
+		cases.add(idCase);
+		childGroups.computeIfAbsent(idCase, k -> new LinkedHashSet<>()).add(idGroup);
+	}
+
+	/**
+	 * Get the cases without any parent case
+	 * @return List of ids
+	 */
+	public List<Long> getRootCases() {
+		List<Long> roots = new ArrayList<>();
+		for (Long c : cases) {
+			if (parentCases.getOrDefault(c, Collections.emptySet()).isEmpty()) roots.add(c);
+		}
+		return roots;
+	}
+
+	public List<Long> getCases() {
+		return new ArrayList<>(cases);
+	}
+
+	public List<Long> getChildCases(Long idCase) {
+		return new ArrayList<>(childCases.getOrDefault(idCase, Collections.emptySet()));
+	}
+
+	public List<Long> getChildGroups(Long idCase) {
+		return new ArrayList<>(childGroups.getOrDefault(idCase, Collections.emptySet()));
+	}
+
+	public List<Long> getParentCases(Long idCase) {
+		return new ArrayList<>(parentCases.getOrDefault(idCase, Collections.emptySet()));
+	}
+
+	public boolean containsCase(Long idCase) {
+		return cases.contains(idCase);
+	}
+}
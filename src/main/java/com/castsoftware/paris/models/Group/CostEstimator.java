@@ -0,0 +1,211 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.RequestNormalizer;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Estimation of the execution time of the groups, used to start the longest groups first. The
+ * first estimate of a group comes from the plan of its request : the rows estimated by the planner
+ * for each operator are summed into a cost, converted in milliseconds with the ratio observed on
+ * the groups already executed on the same database. Once a group ran, its own measured time is used, smoothed over the
+ * runs. Estimates are kept per group and application, dropped when the request changes or the
+ * group is deleted, and the least recently used are evicted above the maximum number of entries.
+ */
+public class CostEstimator {
+
+  private static final String ESTIMATED_ROWS_ARGUMENT = "EstimatedRows";
+
+  // Weight of the last run in the smoothed time
+  private static final double SMOOTHING = 0.5;
+
+  private static final int MAX_ENTRIES =
+      Integer.parseInt(Configuration.get("paris.cost.cache.max_entries"));
+
+  // Estimates by database, group and application, least recently used evicted first
+  private static final Map<String, Estimate> ESTIMATES =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Estimate> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  // Sums of the costs and times observed by database, used to convert the plan costs in milliseconds
+  private static final Map<String, double[]> OBSERVED = new HashMap<>();
+
+  /** Estimate of a group on an application */
+  public static class Estimate {
+    private final String database;
+    private final String contentHash;
+    private final long estimatedRows;
+    private final double cost;
+    private double measuredTime = -1.0;
+    private long runs = 0L;
+
+    private Estimate(String database, String contentHash, long estimatedRows, double cost) {
+      this.database = database;
+      this.contentHash = contentHash;
+      this.estimatedRows = estimatedRows;
+      this.cost = cost;
+    }
+
+    public long getEstimatedRows() {
+      return estimatedRows;
+    }
+
+    public double getCost() {
+      return cost;
+    }
+
+    public long getRuns() {
+      return runs;
+    }
+
+    /**
+     * Get the expected execution time
+     *
+     * @return The smoothed measured time, or the cost converted in milliseconds if never measured
+     */
+    public double getExpectedTime() {
+      if (runs > 0) return measuredTime;
+      return cost * getMillisPerCost(database);
+    }
+  }
+
+  private CostEstimator() {}
+
+  private static String key(Neo4jAL neo4jAL, Long idGroup, String application) {
+    return neo4jAL.getDb().databaseName() + "::" + idGroup + "::" + application;
+  }
+
+  private static synchronized double getMillisPerCost(String database) {
+    double[] observed = OBSERVED.get(database);
+    return observed != null && observed[0] > 0 ? observed[1] / observed[0] : 1.0;
+  }
+
+  /**
+   * Get the estimate of a group. The request is planned with EXPLAIN if it is not cached yet.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param group Group to estimate
+   * @param application Name of the application
+   * @return The estimate, null if the group has no request or can't be planned
+   */
+  public static Estimate estimate(Neo4jAL neo4jAL, Group group, String application) {
+    String key = key(neo4jAL, group.getNode().getId(), application);
+    String contentHash = group.getContentHash();
+    Estimate cached;
+    synchronized (ESTIMATES) {
+      cached = ESTIMATES.get(key);
+    }
+    if (cached != null && cached.contentHash.equals(contentHash)) return cached;
+
+    try {
+      MetaRequest mr = group.forgeRequest(application);
+      if (mr == null) return null;
+
+      ExecutionPlanDescription plan =
+          neo4jAL.explainQuery(RequestNormalizer.stripTerminator(mr.getRequest()));
+      Estimate estimate = new Estimate(neo4jAL.getDb().databaseName(), contentHash, getRows(plan), getCost(plan));
+      synchronized (ESTIMATES) {
+        ESTIMATES.put(key, estimate);
+      }
+      return estimate;
+    } catch (Neo4jQueryException | Neo4JTemplateLanguageException e) {
+      neo4jAL.logError(
+          String.format("Failed to estimate the cost of the group '%s'.", group.getName()), e);
+      return null;
+    }
+  }
+
+  /**
+   * Get the expected time of a list of groups
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param groups Groups to estimate
+   * @param application Name of the application
+   * @return The expected time in milliseconds by id of group, groups without estimate are omitted
+   */
+  public static Map<Long, Double> getExpectedTimes(
+      Neo4jAL neo4jAL, Collection<Group> groups, String application) {
+    Map<Long, Double> times = new HashMap<>();
+    for (Group group : groups) {
+      Estimate estimate = estimate(neo4jAL, group, application);
+      if (estimate != null) times.put(group.getNode().getId(), estimate.getExpectedTime());
+    }
+    return times;
+  }
+
+  /**
+   * Record the measured time of a group. The next estimates of the group use it, and the ratio
+   * between the costs and the times of its database is updated.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param idGroup Id of the group
+   * @param application Name of the application
+   * @param elapsed Time of the execution in milliseconds
+   */
+  public static void record(Neo4jAL neo4jAL, Long idGroup, String application, long elapsed) {
+    Estimate estimate;
+    synchronized (ESTIMATES) {
+      estimate = ESTIMATES.get(key(neo4jAL, idGroup, application));
+    }
+    if (estimate == null) return;
+
+    synchronized (CostEstimator.class) {
+      estimate.measuredTime =
+          estimate.runs == 0
+              ? elapsed
+              : SMOOTHING * elapsed + (1 - SMOOTHING) * estimate.measuredTime;
+      estimate.runs++;
+
+      if (estimate.cost > 0) {
+        double[] observed = OBSERVED.computeIfAbsent(estimate.database, k -> new double[2]);
+        observed[0] += estimate.cost;
+        observed[1] += elapsed;
+      }
+    }
+  }
+
+  /**
+   * Drop the estimates of a group, on all the applications
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param idGroup Id of the group
+   */
+  public static void remove(Neo4jAL neo4jAL, Long idGroup) {
+    String prefix = neo4jAL.getDb().databaseName() + "::" + idGroup + "::";
+    synchronized (ESTIMATES) {
+      ESTIMATES.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+  }
+
+  private static long getRows(ExecutionPlanDescription plan) {
+    Object estimated = plan == null ? null : plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+    return estimated instanceof Number ? Math.round(((Number) estimated).doubleValue()) : 0L;
+  }
+
+  /**
+   * Get the cost of a plan
+   *
+   * @param plan Plan of a request, obtained with EXPLAIN
+   * @return The rows estimated for all the operators of the plan
+   */
+  public static double getCost(ExecutionPlanDescription plan) {
+    if (plan == null) return 0.0;
+    Object estimated = plan.getArguments().get(ESTIMATED_ROWS_ARGUMENT);
+    double cost = estimated instanceof Number ? ((Number) estimated).doubleValue() : 0.0;
+    for (ExecutionPlanDescription child : plan.getChildren()) cost += getCost(child);
+    return cost;
+  }
+}
@@ -0,0 +1,336 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ExtensionException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits applied to the execution of a group request : a wall-clock timeout, a maximum number of
+ * rows read and a maximum estimate of the memory held by the results. The request runs in its own
+ * transaction, started with the timeout, so the database terminates it once the time is over. The
+ * rows read past the limits are dropped and the execution is reported as truncated. The results are
+ * written outside of the budget, by the execution : not at all if the execution didn't complete.
+ */
+public class ExecutionBudget {
+
+  // Status of an execution
+  public static final String OK = "OK";
+  public static final String TIMED_OUT = "TIMED_OUT";
+  public static final String TRUNCATED = "TRUNCATED";
+
+  private static final long DEFAULT_TIMEOUT_MS =
+      Long.parseLong(Configuration.get("paris.budget.timeout_ms"));
+  private static final long DEFAULT_MAX_ROWS =
+      Long.parseLong(Configuration.get("paris.budget.max_rows"));
+  private static final long DEFAULT_MAX_MEMORY_MB =
+      Long.parseLong(Configuration.get("paris.budget.max_memory_mb"));
+
+  /** Task executed under the budget */
+  public interface BoundedTask<T> {
+    T run(Neo4jAL boundedAL) throws Exception, ExtensionException;
+  }
+
+  private final long timeoutMs;
+  private final long maxRows;
+  private final long maxMemoryBytes;
+
+  /**
+   * Create a budget. A negative value disables a limit, as well as a null timeout.
+   *
+   * @param timeoutMs Maximum duration of the request in milliseconds
+   * @param maxRows Maximum number of rows read
+   * @param maxMemoryBytes Maximum memory held by the results, in bytes
+   */
+  public ExecutionBudget(long timeoutMs, long maxRows, long maxMemoryBytes) {
+    this.timeoutMs = timeoutMs;
+    this.maxRows = maxRows;
+    this.maxMemoryBytes = maxMemoryBytes;
+  }
+
+  /**
+   * Get the budget defined in the configuration
+   *
+   * @return The budget
+   */
+  public static ExecutionBudget getDefault() {
+    return new ExecutionBudget(DEFAULT_TIMEOUT_MS, DEFAULT_MAX_ROWS, DEFAULT_MAX_MEMORY_MB * 1024 * 1024);
+  }
+
+  /**
+   * Get the budget defined in the configuration, with some limits overridden
+   *
+   * @param timeoutMs Timeout in milliseconds, negative to keep the default
+   * @param maxRows Maximum number of rows, negative to keep the default
+   * @return The budget
+   */
+  public static ExecutionBudget getDefault(long timeoutMs, long maxRows) {
+    ExecutionBudget def = getDefault();
+    return new ExecutionBudget(
+        timeoutMs < 0 ? def.timeoutMs : timeoutMs,
+        maxRows < 0 ? def.maxRows : maxRows,
+        def.maxMemoryBytes);
+  }
+
+  public long getTimeoutMs() {
+    return timeoutMs;
+  }
+
+  public long getMaxRows() {
+    return maxRows;
+  }
+
+  public long getMaxMemoryBytes() {
+    return maxMemoryBytes;
+  }
+
+  /**
+   * Begin a transaction terminated by the database after the timeout
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The transaction
+   */
+  public Transaction beginTx(Neo4jAL neo4jAL) {
+    if (timeoutMs <= 0) return neo4jAL.getDb().beginTx();
+    return neo4jAL.getDb().beginTx(timeoutMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Check if an execution started at a given time is over the timeout
+   *
+   * @param start Start of the execution in milliseconds
+   * @return True if the timeout is reached
+   */
+  public boolean isExpired(long start) {
+    return timeoutMs > 0 && System.currentTimeMillis() - start >= timeoutMs;
+  }
+
+  /**
+   * Start tracking an execution
+   *
+   * @return The execution
+   */
+  public Execution start() {
+    return new Execution();
+  }
+
+  /**
+   * Run a task in its own transaction, rolled back at the end unless the task commits it. If the
+   * transaction is terminated by the timeout, the execution is marked as timed out and null is
+   * returned.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param execution Execution tracked
+   * @param task Task to run
+   * @return The value returned by the task, null if it timed out
+   * @throws Exception
+   * @throws ExtensionException
+   */
+  public <T> T run(Neo4jAL neo4jAL, Execution execution, BoundedTask<T> task)
+      throws Exception, ExtensionException {
+    try (Transaction tx = beginTx(neo4jAL)) {
+      execution.tx = tx;
+      try {
+        return task.run(new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger()));
+      } catch (Exception | Neo4jQueryException e) {
+        // The termination surfaces as any kind of query error
+        if (!execution.isExpired()) throw e;
+        execution.status = TIMED_OUT;
+        return null;
+      } finally {
+        execution.tx = null;
+        execution.elapsed = System.currentTimeMillis() - execution.start;
+      }
+    }
+  }
+
+  /** Rows read, timings and status of an execution */
+  public class Execution {
+    private final long start = System.currentTimeMillis();
+    private Transaction tx = null;
+    private long rows = 0L;
+    private long elapsed = 0L;
+    private long result = 0L;
+    private String status = OK;
+
+    // Profiling
+    private final boolean profiled = GroupProfiler.isProfilingQueries();
+    private long forgeTime = 0L;
+    private long planningTime = 0L;
+    private long executionTime = 0L;
+    private long writeTime = 0L;
+    private long dbHits = -1L;
+
+    // Ids of a bounded sample of the elements found
+    private List<Long> sample = List.of();
+
+    private Execution() {}
+
+    /**
+     * Account for a new row. Stop the reading once a limit is reached : the transaction is
+     * terminated on timeout, the execution is truncated on the row or memory limits.
+     *
+     * @param memoryEstimate Memory held by the results read so far, in bytes
+     * @return True if the row can be read
+     */
+    public boolean next(long memoryEstimate) {
+      if (isExpired()) {
+        status = TIMED_OUT;
+        if (tx != null) tx.terminate();
+        return false;
+      }
+      if ((maxRows >= 0 && rows >= maxRows)
+          || (maxMemoryBytes >= 0 && memoryEstimate > maxMemoryBytes)) {
+        status = TRUNCATED;
+        return false;
+      }
+      rows++;
+      return true;
+    }
+
+    /**
+     * Record a number of rows counted by the database, capped by the row limit
+     *
+     * @param counted Rows counted, at most the row limit plus one
+     */
+    public void count(long counted) {
+      if (maxRows >= 0 && counted > maxRows) {
+        status = TRUNCATED;
+        rows = maxRows;
+      } else {
+        rows = counted;
+      }
+    }
+
+    /**
+     * Record rows processed by the database, which are not subject to the row limit
+     *
+     * @param processed Rows processed
+     */
+    public void addRows(long processed) {
+      rows += processed;
+    }
+
+    public boolean isExpired() {
+      return ExecutionBudget.this.isExpired(start);
+    }
+
+    /**
+     * Mark the execution as timed out if the timeout is reached. Used between two transactions.
+     *
+     * @return True if the execution timed out
+     */
+    public boolean checkExpired() {
+      if (isExpired()) status = TIMED_OUT;
+      return isTimedOut();
+    }
+
+    public boolean isOk() {
+      return OK.equals(status);
+    }
+
+    public boolean isTimedOut() {
+      return TIMED_OUT.equals(status);
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getElapsed() {
+      return elapsed;
+    }
+
+    public String getStatus() {
+      return status;
+    }
+
+    /**
+     * Get the result of the execution ( nodes tagged, matches, ... )
+     *
+     * @return The result
+     */
+    public long getResult() {
+      return result;
+    }
+
+    public void setResult(long result) {
+      this.result = result;
+    }
+
+    /**
+     * Check if the requests of the execution must be run with PROFILE
+     *
+     * @return True if the db hits are collected
+     */
+    public boolean isProfiled() {
+      return profiled;
+    }
+
+    public long getStart() {
+      return start;
+    }
+
+    public long getForgeTime() {
+      return forgeTime;
+    }
+
+    public void addForgeTime(long time) {
+      this.forgeTime += time;
+    }
+
+    public long getPlanningTime() {
+      return planningTime;
+    }
+
+    public void addPlanningTime(long time) {
+      this.planningTime += time;
+    }
+
+    public long getExecutionTime() {
+      return executionTime;
+    }
+
+    public void addExecutionTime(long time) {
+      this.executionTime += time;
+    }
+
+    public long getWriteTime() {
+      return writeTime;
+    }
+
+    public void addWriteTime(long time) {
+      this.writeTime += time;
+    }
+
+    /**
+     * Get the db hits of the requests
+     *
+     * @return The db hits, -1 if the requests were not profiled
+     */
+    public long getDbHits() {
+      return dbHits;
+    }
+
+    public void addDbHits(long hits) {
+      this.dbHits = Math.max(this.dbHits, 0L) + hits;
+    }
+
+    /**
+     * Get the ids of a bounded sample of the elements found ( the violations of a rule )
+     *
+     * @return The ids, empty if no sample was taken
+     */
+    public List<Long> getSample() {
+      return sample;
+    }
+
+    public void setSample(List<Long> sample) {
+      this.sample = sample;
+    }
+  }
+}
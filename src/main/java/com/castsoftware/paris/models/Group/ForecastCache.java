@@ -0,0 +1,106 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.utils.GraphVersion;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Results of the group forecasts, kept in memory per database. An entry is keyed by the content
+ * hash of the group and the application, and is only valid for the version of the graph it was
+ * computed on : the whole cache of a database is dropped as soon as its version changes. The
+ * values must be computed on the committed state of the graph, the version doesn't follow the
+ * writes pending in a transaction. The least recently used entries are evicted above the maximum
+ * size.
+ */
+public class ForecastCache {
+
+  private static final int MAX_ENTRIES =
+      Integer.parseInt(Configuration.get("paris.forecast.cache.max_entries"));
+
+  private static final Map<String, ForecastCache> INSTANCES = new ConcurrentHashMap<>();
+
+  private long version = GraphVersion.UNKNOWN;
+  private long hits = 0L;
+  private long misses = 0L;
+  private final LinkedHashMap<String, Long> entries =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  private ForecastCache() {}
+
+  /**
+   * Get the cache of a database
+   *
+   * @param database Name of the database
+   * @return The cache
+   */
+  public static ForecastCache getInstance(String database) {
+    return INSTANCES.computeIfAbsent(database, k -> new ForecastCache());
+  }
+
+  private static String key(String contentHash, String application) {
+    return contentHash + "::" + application;
+  }
+
+  /**
+   * Get the forecast of a group
+   *
+   * @param contentHash Content hash of the group
+   * @param application Name of the application
+   * @param version Current version of the graph
+   * @return The number of results, null if not cached for this version
+   */
+  public synchronized Long get(String contentHash, String application, long version) {
+    if (version == GraphVersion.UNKNOWN || version != this.version) {
+      misses++;
+      return null;
+    }
+
+    Long value = entries.get(key(contentHash, application));
+    if (value == null) misses++;
+    else hits++;
+    return value;
+  }
+
+  /**
+   * Store the forecast of a group. Values computed on an older version of the graph are ignored.
+   *
+   * @param contentHash Content hash of the group
+   * @param application Name of the application
+   * @param version Version of the graph the value was computed on
+   * @param value Number of results
+   */
+  public synchronized void put(String contentHash, String application, long version, Long value) {
+    if (version == GraphVersion.UNKNOWN || version < this.version) return;
+    if (version > this.version) {
+      entries.clear();
+      this.version = version;
+    }
+    entries.put(key(contentHash, application), value);
+  }
+
+  /** Drop all the entries */
+  public synchronized void clear() {
+    entries.clear();
+    version = GraphVersion.UNKNOWN;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+}
@@ -0,0 +1,355 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.SimpleRequestCompiler;
+import com.castsoftware.paris.utils.ColumnarCache;
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Execution of many simple groups in a single pass over the nodes. The requests matching a label
+ * and filtering on the properties of the node are compiled into Java conditions ( see {@link
+ * SimpleRequestCompiler} ). The nodes of the label are then read once, in parallel chunks, each
+ * node being evaluated against all the groups. The nodes matched are tagged once the scan is over,
+ * by the writer of the caller in committed batches, and the tag state of each group is recorded : a
+ * scan timed out or failed writes nothing. The groups which can't be compiled are left to the
+ * database.
+ *
+ * <p>When the columnar cache of the application holds the properties read, the requests on the
+ * application are evaluated on the cache, and only the nodes matching are read to be tagged.
+ */
+public class FusedScanEngine {
+
+  private static final int DEFAULT_PARALLELISM =
+      Integer.parseInt(Configuration.get("paris.runner.parallelism"));
+  private static final int CHUNK_SIZE =
+      Integer.parseInt(Configuration.get("paris.tag.batch_size"));
+
+  public static final String FUSED_OPERATION = "TAG_FUSED";
+
+  /** Write of the tags collected by the scan, in committed batches */
+  @FunctionalInterface
+  public interface TagWriter {
+    void write(TagBatch batch);
+  }
+
+  /** Split of a list of groups between the fused scan and the database */
+  public static class Plan {
+    private final List<Group> fused = new ArrayList<>();
+    private final List<SimpleRequestCompiler.SimpleRequest> requests = new ArrayList<>();
+    private final List<Group> fallback = new ArrayList<>();
+
+    public List<Group> getFused() {
+      return fused;
+    }
+
+    public List<Group> getFallback() {
+      return fallback;
+    }
+  }
+
+  private final Neo4jAL neo4jAL;
+  private final int parallelism;
+  private final ExecutionBudget budget;
+
+  public FusedScanEngine(Neo4jAL neo4jAL, ExecutionBudget budget) {
+    this(neo4jAL, DEFAULT_PARALLELISM, budget);
+  }
+
+  public FusedScanEngine(Neo4jAL neo4jAL, int parallelism, ExecutionBudget budget) {
+    this.neo4jAL = neo4jAL;
+    this.parallelism = Math.max(1, parallelism);
+    this.budget = budget;
+  }
+
+  /**
+   * Compile the requests of the groups. The groups reading tags are left to the database, as their
+   * results depend on the other groups.
+   *
+   * @param groups Groups to execute
+   * @param application Name of the application
+   * @return The groups compiled and the groups left to the database
+   */
+  public static Plan prepare(List<Group> groups, String application) {
+    Plan plan = new Plan();
+    for (Group group : groups) {
+      SimpleRequestCompiler.SimpleRequest request = null;
+      if (group.getReads().isEmpty()) {
+        try {
+          MetaRequest mr = group.forgeRequest(application);
+          request = SimpleRequestCompiler.compile(mr);
+        } catch (Neo4JTemplateLanguageException ignored) {
+          // Reported by the database
+        }
+      }
+
+      if (request == null || request.getProperties().contains(Group.getTagsProperty())) {
+        plan.fallback.add(group);
+      } else {
+        plan.fused.add(group);
+        plan.requests.add(request);
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Run the groups compiled : the nodes are scanned once per label, in parallel chunks, and the
+   * groups matched by each node are collected. The tags are then written by the writer, each node
+   * being tagged in one write, and the tag states are recorded once all the batches are committed.
+   * If the scan times out or fails, nothing is written. A write interrupted leaves the batches
+   * committed without their states : running the groups again converges.
+   *
+   * @param plan Groups compiled
+   * @param application Name of the application
+   * @param writer Writer of the tags, committing in batches
+   * @return The execution of each compiled group, in the order of the plan
+   */
+  public List<ExecutionBudget.Execution> execute(Plan plan, String application, TagWriter writer) {
+    List<ExecutionBudget.Execution> executions = new ArrayList<>();
+    for (int i = 0; i < plan.fused.size(); i++) executions.add(budget.start());
+    if (plan.fused.isEmpty()) return executions;
+
+    // Requests by label scanned : the application when the request is bound to it
+    Map<String, List<Integer>> byLabel = new LinkedHashMap<>();
+    for (int i = 0; i < plan.requests.size(); i++) {
+      List<String> labels = plan.requests.get(i).getLabels();
+      String label = labels.contains(application) ? application : labels.get(0);
+      byLabel.computeIfAbsent(label, k -> new ArrayList<>()).add(i);
+    }
+
+    AtomicBoolean timedOut = new AtomicBoolean(false);
+    long start = System.currentTimeMillis();
+    List<Map<Long, List<Integer>>> chunks = new ArrayList<>();
+
+    ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+    try {
+      for (Map.Entry<String, List<Integer>> en : byLabel.entrySet()) {
+        int[] indexes = en.getValue().stream().mapToInt(Integer::intValue).toArray();
+        Set<String> keys = new HashSet<>();
+        for (int index : indexes) keys.addAll(plan.requests.get(index).getProperties());
+        String[] properties = keys.toArray(new String[0]);
+
+        ColumnarCache columns = getColumns(en.getKey(), application, indexes, plan);
+        long[] ids = columns != null ? columns.getIds() : scan(en.getKey());
+
+        List<Future<Map<Long, List<Integer>>>> futures = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+          int chunkStart = from;
+          int chunkEnd = Math.min(ids.length, from + CHUNK_SIZE);
+          futures.add(
+              pool.submit(
+                  () -> {
+                    if (timedOut.get() || budget.isExpired(start)) {
+                      timedOut.set(true);
+                      return Map.of();
+                    }
+                    return evaluate(
+                        plan, ids, columns, chunkStart, chunkEnd, indexes, properties, timedOut,
+                        start);
+                  }));
+        }
+
+        for (Future<Map<Long, List<Integer>>> future : futures) {
+          try {
+            chunks.add(future.get());
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The fused scan was interrupted.", e);
+          } catch (ExecutionException e) {
+            // The termination of a chunk transaction surfaces as any kind of error
+            if (!budget.isExpired(start)) throw new IllegalStateException(e.getCause());
+            timedOut.set(true);
+          }
+        }
+      }
+    } finally {
+      shutdown(pool);
+    }
+
+    long elapsed = System.currentTimeMillis() - start;
+    long[] matches = new long[plan.fused.size()];
+    if (!timedOut.get()) {
+      long writeStart = System.currentTimeMillis();
+      IdBitmap[] matched = collect(plan, chunks);
+      TagBatch batch = new TagBatch();
+      for (int i = 0; i < matched.length; i++) {
+        batch.add(plan.fused.get(i).getTagName(), matched[i]);
+        matches[i] = matched[i].size();
+      }
+      writer.write(batch);
+      recordTagStates(plan, application, matched);
+      for (ExecutionBudget.Execution execution : executions) {
+        execution.addWriteTime(System.currentTimeMillis() - writeStart);
+      }
+    }
+
+    for (int i = 0; i < plan.fused.size(); i++) {
+      ExecutionBudget.Execution execution = executions.get(i);
+      execution.addRows(matches[i]);
+      execution.setResult(matches[i]);
+      execution.addExecutionTime(elapsed);
+      if (timedOut.get()) execution.checkExpired();
+      GroupProfiler.record(plan.fused.get(i), application, FUSED_OPERATION, execution);
+    }
+    neo4jAL.logInfo(
+        String.format(
+            "Fused scan of %d groups on %d labels done in %d ms%s.",
+            plan.fused.size(),
+            byLabel.size(),
+            System.currentTimeMillis() - start,
+            timedOut.get() ? ", timed out : no tag written" : ""));
+    return executions;
+  }
+
+  // Stop the workers, and wait for their transactions to be closed
+  private void shutdown(ExecutorService pool) {
+    pool.shutdownNow();
+    try {
+      while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+        neo4jAL.logInfo("Waiting for the workers of the fused scan to stop.");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Nodes matched by each group, gathered from the chunks
+  private IdBitmap[] collect(Plan plan, List<Map<Long, List<Integer>>> chunks) {
+    IdBitmap[] matched = new IdBitmap[plan.fused.size()];
+    for (int i = 0; i < matched.length; i++) matched[i] = new IdBitmap();
+    for (Map<Long, List<Integer>> chunk : chunks) {
+      for (Map.Entry<Long, List<Integer>> en : chunk.entrySet()) {
+        for (int index : en.getValue()) matched[index].add(en.getKey());
+      }
+    }
+    return matched;
+  }
+
+  // Record the nodes tagged in the state of each group, once all the tags are committed
+  private void recordTagStates(Plan plan, String application, IdBitmap[] matched) {
+    try (Transaction tx = neo4jAL.getDb().beginTx()) {
+      Neo4jAL txAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+      for (int i = 0; i < matched.length; i++) {
+        Group group = plan.fused.get(i);
+        group.recordTagState(txAL, application, group.getTagName(), matched[i]);
+      }
+      tx.commit();
+    } catch (Neo4jConnectionError | Neo4jQueryException e) {
+      neo4jAL.logError(
+          "The tag states of the fused groups were not recorded, the groups must be run again.", e);
+    }
+  }
+
+  // Columnar cache of the application, if it holds the properties of all the requests of the label
+  private ColumnarCache getColumns(String label, String application, int[] indexes, Plan plan) {
+    if (!label.equals(application)) return null;
+    ColumnarCache columns = ColumnarCache.getIfValid(neo4jAL, application);
+    if (columns == null) return null;
+    for (int index : indexes) {
+      if (!columns.covers(plan.requests.get(index))) return null;
+    }
+    return columns;
+  }
+
+  // Ids of the nodes of a label, read in the transaction of the caller
+  private long[] scan(String label) {
+    IdBitmap ids = new IdBitmap();
+    try (ResourceIterator<Node> it = neo4jAL.getTransaction().findNodes(Label.label(label))) {
+      while (it.hasNext()) ids.add(it.next().getId());
+    }
+    return ids.toArray();
+  }
+
+  // Evaluate a chunk of nodes against the requests, in a transaction of the worker rolled back
+  private Map<Long, List<Integer>> evaluate(
+      Plan plan,
+      long[] ids,
+      ColumnarCache columns,
+      int from,
+      int to,
+      int[] indexes,
+      String[] properties,
+      AtomicBoolean timedOut,
+      long start) {
+    // Groups matched by each node, by id
+    Map<Long, List<Integer>> matched = new LinkedHashMap<>();
+    try (Transaction tx = budget.beginTx(neo4jAL)) {
+      for (int i = from; i < to; i++) {
+        if (budget.isExpired(start)) {
+          timedOut.set(true);
+          tx.terminate();
+          return Map.of();
+        }
+
+        SimpleRequestCompiler.Row row;
+        if (columns != null) {
+          row = columns.row(i);
+        } else {
+          try {
+            row = new NodeRow(tx.getNodeById(ids[i]), properties);
+          } catch (NotFoundException e) {
+            continue; // Deleted since the scan
+          }
+        }
+
+        List<Integer> groups = null;
+        for (int index : indexes) {
+          if (!plan.requests.get(index).matches(row)) continue;
+          if (groups == null) groups = new ArrayList<>();
+          groups.add(index);
+        }
+        if (groups != null) matched.put(ids[i], groups);
+      }
+    }
+    return matched;
+  }
+
+  /** Values of a node, read once for all the requests */
+  private static class NodeRow implements SimpleRequestCompiler.Row {
+    private final Node node;
+    private final Map<String, Object> values;
+    private Set<String> labels = null;
+
+    private NodeRow(Node node, String[] properties) {
+      this.node = node;
+      this.values = node.getProperties(properties);
+    }
+
+    @Override
+    public Object getProperty(String key) {
+      return values.get(key);
+    }
+
+    @Override
+    public boolean hasLabel(String label) {
+      if (labels == null) {
+        labels = new HashSet<>();
+        for (Label l : node.getLabels()) labels.add(l.name());
+      }
+      return labels.contains(label);
+    }
+  }
+}
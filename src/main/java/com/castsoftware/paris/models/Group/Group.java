@@ -1,19 +1,33 @@
 package com.castsoftware.paris.models.Group;
 
+import com.castsoftware.paris.configuration.Configuration;
 import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.database.Neo4jTypeManager;
+import com.castsoftware.paris.exceptions.ExtensionException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
 import com.castsoftware.paris.metaLanguage.MetaLanguageProcessor;
 import com.castsoftware.paris.metaLanguage.MetaRequest;
+import com.castsoftware.paris.metaLanguage.RequestNormalizer;
+import com.castsoftware.paris.metaLanguage.SimpleRequestCompiler;
+import com.castsoftware.paris.utils.ColumnarCache;
+import com.castsoftware.paris.utils.GraphVersion;
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
 
 import javax.management.relation.Relation;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class Group {
@@ -31,14 +45,23 @@ public class Group {
   // Properties
   private static final String ACTIVE_PROPERTY = "Active";
   private static final String CATEGORIES_PROPERTY = "Categories";
+  private static final String CONTENT_HASH_PROPERTY = "ContentHash";
   private static final String CREATION_DATE_PROPERTY = "Creation";
   private static final String CYPHER_REQUEST_PROPERTY = "CypherRequest";
   private static final String CYPHER_REQUEST_RETURN_PROPERTY = "CypherReturn";
   private static final String DESCRIPTION_PROPERTY = "Description";
   private static final String GROUP_NAME_PROPERTY = "GroupName";
   private static final String NAME_PROPERTY = "Name";
+  private static final String READS_PROPERTY = "Reads";
   private static final String SELECTED_PROPERTY = "Selected";
   private static final String TYPE_PROPERTY = "Type";
+  private static final String WRITES_PROPERTY = "Writes";
+
+  // Tags
+  private static final String TAGS_PROPERTY = "Tags";
+  private static final String TAG_PREFIX = Configuration.get("paris.tag.prefix");
+  private static final int RULE_SAMPLE_SIZE =
+      Integer.parseInt(Configuration.get("paris.rule.sample_size"));
 
   // Attribute : Neo4j
   private Node node;
@@ -55,6 +78,10 @@ public class Group {
   private Boolean selected;
   private List<GroupType> types;
 
+  // Dependencies : tags or properties read and written by the request
+  private List<String> reads = new ArrayList<>();
+  private List<String> writes = new ArrayList<>();
+
   public Group(
       Boolean active,
       List<String> categories,
@@ -86,12 +113,15 @@ public class Group {
     node.setProperty(getCreationDateProperty(), creationDate);
     node.setProperty(getCypherRequestProperty(), cypherRequest);
     node.setProperty(getCypherRequestReturnProperty(), cypherRequestReturn);
+    node.setProperty(getContentHashProperty(), getContentHash());
     node.setProperty(getDescriptionProperty(), description);
     node.setProperty(getGroupNameProperty(), groupName);
     node.setProperty(getNameProperty(), name);
     node.setProperty(getSelectedProperty(), selected);
 
     node.setProperty(getTypeProperty(), types.stream().map(GroupType::toString).toArray(String[]::new));
+    node.setProperty(getReadsProperty(), reads.toArray(new String[0]));
+    node.setProperty(getWritesProperty(), writes.toArray(new String[0]));
 
     this.node = node;
     return this.node;
@@ -144,6 +174,8 @@ public class Group {
             name,
             selected,
             type);
+    dn.reads = Neo4jTypeManager.getAsStringList(node, getReadsProperty());
+    dn.writes = Neo4jTypeManager.getAsStringList(node, getWritesProperty());
     dn.setNode(node);
     return dn;
   }
@@ -176,6 +208,10 @@ public class Group {
     return CYPHER_REQUEST_RETURN_PROPERTY;
   }
 
+  public static String getContentHashProperty() {
+    return CONTENT_HASH_PROPERTY;
+  }
+
   public static String getDescriptionProperty() {
     return DESCRIPTION_PROPERTY;
   }
@@ -188,6 +224,22 @@ public class Group {
     return NAME_PROPERTY;
   }
 
+  public static String getTagsProperty() {
+    return TAGS_PROPERTY;
+  }
+
+  public static String getTagPrefix() {
+    return TAG_PREFIX;
+  }
+
+  public static String getReadsProperty() {
+    return READS_PROPERTY;
+  }
+
+  public static String getWritesProperty() {
+    return WRITES_PROPERTY;
+  }
+
   public static String getTypeProperty() {
     return TYPE_PROPERTY;
   }
@@ -238,6 +290,7 @@ public class Group {
   public void setCypherRequest(String cypherRequest) {
     this.cypherRequest = cypherRequest;
     setNodeProperty(CYPHER_REQUEST_PROPERTY, cypherRequest);
+    setNodeProperty(CONTENT_HASH_PROPERTY, getContentHash());
   }
 
   public String getCypherRequestReturn() {
@@ -247,6 +300,35 @@ public class Group {
   public void setCypherRequestReturn(String cypherRequestReturn) {
     this.cypherRequestReturn = cypherRequestReturn;
     setNodeProperty(CYPHER_REQUEST_RETURN_PROPERTY, cypherRequestReturn);
+    setNodeProperty(CONTENT_HASH_PROPERTY, getContentHash());
+  }
+
+  /**
+   * Hash of the normalized request and return value. Two groups with the same hash tag the same
+   * objects.
+   *
+   * @return The content hash
+   */
+  public String getContentHash() {
+    return RequestNormalizer.hash(cypherRequest, cypherRequestReturn);
+  }
+
+  /**
+   * Get the content hash stored on a group node, and compute it if missing
+   *
+   * @param node Node of the group
+   * @return The content hash
+   */
+  public static String getOrSetContentHash(Node node) {
+    String hash = (String) node.getProperty(CONTENT_HASH_PROPERTY, null);
+    if (hash != null) return hash;
+
+    hash =
+        RequestNormalizer.hash(
+            (String) node.getProperty(CYPHER_REQUEST_PROPERTY, ""),
+            (String) node.getProperty(CYPHER_REQUEST_RETURN_PROPERTY, ""));
+    node.setProperty(CONTENT_HASH_PROPERTY, hash);
+    return hash;
   }
 
   public String getDescription() {
@@ -295,6 +377,35 @@ public class Group {
     setNodeProperty(NAME_PROPERTY, types.stream().map(GroupType::toString).toArray(String[]::new));
   }
 
+  public List<String> getReads() {
+    return reads;
+  }
+
+  public void setReads(List<String> reads) {
+    this.reads = reads;
+    setNodeProperty(READS_PROPERTY, reads.toArray(new String[0]));
+  }
+
+  public List<String> getWrites() {
+    return writes;
+  }
+
+  public void setWrites(List<String> writes) {
+    this.writes = writes;
+    setNodeProperty(WRITES_PROPERTY, writes.toArray(new String[0]));
+  }
+
+  /**
+   * Outputs of the group : the tag it applies and the declared writes
+   *
+   * @return The list of outputs
+   */
+  public List<String> getOutputs() {
+    List<String> outputs = new ArrayList<>(writes);
+    if (!outputs.contains(getTagName())) outputs.add(getTagName());
+    return outputs;
+  }
+
   public Node getNode() {
     return node;
   }
@@ -323,105 +434,728 @@ public class Group {
    */
 
   /**
-   * Apply a tag on the Neo4j element
-   * @param neo4jObject Neo4j object to tag
-   * @param tag
-   * @throws Neo4JTemplateLanguageException
-   * @throws Neo4jQueryException
+   * Name of the tag applied by the group
+   *
+   * @return The tag
    */
-  private void applyTag( Object neo4jObject, String tag) throws Neo4JTemplateLanguageException, Neo4jQueryException {
-    // tag a node
+  public String getTagName() {
+    return TAG_PREFIX + this.groupName;
+  }
 
-    if(neo4jObject instanceof Node) {
-      Node node = (Node) neo4jObject;
+  /**
+   * Add a tag to the Tags property of a node
+   *
+   * @param node Node to tag
+   * @param tag Tag to add
+   * @return True if the node didn't carry the tag
+   */
+  public static boolean addTag(Node node, String tag) {
+    return updateTags(node, List.of(), List.of(tag));
+  }
 
+  /**
+   * Check if a node carries a tag in its Tags property
+   *
+   * @param node Node to check
+   * @param tag Tag searched
+   * @return True if the node carries the tag
+   */
+  public static boolean hasTag(Node node, String tag) {
+    return node.hasProperty(TAGS_PROPERTY)
+        && Neo4jTypeManager.getAsStringList(node, TAGS_PROPERTY).contains(tag);
+  }
 
-      if(node.hasProperty("Tags")) {
-        List<String> tags = Neo4jTypeManager.getAsStringList(node, "Tags");
+  /**
+   * Remove and add tags on a node with a single write of the Tags property
+   *
+   * @param node Node to update
+   * @param toRemove Tags to remove
+   * @param toAdd Tags to add
+   * @return True if the tags of the node changed
+   */
+  public static boolean updateTags(Node node, Collection<String> toRemove, Collection<String> toAdd) {
+    List<String> tags =
+        node.hasProperty(TAGS_PROPERTY)
+            ? new ArrayList<>(Neo4jTypeManager.getAsStringList(node, TAGS_PROPERTY))
+            : new ArrayList<>();
+
+    boolean changed = tags.removeAll(toRemove);
+    for (String tag : toAdd) {
+      if (tags.contains(tag)) continue;
+      tags.add(tag);
+      changed = true;
+    }
 
-        if(!tags.contains(tag)) tags.add(tag);
+    if (changed) node.setProperty(TAGS_PROPERTY, tags.toArray(new String[0]));
+    return changed;
+  }
 
-        node.setProperty("Tags", tags.toArray(new String[0]));
-      } else {
-        String[] tags = { tag };
-        node.setProperty("Tags", tags);
+  private void executeAsTag(Neo4jAL neo4jAL, String application, MetaRequest mr, ExecutionBudget budget, ExecutionBudget.Execution execution) throws Exception, ExtensionException {
+    executeAsTag(neo4jAL, application, mr, List.of(this), budget, execution, new ArrayList<>());
+  }
+
+  /**
+   * Tag the nodes matched by a forged request with the tags of a list of groups. The request and the
+   * write of the nodes are accounted to the execution of the first group. Each other group gets its
+   * own execution, holding only the time spent writing its tag state.
+   *
+   * @param followers Filled with the executions of the groups after the first one, once written
+   * @return The ids of the nodes tagged, null if nothing was written
+   */
+  private static IdBitmap executeAsTag(Neo4jAL neo4jAL, String application, MetaRequest mr, List<Group> groups, ExecutionBudget budget, ExecutionBudget.Execution execution, List<ExecutionBudget.Execution> followers) throws Exception, ExtensionException {
+    // Nodes are collected under the budget, then tagged in a transaction committed at once, so the
+    // next groups executed read the tags. A partial set of nodes, timed out or truncated, is not written
+    IdBitmap ids = budget.run(neo4jAL, execution, al -> getMatchingIds(al, mr, execution));
+    if (ids == null || !execution.isOk()) return null;
+
+    List<String> tags = new ArrayList<>();
+    for (Group group : groups) {
+      if (!tags.contains(group.getTagName())) tags.add(group.getTagName());
+    }
+
+    // The tag states are written in the same transaction : the tags and the states recording them
+    // are committed or rolled back together. The transaction of the caller only reads the groups
+    long start = System.currentTimeMillis();
+    try (Transaction tx = neo4jAL.getDb().beginTx()) {
+      for (long id : ids.toArray()) {
+        try {
+          updateTags(tx.getNodeById(id), List.of(), tags);
+        } catch (NotFoundException ignored) {
+          // Deleted since the request was executed
+        }
       }
 
-    } else if(neo4jObject instanceof Relationship) { // Tag a rel
-      Relationship rel = (Relationship) neo4jObject;
-      applyTag(rel.getEndNode(), tag);
-      applyTag(rel.getStartNode(), tag);
+      Neo4jAL txAL = new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger());
+      groups.get(0).recordTagState(txAL, application, groups.get(0).getTagName(), ids);
+      for (Group group : groups.subList(1, groups.size())) {
+        ExecutionBudget.Execution own = budget.start();
+        group.recordTagState(txAL, application, group.getTagName(), ids);
+        own.addWriteTime(System.currentTimeMillis() - own.getStart());
+        followers.add(own);
+      }
+      tx.commit();
     }
+    long followersTime = followers.stream().mapToLong(ExecutionBudget.Execution::getWriteTime).sum();
+    execution.addWriteTime(System.currentTimeMillis() - start - followersTime);
+
+    execution.setResult(execution.getRows());
+    neo4jAL.logInfo("Result  : " + execution.getRows());
+    return ids;
   }
 
-  private Long executeAsTag(Neo4jAL neo4jAL, String application) throws Neo4JTemplateLanguageException, Neo4jQueryException {
-    MetaRequest mr = MetaLanguageProcessor.forgeRequest(this.cypherRequest, this.cypherRequestReturn, application);
-    if(mr.getRequest() == null) return 0L;
+  /**
+   * Execute the group as a tag, and apply the same result to the groups sharing its request : the
+   * request is run once, and all the tags are written to the matching nodes in a single pass. The
+   * tag states of all the groups are written in the same transaction as the tags. The execution of
+   * the request is profiled once, on this group. The groups sharing the request are profiled only
+   * once tagged, with the time spent writing their own tag state and no execution time.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param sharing Groups whose forged request has the same fingerprint
+   * @param budget Limits of the execution
+   * @return The execution, null if the group has nothing to execute
+   * @throws Exception
+   * @throws ExtensionException
+   */
+  public ExecutionBudget.Execution executeAsSharedTag(
+      Neo4jAL neo4jAL, String application, List<Group> sharing, ExecutionBudget budget)
+      throws Exception, ExtensionException {
+    ExecutionBudget.Execution execution = budget.start();
+    MetaRequest mr = forgeRequest(application);
+    execution.addForgeTime(System.currentTimeMillis() - execution.getStart());
+    if (mr == null) return null;
+
+    List<Group> groups = new ArrayList<>();
+    groups.add(this);
+    groups.addAll(sharing);
+
+    List<ExecutionBudget.Execution> followers = new ArrayList<>();
+    executeAsTag(neo4jAL, application, mr, groups, budget, execution, followers);
+    GroupProfiler.record(this, application, GroupType.TAG.toString(), execution);
+
+    for (int i = 0; i < followers.size(); i++) {
+      ExecutionBudget.Execution own = followers.get(i);
+      own.setResult(execution.getResult());
+      GroupProfiler.record(sharing.get(i), application, "TAG_SHARED", own);
+    }
+    return execution;
+  }
 
 
+  /**
+   * Execute the group as a tag in the database : no row nor id is returned to the procedure. The
+   * request tags its results itself and returns only counters. With a batch size, the request is run
+   * once per batch, tagging the next nodes by increasing id, each batch committed in its own
+   * transaction. The ids tagged are not known by the procedure : the tag state of the group on the
+   * application, which could not record them, is dropped, so the tag is removed by a scan and the next
+   * incremental execution starts over.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param batchSize Maximum number of nodes tagged per transaction, 0 or less for one transaction
+   * @param storage Representation of the tags
+   * @param budget Limits of the execution, only the timeout applies
+   * @return The execution with the number of nodes tagged, null if the group has nothing to execute
+   * @throws Exception
+   * @throws ExtensionException
+   */
+  public ExecutionBudget.Execution executeAsTagInDatabase(
+      Neo4jAL neo4jAL, String application, long batchSize, TagStorage storage, ExecutionBudget budget)
+      throws Exception, ExtensionException {
+    ExecutionBudget.Execution execution = budget.start();
+    MetaRequest mr = forgeRequest(application);
+    execution.addForgeTime(System.currentTimeMillis() - execution.getStart());
+    if (mr == null) return null;
+
+    // The type of the elements returned decides what is tagged
+    Object first = budget.run(neo4jAL, execution, al -> getFirstResult(al, mr));
+    if (!(first instanceof Node) && !(first instanceof Relationship)) {
+      GroupProfiler.record(this, application, "TAG_IN_DATABASE", execution);
+      return execution;
+    }
 
-    Result res = neo4jAL.executeQuery(mr.getRequest());
+    boolean relationships = first instanceof Relationship;
+    String tag = getTagName();
+    long size = Math.max(0L, batchSize);
+    long[] last = {-1L};
+    long tagged = 0L;
+    long start = System.currentTimeMillis();
+    while (!execution.checkExpired()) {
+      long[] batch =
+          budget.run(
+              neo4jAL,
+              execution,
+              al -> {
+                long[] counts = tagInDatabase(al, mr, relationships, tag, storage, last[0], size);
+                al.getTransaction().commit();
+                return counts;
+              });
+      if (batch == null) break;
+
+      tagged += batch[0];
+      execution.addRows(batch[0]);
+      if (size == 0 || batch[1] < size) break;
+      last[0] = batch[2];
+    }
+    execution.addWriteTime(System.currentTimeMillis() - start);
+    execution.setResult(execution.getRows());
 
-    // TODO extract to configuration
-    String parisPrefix = "p_";
+    if (tagged > 0) dropTagState(neo4jAL, application, tag);
+    GroupProfiler.record(this, application, "TAG_IN_DATABASE", execution);
+    return execution;
+  }
 
+  // Drop the tag state of the group on an application recording a tag, in its own transaction
+  private void dropTagState(Neo4jAL neo4jAL, String application, String tag) {
+    try (Transaction tx = neo4jAL.getDb().beginTx()) {
+      TagState state = TagState.find(tx.getNodeById(this.node.getId()), application);
+      if (state == null || !(state.getTag().isEmpty() || state.getTag().equals(tag))) return;
+      state.delete();
+      tx.commit();
+    }
+    neo4jAL.logInfo(
+        String.format(
+            "Tag state of the group '%s' on '%s' dropped : the nodes tagged by the database are not recorded.",
+            this.name, application));
+  }
+
+  /**
+   * Add the nodes tagged to the tag state of the group on an application. The fingerprint is
+   * cleared, so the next incremental execution applies the differences.
+   *
+   * @param neo4jAL Neo4j Access Layer, bound to the transaction writing the tags
+   * @param application Name of the application
+   * @param tag Tag applied
+   * @param tagged Ids of the nodes tagged
+   * @throws Neo4jQueryException
+   */
+  void recordTagState(Neo4jAL neo4jAL, String application, String tag, IdBitmap tagged)
+      throws Neo4jQueryException {
+    Node group = neo4jAL.getTransaction().getNodeById(this.node.getId());
+    TagState state = TagState.find(group, application);
+    if (state == null) state = TagState.create(neo4jAL, group, application);
+
+    IdBitmap ids = tagged;
+    if (state.getTag().equals(tag)) {
+      ids = state.getTaggedIds();
+      tagged.forEach(ids::add);
+    } else if (!state.getTag().isEmpty()) {
+      // The state follows another tag, replaced when the group is modified
+      neo4jAL.logInfo(
+          String.format(
+              "Tag state of the group '%s' on '%s' not updated : it records the tag '%s'.",
+              this.name, application, state.getTag()));
+      return;
+    }
+    state.update(tag, "", ids);
+  }
+
+  /**
+   * Get the first element returned by a forged request
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @return The element, null if the request returns nothing
+   * @throws Neo4jQueryException
+   */
+  public static Object getFirstResult(Neo4jAL neo4jAL, MetaRequest mr) throws Neo4jQueryException {
+    String request = RequestNormalizer.stripTerminator(mr.getRequest());
+    String req =
+        String.format(
+            "CALL { %s } WITH `%s` AS val WHERE val IS NOT NULL RETURN val LIMIT 1",
+            request, mr.getReturnValue());
+
+    Result res = neo4jAL.executeQuery(req);
+    Object first = res.hasNext() ? res.next().get("val") : null;
+    res.close();
+    return first;
+  }
+
+  /**
+   * Tag the results of a forged request with a single statement run by the database. The nodes
+   * already carrying the tag are counted as matched, not tagged.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param relationships True if the request returns relationships
+   * @param tag Tag to apply
+   * @param storage Representation of the tags
+   * @param last Id after which the nodes are tagged, ignored without batch
+   * @param batchSize Maximum number of nodes tagged, 0 or less to tag all of them
+   * @return The number of nodes tagged, the number of nodes matched and the highest id matched
+   * @throws Neo4jQueryException
+   */
+  public static long[] tagInDatabase(
+      Neo4jAL neo4jAL,
+      MetaRequest mr,
+      boolean relationships,
+      String tag,
+      TagStorage storage,
+      long last,
+      long batchSize)
+      throws Neo4jQueryException {
+    String tagging;
+    if (storage == TagStorage.RELATIONSHIP) {
+      tagging =
+          String.format(
+              "MERGE (t:`%1$s` { %2$s : $tagName }) WITH val, t, NOT exists((val)-[:`%3$s`]->(t)) AS missing "
+                  + "FOREACH (_ IN CASE WHEN missing THEN [1] ELSE [] END | CREATE (val)-[:`%3$s`]->(t))",
+              TagBatch.getTagLabelPropertyAsString(),
+              TagBatch.getTagNameProperty(),
+              TagBatch.getToTagRelationship().name());
+    } else {
+      tagging =
+          "WITH val, NOT $tagName IN coalesce(val.Tags, []) AS missing "
+              + "FOREACH (_ IN CASE WHEN missing THEN [1] ELSE [] END | "
+              + MetaLanguageProcessor.ANCHOR_TAG_SET_VALUE.replace("@", "val")
+              + ")";
+    }
 
+    boolean batched = batchSize > 0;
+    String req = MetaLanguageProcessor.forgeTagRequest(mr, relationships, tagging, batched);
+    Map<String, Object> params = new HashMap<>();
+    params.put("tagName", tag);
+    if (batched) {
+      params.put("last", last);
+      params.put("batch", batchSize);
+    }
 
-    Long numTagged = 0L;
+    try (Result res = neo4jAL.executeQuery(req, params)) {
+      if (!res.hasNext()) return new long[] {0L, 0L, last};
+      Map<String, Object> row = res.next();
+      Object max = row.get("last");
+      return new long[] {
+        ((Number) row.get("tagged")).longValue(),
+        ((Number) row.get("matched")).longValue(),
+        max == null ? last : ((Number) max).longValue()
+      };
+    }
+  }
+
+  /**
+   * Forge the request of the group for an application
+   *
+   * @param application Name of the application
+   * @return The meta request, null if the group has no request
+   * @throws Neo4JTemplateLanguageException
+   */
+  public MetaRequest forgeRequest(String application) throws Neo4JTemplateLanguageException {
+    if (this.cypherRequest == null || this.cypherRequest.isBlank()) return null;
+    MetaRequest mr = MetaLanguageProcessor.forgeRequest(this.cypherRequest, this.cypherRequestReturn, application);
+    if (mr == null || mr.getRequest() == null) return null;
+    return mr;
+  }
+
+  /**
+   * Fingerprint of a forged request and of the tag it applies. Changes as soon as the request, its
+   * return value or the name of the group is modified.
+   *
+   * @param mr Forged request
+   * @return The fingerprint
+   */
+  public String getFingerprint(MetaRequest mr) {
+    return RequestNormalizer.hash(mr.getRequest(), mr.getReturnValue(), getTagName());
+  }
+
+  /**
+   * Fingerprint of a forged request alone. Two groups with the same request fingerprint match the
+   * same nodes, whatever their names.
+   *
+   * @param mr Forged request
+   * @return The fingerprint
+   */
+  public static String getRequestFingerprint(MetaRequest mr) {
+    return RequestNormalizer.hash(mr.getRequest(), mr.getReturnValue());
+  }
+
+  /**
+   * Run a forged request and collect the ids of the nodes it would tag, without tagging them. The
+   * start and end nodes of the relationships returned are collected.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @return The ids of the nodes
+   * @throws Neo4jQueryException
+   */
+  public static IdBitmap getMatchingIds(Neo4jAL neo4jAL, MetaRequest mr) throws Neo4jQueryException {
+    return getMatchingIds(neo4jAL, mr, null);
+  }
+
+  /**
+   * Run a forged request and collect the ids of the nodes it would tag, until the limits of an
+   * execution are reached. The memory estimated is the size of the ids collected.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param execution Execution tracking the rows read, null for no limit
+   * @return The ids of the nodes read before the limits
+   * @throws Neo4jQueryException
+   */
+  public static IdBitmap getMatchingIds(Neo4jAL neo4jAL, MetaRequest mr, ExecutionBudget.Execution execution)
+      throws Neo4jQueryException {
+    IdBitmap ids = new IdBitmap();
+    Result res = executeTracked(neo4jAL, mr.getRequest(), Map.of(), execution);
+    long start = System.currentTimeMillis();
     while (res.hasNext()) {
-      Map<String, Object> returned = res.next();
+      if (execution != null && !execution.next(ids.sizeInBytes())) break;
+
+      Object returned = res.next().get(mr.getReturnValue());
+      if (returned instanceof Node) {
+        ids.add(((Node) returned).getId());
+      } else if (returned instanceof Relationship) {
+        Relationship rel = (Relationship) returned;
+        ids.add(rel.getStartNodeId());
+        ids.add(rel.getEndNodeId());
+      }
+    }
+    closeTracked(res, start, execution);
+    return ids;
+  }
+
+  /**
+   * Execute a request and record its planning time : the request is planned when it is submitted,
+   * the rows are produced while they are read. The request is run with PROFILE when the db hits of
+   * the execution are collected.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param request Request to execute
+   * @param params Parameters of the request
+   * @param execution Execution tracked, can be null
+   * @return The result of the request
+   * @throws Neo4jQueryException
+   */
+  private static Result executeTracked(
+      Neo4jAL neo4jAL, String request, Map<String, Object> params, ExecutionBudget.Execution execution)
+      throws Neo4jQueryException {
+    if (execution == null) return neo4jAL.executeQuery(request, params);
+
+    long start = System.currentTimeMillis();
+    Result res = neo4jAL.executeQuery(execution.isProfiled() ? "PROFILE " + request : request, params);
+    execution.addPlanningTime(System.currentTimeMillis() - start);
+    return res;
+  }
+
+  /**
+   * Close a result and record the execution time, and the db hits if the request was profiled and
+   * completely read
+   *
+   * @param res Result to close
+   * @param start Time of the first read
+   * @param execution Execution tracked, can be null
+   */
+  private static void closeTracked(Result res, long start, ExecutionBudget.Execution execution) {
+    if (execution != null) {
+      execution.addExecutionTime(System.currentTimeMillis() - start);
+      if (execution.isProfiled() && execution.isOk() && !res.hasNext()) {
+        execution.addDbHits(GroupProfiler.getDbHits(res.getExecutionPlanDescription()));
+      }
+    }
+    res.close();
+  }
+
+  /**
+   * Count the rows returned by a forged request, up to a limit. The database stops producing rows
+   * once the limit is reached.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param limit Maximum number of rows counted, negative for no limit
+   * @param execution Execution tracked, can be null
+   * @return The number of rows
+   * @throws Neo4jQueryException
+   */
+  public static long countRows(Neo4jAL neo4jAL, MetaRequest mr, long limit, ExecutionBudget.Execution execution)
+      throws Neo4jQueryException {
+    String request = RequestNormalizer.stripTerminator(mr.getRequest());
+    String req =
+        String.format(
+            "CALL { %s } WITH `%s` AS val %s RETURN COUNT(*) AS rows",
+            request, mr.getReturnValue(), limit < 0 ? "" : "LIMIT $limit");
+
+    Result res = executeTracked(neo4jAL, req, Map.of("limit", limit), execution);
+    long start = System.currentTimeMillis();
+    long rows = res.hasNext() ? (Long) res.next().get("rows") : 0L;
+    closeTracked(res, start, execution);
+    return rows;
+  }
+
+  /**
+   * Count the rows and the distinct elements returned by a forged request. The aggregation is done
+   * by the database, the rows are not streamed back.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @return The number of rows and the number of distinct elements
+   * @throws Neo4jQueryException
+   */
+  public static long[] computeStatistics(Neo4jAL neo4jAL, MetaRequest mr) throws Neo4jQueryException {
+    return computeStatistics(neo4jAL, mr, null);
+  }
 
-      applyTag(returned.get(mr.getReturnValue()), parisPrefix+  this.groupName);
-      numTagged++;
+  /**
+   * Count the rows and the distinct elements returned by a forged request, recording the timings
+   * of an execution
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param execution Execution tracked, can be null
+   * @return The number of rows and the number of distinct elements
+   * @throws Neo4jQueryException
+   */
+  public static long[] computeStatistics(Neo4jAL neo4jAL, MetaRequest mr, ExecutionBudget.Execution execution)
+      throws Neo4jQueryException {
+    String request = RequestNormalizer.stripTerminator(mr.getRequest());
+    String req =
+        String.format(
+            "CALL { %s } WITH `%s` AS val RETURN COUNT(*) AS rows, COUNT(DISTINCT val) AS matches",
+            request, mr.getReturnValue());
+
+    Result res = executeTracked(neo4jAL, req, Map.of(), execution);
+    long start = System.currentTimeMillis();
+    long[] stats = {0L, 0L};
+    if (res.hasNext()) {
+      Map<String, Object> row = res.next();
+      stats = new long[] {(Long) row.get("rows"), (Long) row.get("matches")};
     }
+    closeTracked(res, start, execution);
+    return stats;
+  }
 
+  /**
+   * Stream the elements returned by the request of an architecture rule. Each element is a
+   * violation of the rule, passed to the consumer as soon as it is read.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param consumer Consumer of the violations ( id, name, type, full name of the element )
+   * @return The number of violations
+   * @throws Neo4jQueryException
+   */
+  public static long streamViolations(Neo4jAL neo4jAL, MetaRequest mr, Consumer<Map<String, Object>> consumer)
+      throws Neo4jQueryException {
+    Result res = neo4jAL.executeQuery(mr.getRequest());
+    long count = 0L;
+    while (res.hasNext()) {
+      Object returned = res.next().get(mr.getReturnValue());
+      Map<String, Object> violation = new HashMap<>();
+      if (returned instanceof Entity) {
+        Entity entity = (Entity) returned;
+        violation.put("id", entity.getId());
+        violation.put("name", entity.getProperty("Name", ""));
+        violation.put("type", entity.getProperty("Type", ""));
+        violation.put("fullName", entity.getProperty("FullName", ""));
+      } else {
+        violation.put("id", -1L);
+        violation.put("name", String.valueOf(returned));
+        violation.put("type", "");
+        violation.put("fullName", "");
+      }
+      consumer.accept(violation);
+      count++;
+    }
+    return count;
+  }
 
-    neo4jAL.logInfo("Result  : " + numTagged);
+  private void executeAsStatistics(Neo4jAL neo4jAL, String application, MetaRequest mr, ExecutionBudget budget, ExecutionBudget.Execution execution) throws Exception, ExtensionException {
+    long[] stats = budget.run(neo4jAL, execution, al -> computeStatistics(al, mr, execution));
+    if (stats == null) return;
 
-    return numTagged;
+    // Counted by the database without dropping any row
+    execution.addRows(stats[0]);
+    execution.setResult(stats[1]);
+    GroupStatistics.save(neo4jAL, this.node, application, stats[0], stats[1], execution.getElapsed());
+  }
+
+  private void executeAsArchitectureRule(Neo4jAL neo4jAL, String application, MetaRequest mr, ExecutionBudget budget, ExecutionBudget.Execution execution) throws Exception, ExtensionException {
+    long[] stats = budget.run(neo4jAL, execution, al -> computeStatistics(al, mr, execution));
+    if (stats == null) return;
+
+    execution.addRows(stats[0]);
+    execution.setResult(stats[1]);
+    if (stats[1] > 0) {
+      List<Long> sample = budget.run(neo4jAL, execution, al -> getSample(al, mr, RULE_SAMPLE_SIZE, execution));
+      if (sample != null) execution.setSample(sample);
+    }
+    neo4jAL.logInfo(String.format("Rule '%s' : %d violations on '%s'.", this.name, stats[1], application));
+  }
+
+  /**
+   * Get the ids of a bounded sample of the distinct elements returned by a forged request. The
+   * values which are not nodes nor relationships are ignored.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param mr Forged request
+   * @param size Maximum number of ids
+   * @param execution Execution tracked, can be null
+   * @return The ids of the elements
+   * @throws Neo4jQueryException
+   */
+  public static List<Long> getSample(Neo4jAL neo4jAL, MetaRequest mr, int size, ExecutionBudget.Execution execution)
+      throws Neo4jQueryException {
+    String request = RequestNormalizer.stripTerminator(mr.getRequest());
+    String req =
+        String.format(
+            "CALL { %s } WITH DISTINCT `%s` AS val WHERE val IS NOT NULL RETURN val LIMIT $limit",
+            request, mr.getReturnValue());
+
+    Result res = executeTracked(neo4jAL, req, Map.of("limit", (long) size), execution);
+    long start = System.currentTimeMillis();
+    List<Long> ids = new ArrayList<>();
+    while (res.hasNext()) {
+      Object value = res.next().get("val");
+      if (value instanceof Entity) ids.add(((Entity) value).getId());
+    }
+    closeTracked(res, start, execution);
+    return ids;
   }
 
   // Execute group
-  public Long execute(Neo4jAL neo4jAL, String application, GroupType executionType) throws Neo4jQueryException, Neo4JTemplateLanguageException {
+  public Long execute(Neo4jAL neo4jAL, String application, GroupType executionType) throws Exception, ExtensionException {
+    ExecutionBudget.Execution execution = execute(neo4jAL, application, executionType, ExecutionBudget.getDefault());
+    if (execution == null) return 0L;
+
+    if (!execution.isOk()) {
+      neo4jAL.logError(String.format("Execution of the group '%s' stopped : %s after %d rows.", this.name, execution.getStatus(), execution.getRows()));
+    }
+    return execution.getResult();
+  }
+
+  /**
+   * Execute the group under a budget. The request runs in its own transaction, bounded by the
+   * timeout. The tags are written in a new transaction, committed only if the request completed
+   * within its limits; the statistics are saved in the transaction of the caller. The profile of the
+   * execution is recorded by the GroupProfiler.
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param executionType Type of the execution
+   * @param budget Limits of the execution
+   * @return The execution with its status ( OK, TIMED_OUT or TRUNCATED ), null if the group has nothing to execute
+   * @throws Exception
+   * @throws ExtensionException
+   */
+  public ExecutionBudget.Execution execute(Neo4jAL neo4jAL, String application, GroupType executionType, ExecutionBudget budget) throws Exception, ExtensionException {
+    ExecutionBudget.Execution execution = budget.start();
+    MetaRequest mr = forgeRequest(application);
+    execution.addForgeTime(System.currentTimeMillis() - execution.getStart());
+    if (mr == null || executionType == null) return null;
+
     if(executionType == GroupType.TAG) {
-      return executeAsTag(neo4jAL, application);
+      executeAsTag(neo4jAL, application, mr, budget, execution);
+    } else if(executionType == GroupType.STATISTICS) {
+      executeAsStatistics(neo4jAL, application, mr, budget, execution);
+    } else if(executionType == GroupType.ARCHITECTURE_RULE) {
+      executeAsArchitectureRule(neo4jAL, application, mr, budget, execution);
+    } else {
+      return null;
     }
 
-    return 0L;
+    GroupProfiler.record(this, application, executionType.toString(), execution);
+    return execution;
   }
 
   /**
-   * Forecast the result of a tag
-   * @param neo4jAL
-   * @param application
-   * @return
+   * Forecast the result of a tag. The count is served from the forecast cache while the graph is unchanged.
+   * The nodes are counted on the committed state of the graph only, never in the transaction of the
+   * caller : on the columnar cache, or by a request run in its own transaction. The writes pending in the
+   * caller's transaction are not seen, and can't end up in the cache.
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @return The number of nodes and the status of the count, null if the group has no request
    * @throws Neo4JTemplateLanguageException
    */
   public GroupResult forecast(Neo4jAL neo4jAL, String application) throws Neo4JTemplateLanguageException {
     if (this.cypherRequest.isBlank()) return null;
 
     // Build the meta request
-    MetaRequest mr = MetaLanguageProcessor.forgeRequest(this.cypherRequest, this.cypherRequestReturn, application);
+    ExecutionBudget budget = ExecutionBudget.getDefault();
+    ExecutionBudget.Execution execution = budget.start();
+    MetaRequest mr = forgeRequest(application);
+    execution.addForgeTime(System.currentTimeMillis() - execution.getStart());
     if(mr == null) {
       neo4jAL.logError(String.format("It seems that the Meta-Request creation failed for tag : %s", this.toString()));
       return null;
     }
 
-    neo4jAL.logInfo(String.format("DEBUG :: about to execute request : %s ", mr.getRequest()));
-
-    Long numResult = 0L;
-    try {
-      Result result = neo4jAL.executeQuery(mr.getRequest());
-      while (result.hasNext()) {
-        result.next();
-        numResult ++;
+    // Reuse the last forecast if the graph didn't change since. The version is read before the count :
+    // a commit during the count leaves the value under an outdated version, never reused
+    ForecastCache cache = ForecastCache.getInstance(neo4jAL.getDb().databaseName());
+    long version = GraphVersion.get(neo4jAL);
+    String contentHash = getContentHash();
+    Long numResult = cache.get(contentHash, application, version);
+    if (numResult != null) return new GroupResult(this, numResult);
+
+    // Simple requests are counted on the columnar cache of the application, if available
+    SimpleRequestCompiler.SimpleRequest compiled = SimpleRequestCompiler.compile(mr);
+    if (compiled != null && compiled.getLabels().contains(application)) {
+      ColumnarCache columns = ColumnarCache.getIfValid(neo4jAL, application);
+      if (columns != null && columns.covers(compiled)) {
+        long start = System.currentTimeMillis();
+        // Exact count, not bounded by the row limit
+        execution.addRows(columns.count(compiled));
+        execution.addExecutionTime(System.currentTimeMillis() - start);
+        GroupProfiler.record(this, application, "FORECAST_COLUMNAR", execution);
+        cache.put(contentHash, application, version, execution.getRows());
+        return new GroupResult(this, execution.getRows(), execution.getStatus());
       }
+    }
 
-    } catch (Exception | Neo4jQueryException e) {
+    // Counted under the budget, one row over the limit to detect the truncation
+    long limit = budget.getMaxRows() < 0 ? -1L : budget.getMaxRows() + 1;
+    try {
+      Long counted = budget.run(neo4jAL, execution, al -> countRows(al, mr, limit, execution));
+      if (counted != null) execution.count(counted);
+    } catch (Exception | ExtensionException e) {
       neo4jAL.logError(String.format("Failed to execute the request '%s'.", mr.getRequest()));
+      return new GroupResult(this, 0L, "FAILED");
     }
 
-    return new GroupResult(this, numResult);
+    GroupProfiler.record(this, application, "FORECAST", execution);
+
+    // Partial counts are not reused
+    if (execution.isOk()) cache.put(contentHash, application, version, execution.getRows());
+    return new GroupResult(this, execution.getRows(), execution.getStatus());
 
   }
+
 }
@@ -0,0 +1,139 @@
+package com.castsoftware.paris.models.Group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dependencies between groups, built from the outputs ( tag and declared writes ) and the declared
+ * reads of each group. A group depends on every other group producing one of its reads. The groups
+ * are ordered in waves : the groups of a wave only depend on groups of the previous waves.
+ */
+public class GroupDependencyGraph {
+
+  private final Map<Long, String> names = new LinkedHashMap<>();
+  private final Map<Long, Set<Long>> predecessors = new HashMap<>();
+  private final Map<Long, Set<Long>> successors = new HashMap<>();
+
+  private final List<List<Long>> waves = new ArrayList<>();
+  private final List<Long> cycles = new ArrayList<>();
+
+  /**
+   * Build the graph of a list of groups
+   *
+   * @param groups Groups to order
+   */
+  public GroupDependencyGraph(List<Group> groups) {
+    Map<String, List<Long>> writers = new HashMap<>();
+    for (Group g : groups) {
+      Long id = g.getNode().getId();
+      names.put(id, g.getName());
+      predecessors.put(id, new LinkedHashSet<>());
+      successors.put(id, new LinkedHashSet<>());
+      for (String output : g.getOutputs()) {
+        writers.computeIfAbsent(output, k -> new ArrayList<>()).add(id);
+      }
+    }
+
+    for (Group g : groups) {
+      Long id = g.getNode().getId();
+      for (String input : g.getReads()) {
+        for (Long writer : writers.getOrDefault(input, Collections.emptyList())) {
+          if (writer.equals(id)) continue;
+          predecessors.get(id).add(writer);
+          successors.get(writer).add(id);
+        }
+      }
+    }
+
+    computeWaves();
+  }
+
+  // Kahn's algorithm, one wave per level
+  private void computeWaves() {
+    Map<Long, Integer> remaining = new HashMap<>();
+    List<Long> current = new ArrayList<>();
+    for (Long id : names.keySet()) {
+      remaining.put(id, predecessors.get(id).size());
+      if (predecessors.get(id).isEmpty()) current.add(id);
+    }
+
+    int placed = 0;
+    while (!current.isEmpty()) {
+      waves.add(current);
+      placed += current.size();
+
+      List<Long> next = new ArrayList<>();
+      for (Long id : current) {
+        for (Long succ : successors.get(id)) {
+          int left = remaining.merge(succ, -1, Integer::sum);
+          if (left == 0) next.add(succ);
+        }
+      }
+      current = next;
+    }
+
+    if (placed == names.size()) return;
+    for (Map.Entry<Long, Integer> en : remaining.entrySet()) {
+      if (en.getValue() > 0) cycles.add(en.getKey());
+    }
+  }
+
+  public List<List<Long>> getWaves() {
+    return waves;
+  }
+
+  /**
+   * Groups that could not be ordered : they are part of a cycle or depend on one
+   *
+   * @return The ids of the groups
+   */
+  public List<Long> getCycles() {
+    return cycles;
+  }
+
+  public Set<Long> getPredecessors(Long id) {
+    return predecessors.getOrDefault(id, Collections.emptySet());
+  }
+
+  public String getName(Long id) {
+    return names.getOrDefault(id, "");
+  }
+
+  /**
+   * Longest chain of dependent groups, weighted by their duration
+   *
+   * @param durations Duration of each group
+   * @return The ids of the groups on the critical path, in execution order
+   */
+  public List<Long> getCriticalPath(Map<Long, Long> durations) {
+    Map<Long, Long> finish = new HashMap<>();
+    Map<Long, Long> previous = new HashMap<>();
+    Long last = null;
+
+    for (List<Long> wave : waves) {
+      for (Long id : wave) {
+        long start = 0L;
+        for (Long pred : predecessors.get(id)) {
+          long f = finish.getOrDefault(pred, 0L);
+          if (previous.get(id) == null || f > start) {
+            start = f;
+            previous.put(id, pred);
+          }
+        }
+        finish.put(id, start + durations.getOrDefault(id, 0L));
+        if (last == null || finish.get(id) > finish.get(last)) last = id;
+      }
+    }
+
+    List<Long> path = new ArrayList<>();
+    for (Long id = last; id != null; id = previous.get(id)) path.add(id);
+    Collections.reverse(path);
+    return path;
+  }
+}
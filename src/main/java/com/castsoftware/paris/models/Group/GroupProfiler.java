@@ -0,0 +1,199 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.results.GroupStatsResult;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Profiles of the last group executions, kept in memory in a ring buffer : the oldest profiles are
+ * overwritten once the buffer is full. Each profile holds the time spent forging, planning and
+ * executing the request, writing the tags, and the rows read. The db hits are collected only when
+ * the requests are run with PROFILE, which is enabled on demand.
+ */
+public class GroupProfiler {
+
+  private static final int CAPACITY =
+      Integer.parseInt(Configuration.get("paris.profiler.capacity"));
+
+  private static final Profile[] BUFFER = new Profile[Math.max(1, CAPACITY)];
+  private static int next = 0;
+  private static long recorded = 0L;
+
+  private static volatile boolean profilingQueries =
+      Boolean.parseBoolean(Configuration.get("paris.profiler.profile_queries"));
+
+  /** Profile of an execution */
+  public static class Profile {
+    public final long timestamp = System.currentTimeMillis();
+    public Long idGroup;
+    public String name;
+    public String application;
+    public String operation;
+    public String status;
+    public long totalTime;
+    public long forgeTime;
+    public long planningTime;
+    public long executionTime;
+    public long writeTime;
+    public long rows;
+    public long dbHits;
+  }
+
+  private GroupProfiler() {}
+
+  public static boolean isProfilingQueries() {
+    return profilingQueries;
+  }
+
+  /**
+   * Run the next requests with PROFILE to collect their db hits. Profiling slows the requests down.
+   *
+   * @param enabled True to profile the requests
+   */
+  public static void setProfilingQueries(boolean enabled) {
+    profilingQueries = enabled;
+  }
+
+  /**
+   * Record the profile of an execution
+   *
+   * @param group Group executed
+   * @param application Name of the application
+   * @param operation Operation ( Forecast, Tag, Statistics, ... )
+   * @param execution Execution done
+   */
+  public static void record(
+      Group group, String application, String operation, ExecutionBudget.Execution execution) {
+    Profile p = new Profile();
+    p.idGroup = group.getNode() == null ? -1L : group.getNode().getId();
+    p.name = group.getName();
+    p.application = application;
+    p.operation = operation;
+    p.status = execution.getStatus();
+    p.totalTime = System.currentTimeMillis() - execution.getStart();
+    p.forgeTime = execution.getForgeTime();
+    p.planningTime = execution.getPlanningTime();
+    p.executionTime = execution.getExecutionTime();
+    p.writeTime = execution.getWriteTime();
+    p.rows = execution.getRows();
+    p.dbHits = execution.getDbHits();
+    record(p);
+  }
+
+  private static synchronized void record(Profile profile) {
+    BUFFER[next] = profile;
+    next = (next + 1) % BUFFER.length;
+    recorded++;
+  }
+
+  /**
+   * Get the profiles in the buffer, from the oldest to the newest
+   *
+   * @return The profiles
+   */
+  public static synchronized List<Profile> getProfiles() {
+    List<Profile> profiles = new ArrayList<>();
+    int size = (int) Math.min(recorded, BUFFER.length);
+    int first = recorded > BUFFER.length ? next : 0;
+    for (int i = 0; i < size; i++) profiles.add(BUFFER[(first + i) % BUFFER.length]);
+    return profiles;
+  }
+
+  /** Drop all the profiles */
+  public static synchronized void clear() {
+    Arrays.fill(BUFFER, null);
+    next = 0;
+    recorded = 0L;
+  }
+
+  /**
+   * Count the executions recorded per group, all applications and operations included
+   *
+   * @return The number of profiles by id of group
+   */
+  public static Map<Long, Long> getExecutionCounts() {
+    Map<Long, Long> counts = new HashMap<>();
+    for (Profile p : getProfiles()) counts.merge(p.idGroup, 1L, Long::sum);
+    return counts;
+  }
+
+  /**
+   * Aggregate the profiles per group and application, and return the slowest ones, ordered by the
+   * 90th percentile of their total time. The timings, rows and db hits are averaged over the
+   * executions, with the maximum of the rows and db hits alongside.
+   *
+   * @param limit Maximum number of groups returned, negative for no limit
+   * @return The statistics of the slowest groups
+   */
+  public static List<GroupStatsResult> getSlowestGroups(long limit) {
+    Map<String, List<Profile>> byGroup = new LinkedHashMap<>();
+    for (Profile p : getProfiles()) {
+      byGroup.computeIfAbsent(p.idGroup + "::" + p.application, k -> new ArrayList<>()).add(p);
+    }
+
+    List<GroupStatsResult> results = new ArrayList<>();
+    for (List<Profile> profiles : byGroup.values()) {
+      long[] times = profiles.stream().mapToLong(p -> p.totalTime).sorted().toArray();
+      Profile last = profiles.get(profiles.size() - 1);
+      int n = profiles.size();
+      // Only the profiled executions have db hits
+      LongSummaryStatistics hits =
+          profiles.stream().mapToLong(p -> p.dbHits).filter(h -> h >= 0).summaryStatistics();
+
+      results.add(
+          new GroupStatsResult(
+              last.idGroup,
+              last.name,
+              last.application,
+              (long) n,
+              Arrays.stream(times).sum(),
+              times[n - 1],
+              percentile(times, 50),
+              percentile(times, 90),
+              percentile(times, 99),
+              profiles.stream().mapToLong(p -> p.forgeTime).sum() / n,
+              profiles.stream().mapToLong(p -> p.planningTime).sum() / n,
+              profiles.stream().mapToLong(p -> p.executionTime).sum() / n,
+              profiles.stream().mapToLong(p -> p.writeTime).sum() / n,
+              profiles.stream().mapToLong(p -> p.rows).sum() / n,
+              profiles.stream().mapToLong(p -> p.rows).max().orElse(0L),
+              hits.getCount() == 0 ? -1L : Math.round(hits.getAverage()),
+              hits.getCount() == 0 ? -1L : hits.getMax(),
+              profiles.stream().map(p -> p.status).filter(s -> !ExecutionBudget.OK.equals(s)).count()));
+    }
+
+    return results.stream()
+        .sorted(Comparator.comparingLong((GroupStatsResult r) -> r.p90).reversed())
+        .limit(limit < 0 ? Long.MAX_VALUE : limit)
+        .collect(Collectors.toList());
+  }
+
+  // Nearest-rank percentile of sorted values
+  private static long percentile(long[] sorted, int percent) {
+    int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+    return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+  }
+
+  /**
+   * Sum the db hits of a profiled plan
+   *
+   * @param plan Plan of a request run with PROFILE
+   * @return The db hits of all the operators
+   */
+  public static long getDbHits(ExecutionPlanDescription plan) {
+    if (plan == null) return 0L;
+    long hits = plan.hasProfilerStatistics() ? plan.getProfilerStatistics().getDbHits() : 0L;
+    for (ExecutionPlanDescription child : plan.getChildren()) hits += getDbHits(child);
+    return hits;
+  }
+}
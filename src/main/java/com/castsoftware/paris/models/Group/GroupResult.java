@@ -5,6 +5,7 @@ public class GroupResult {
 	private Long objectConcerned;
 	private String name;
 	private String description;
+	private String status = ExecutionBudget.OK;
 
 	public Long getObjectConcerned() {
 		return objectConcerned;
@@ -29,6 +30,10 @@ public class GroupResult {
 		return idGroup;
 	}
 
+	public String getStatus() {
+		return status;
+	}
+
 
 	public GroupResult(Group dg, Long objectConcerned) {
 		assert dg.getNode() != null: "Cannot create a GroupResult from a not instantiated Group Node";
@@ -37,4 +42,9 @@ public class GroupResult {
 		this.name = dg.getName();
 		this.description = dg.getDescription();
 	}
+
+	public GroupResult(Group dg, Long objectConcerned, String status) {
+		this(dg, objectConcerned);
+		this.status = status;
+	}
 }
@@ -0,0 +1,316 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ExtensionException;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Run a task on a list of groups in parallel. Each group is processed by a worker in its own
+ * transaction, which is rolled back once the task is done : the tasks only read the graph, the
+ * writes are done by the caller once the results are collected. The transactions are bounded by
+ * the timeout of the execution budget : a group terminated by the database is reported as timed
+ * out and the other groups go on.
+ */
+public class GroupRunner {
+
+  private static final int DEFAULT_PARALLELISM =
+      Integer.parseInt(Configuration.get("paris.runner.parallelism"));
+
+  /** Task executed on each group */
+  public interface GroupTask<T> {
+    T run(Neo4jAL workerAL, Group group) throws Exception, ExtensionException;
+  }
+
+  /** Task emitting values while it runs */
+  public interface StreamTask<R> {
+    void run(Neo4jAL workerAL, Group group, Consumer<R> emit) throws Exception, ExtensionException;
+  }
+
+  /** Result of a task on a group */
+  public static class Outcome<T> {
+    public final Long idGroup;
+    public String name = "";
+    public String tag = "";
+    public String status = "OK";
+    public T value = null;
+    public Throwable error = null;
+    public long elapsed = 0L;
+
+    private Outcome(Long idGroup) {
+      this.idGroup = idGroup;
+    }
+
+    public boolean isOk() {
+      return "OK".equals(status);
+    }
+  }
+
+  private static final Object END_OF_STREAM = new Object();
+  private static final long QUEUE_POLL_MS = 100L;
+
+  private final Neo4jAL neo4jAL;
+  private final int parallelism;
+  private final ExecutionBudget budget;
+
+  public GroupRunner(Neo4jAL neo4jAL) {
+    this(neo4jAL, DEFAULT_PARALLELISM);
+  }
+
+  public GroupRunner(Neo4jAL neo4jAL, int parallelism) {
+    this(neo4jAL, parallelism, ExecutionBudget.getDefault());
+  }
+
+  public GroupRunner(Neo4jAL neo4jAL, int parallelism, ExecutionBudget budget) {
+    this.neo4jAL = neo4jAL;
+    this.parallelism = Math.max(1, parallelism);
+    this.budget = budget;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Run the task on the groups and wait for all of them
+   *
+   * @param groupIds Ids of the groups
+   * @param task Task to run
+   * @return The outcomes, in the order of the ids
+   */
+  public <T> List<Outcome<T>> run(List<Long> groupIds, GroupTask<T> task) {
+    return run(groupIds, task, Map.of());
+  }
+
+  /**
+   * Run the task on the groups, starting with the longest ones : the workers pick the groups in
+   * the order of submission, so the long groups don't end the run alone.
+   *
+   * @param groupIds Ids of the groups
+   * @param task Task to run
+   * @param expectedTimes Expected time of the groups, the groups without estimate are started first
+   * @return The outcomes, in the order of the ids
+   */
+  public <T> List<Outcome<T>> run(
+      List<Long> groupIds, GroupTask<T> task, Map<Long, Double> expectedTimes) {
+    List<Outcome<T>> outcomes = new ArrayList<>();
+    if (groupIds.isEmpty()) return outcomes;
+
+    List<Long> order = new ArrayList<>(groupIds);
+    if (!expectedTimes.isEmpty()) {
+      order.sort(
+          Comparator.comparingDouble(
+                  (Long id) -> expectedTimes.getOrDefault(id, Double.MAX_VALUE))
+              .reversed());
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, groupIds.size()));
+    try {
+      Map<Long, Future<Outcome<T>>> submitted = new HashMap<>();
+      for (Long id : order) submitted.computeIfAbsent(id, k -> pool.submit(() -> runOne(k, task)));
+
+      List<Future<Outcome<T>>> futures = new ArrayList<>();
+      for (Long id : groupIds) futures.add(submitted.get(id));
+
+      for (int i = 0; i < futures.size(); i++) {
+        try {
+          outcomes.add(futures.get(i).get());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          outcomes.add(failed(groupIds.get(i), e));
+        } catch (ExecutionException e) {
+          outcomes.add(failed(groupIds.get(i), e.getCause()));
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return outcomes;
+  }
+
+  /**
+   * Run a streaming task on the groups in the background. The values emitted by the workers are
+   * returned as they come, through a bounded queue : the workers wait when the consumer is slower.
+   * Closing the stream cancels the remaining work.
+   *
+   * @param groupIds Ids of the groups
+   * @param task Task to run
+   * @param capacity Maximum number of values waiting in the queue
+   * @return The stream of the values emitted
+   */
+  public <R> Stream<R> stream(List<Long> groupIds, StreamTask<R> task, int capacity) {
+    return stream(groupIds, task, capacity, null);
+  }
+
+  /**
+   * Run a streaming task on the groups in the background, and close the values of each group with a
+   * summary of its outcome : its status, its error and the number of values it emitted. The
+   * summaries are emitted once all the groups are done, so a failed group can't be mistaken for a
+   * group without any value.
+   *
+   * @param groupIds Ids of the groups
+   * @param task Task to run
+   * @param capacity Maximum number of values waiting in the queue
+   * @param summary Value summarizing the outcome of a group, null to emit nothing
+   * @return The stream of the values emitted, followed by the summaries
+   */
+  @SuppressWarnings("unchecked")
+  public <R> Stream<R> stream(
+      List<Long> groupIds, StreamTask<R> task, int capacity, Function<Outcome<Long>, R> summary) {
+    BlockingQueue<Object> queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    AtomicBoolean cancelled = new AtomicBoolean(false);
+
+    Consumer<Object> emit =
+        value -> {
+          try {
+            while (!queue.offer(value, QUEUE_POLL_MS, TimeUnit.MILLISECONDS)) {
+              if (cancelled.get()) throw new CancellationException();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+          }
+        };
+
+    ExecutorService coordinator = Executors.newSingleThreadExecutor();
+    coordinator.submit(
+        () -> {
+          try {
+            List<Outcome<Long>> outcomes =
+                run(groupIds, (al, group) -> {
+                  if (cancelled.get()) throw new CancellationException();
+                  long[] emitted = {0L};
+                  task.run(al, group, r -> {
+                    emit.accept(r);
+                    emitted[0]++;
+                  });
+                  return emitted[0];
+                });
+
+            if (summary != null) {
+              for (Outcome<Long> outcome : outcomes) {
+                R value = summary.apply(outcome);
+                if (value != null) emit.accept(value);
+              }
+            }
+          } finally {
+            try {
+              emit.accept(END_OF_STREAM);
+            } catch (CancellationException ignored) {
+              // Nobody is reading anymore
+            }
+          }
+        });
+    coordinator.shutdown();
+
+    Iterator<R> it =
+        new Iterator<R>() {
+          private Object next = null;
+
+          @Override
+          public boolean hasNext() {
+            if (next == null) {
+              try {
+                next = queue.take();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                next = END_OF_STREAM;
+              }
+            }
+            return next != END_OF_STREAM;
+          }
+
+          @Override
+          public R next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Object value = next;
+            next = null;
+            return (R) value;
+          }
+        };
+
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED), false)
+        .onClose(
+            () -> {
+              cancelled.set(true);
+              queue.clear();
+            });
+  }
+
+  private <T> Outcome<T> runOne(Long idGroup, GroupTask<T> task) {
+    Outcome<T> outcome = new Outcome<>(idGroup);
+    long start = System.currentTimeMillis();
+
+    try (Transaction tx = budget.beginTx(neo4jAL)) {
+      Node n;
+      try {
+        n = tx.getNodeById(idGroup);
+      } catch (NotFoundException e) {
+        outcome.status = "NOT_FOUND";
+        return outcome;
+      }
+
+      Group group = Group.fromNode(n);
+      if (group == null) {
+        outcome.status = "NOT_FOUND";
+        return outcome;
+      }
+
+      outcome.name = group.getName();
+      outcome.tag = group.getTagName();
+      outcome.value = task.run(new Neo4jAL(neo4jAL.getDb(), tx, neo4jAL.getLogger()), group);
+    } catch (CancellationException e) {
+      outcome.status = "CANCELLED";
+    } catch (Throwable e) {
+      if (budget.isExpired(start)) {
+        // Terminated by the database
+        neo4jAL.logError(
+            String.format(
+                "Group with ID %d timed out after %d ms.", idGroup, budget.getTimeoutMs()));
+        outcome.status = ExecutionBudget.TIMED_OUT;
+        return outcome;
+      }
+
+      neo4jAL.logError(
+          String.format("Ignored group with ID %d due to an error during its execution.", idGroup),
+          e);
+      outcome.status = "FAILED";
+      outcome.error = e;
+    } finally {
+      outcome.elapsed = System.currentTimeMillis() - start;
+    }
+    return outcome;
+  }
+
+  private <T> Outcome<T> failed(Long idGroup, Throwable e) {
+    Outcome<T> outcome = new Outcome<>(idGroup);
+    outcome.status = "FAILED";
+    outcome.error = e;
+    return outcome;
+  }
+}
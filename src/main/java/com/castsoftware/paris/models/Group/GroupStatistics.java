@@ -0,0 +1,123 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.database.Neo4jTypeManager;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+/**
+ * Statistics of a group on an application, computed by the STATISTICS execution mode. One node is
+ * kept per group and application, and overwritten at each execution.
+ */
+public class GroupStatistics {
+  // Label
+  private static final String LABEL_PROPERTY = "ParisStatistics";
+
+  // Relationships
+  private static final String FROM_GROUP_RELATIONSHIP = "HAS_STATISTICS";
+
+  // Properties
+  private static final String APPLICATION_PROPERTY = "Application";
+  private static final String ROWS_PROPERTY = "Rows";
+  private static final String MATCHES_PROPERTY = "Matches";
+  private static final String ELAPSED_PROPERTY = "Elapsed";
+  private static final String LAST_UPDATE_PROPERTY = "LastUpdate";
+
+  private final Node node;
+
+  private GroupStatistics(Node node) {
+    this.node = node;
+  }
+
+  public static Label getLabelProperty() {
+    return Label.label(LABEL_PROPERTY);
+  }
+
+  public static RelationshipType getFromGroupRelationship() {
+    return RelationshipType.withName(FROM_GROUP_RELATIONSHIP);
+  }
+
+  /**
+   * Find the statistics of a group on an application
+   *
+   * @param group Node of the group
+   * @param application Name of the application
+   * @return The statistics, null if they were never computed
+   */
+  public static GroupStatistics find(Node group, String application) {
+    for (Relationship rel : group.getRelationships(Direction.OUTGOING, getFromGroupRelationship())) {
+      Node n = rel.getEndNode();
+      if (application.equals(n.getProperty(APPLICATION_PROPERTY, null))) {
+        return new GroupStatistics(n);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Create or overwrite the statistics of a group on an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param group Node of the group
+   * @param application Name of the application
+   * @param rows Number of rows returned by the request
+   * @param matches Number of distinct elements returned
+   * @param elapsed Time spent computing the statistics, in milliseconds
+   * @return The statistics saved
+   * @throws Neo4jQueryException
+   */
+  public static GroupStatistics save(
+      Neo4jAL neo4jAL, Node group, String application, long rows, long matches, long elapsed)
+      throws Neo4jQueryException {
+    GroupStatistics stats = find(group, application);
+    if (stats == null) {
+      Node n = neo4jAL.createNode(getLabelProperty());
+      n.setProperty(APPLICATION_PROPERTY, application);
+      group.createRelationshipTo(n, getFromGroupRelationship());
+      stats = new GroupStatistics(n);
+    }
+
+    stats.node.setProperty(ROWS_PROPERTY, rows);
+    stats.node.setProperty(MATCHES_PROPERTY, matches);
+    stats.node.setProperty(ELAPSED_PROPERTY, elapsed);
+    stats.node.setProperty(LAST_UPDATE_PROPERTY, System.currentTimeMillis());
+    return stats;
+  }
+
+  /**
+   * Delete all the statistics of a group
+   *
+   * @param group Node of the group
+   */
+  public static void deleteAll(Node group) {
+    for (Relationship rel : group.getRelationships(Direction.OUTGOING, getFromGroupRelationship())) {
+      Node n = rel.getEndNode();
+      for (Relationship r : n.getRelationships()) r.delete();
+      n.delete();
+    }
+  }
+
+  public String getApplication() {
+    return Neo4jTypeManager.getAsString(node, APPLICATION_PROPERTY, "");
+  }
+
+  public Long getRows() {
+    return Neo4jTypeManager.getAsLong(node, ROWS_PROPERTY, 0L);
+  }
+
+  public Long getMatches() {
+    return Neo4jTypeManager.getAsLong(node, MATCHES_PROPERTY, 0L);
+  }
+
+  public Long getLastUpdate() {
+    return Neo4jTypeManager.getAsLong(node, LAST_UPDATE_PROPERTY, 0L);
+  }
+
+  public Node getNode() {
+    return node;
+  }
+}
@@ -0,0 +1,158 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tags collected over a batch of groups before being written. The nodes matched are accumulated
+ * per tag, then each node is written once with all its new tags, either in the Tags property or as
+ * relationships to ParisTag nodes.
+ */
+public class TagBatch {
+  // Tag nodes
+  private static final String TAG_LABEL_PROPERTY = "ParisTag";
+  private static final String TAG_NAME_PROPERTY = "Name";
+  private static final String TO_TAG_RELATIONSHIP = "HAS_PARIS_TAG";
+
+  private final Map<String, IdBitmap> idsByTag = new LinkedHashMap<>();
+  private long groups = 0L;
+  private long matches = 0L;
+
+  // Tag nodes resolved during the write, by transaction
+  private Transaction tagNodesTransaction = null;
+  private final Map<String, Node> tagNodes = new HashMap<>();
+
+  public static Label getTagLabelProperty() {
+    return Label.label(TAG_LABEL_PROPERTY);
+  }
+
+  public static String getTagLabelPropertyAsString() {
+    return TAG_LABEL_PROPERTY;
+  }
+
+  public static String getTagNameProperty() {
+    return TAG_NAME_PROPERTY;
+  }
+
+  public static RelationshipType getToTagRelationship() {
+    return RelationshipType.withName(TO_TAG_RELATIONSHIP);
+  }
+
+  /**
+   * Add the nodes matched by a group
+   *
+   * @param tag Tag of the group
+   * @param ids Ids of the nodes matched
+   */
+  public void add(String tag, IdBitmap ids) {
+    IdBitmap existing = idsByTag.get(tag);
+    if (existing == null) {
+      existing = new IdBitmap();
+      idsByTag.put(tag, existing);
+    }
+
+    IdBitmap target = existing;
+    ids.forEach(target::add);
+    matches += ids.size();
+    groups++;
+  }
+
+  /**
+   * Number of groups added to the batch
+   *
+   * @return The number of groups
+   */
+  public long getGroups() {
+    return groups;
+  }
+
+  /**
+   * Number of nodes matched, summed over the groups
+   *
+   * @return The number of matches
+   */
+  public long getMatches() {
+    return matches;
+  }
+
+  public Map<String, IdBitmap> getIdsByTag() {
+    return idsByTag;
+  }
+
+  /**
+   * Invert the batch : tags to apply on each node
+   *
+   * @return Map of node id and tags
+   */
+  public Map<Long, List<String>> getTagsByNode() {
+    Map<Long, List<String>> tagsByNode = new HashMap<>();
+    for (Map.Entry<String, IdBitmap> en : idsByTag.entrySet()) {
+      String tag = en.getKey();
+      en.getValue().forEach(id -> tagsByNode.computeIfAbsent(id, k -> new ArrayList<>(2)).add(tag));
+    }
+    return tagsByNode;
+  }
+
+  /**
+   * Write the tags of a node
+   *
+   * @param tx Transaction used to write
+   * @param node Node to tag
+   * @param tags Tags to add
+   * @param storage Representation of the tags
+   * @return The number of writes done on the node ( 0 or 1 for the property, one per relationship
+   *     created otherwise )
+   */
+  public long write(Transaction tx, Node node, List<String> tags, TagStorage storage) {
+    if (storage == TagStorage.PROPERTY) {
+      return Group.updateTags(node, List.of(), tags) ? 1L : 0L;
+    }
+
+    // Tags already linked to the node
+    Set<Long> linked = new HashSet<>();
+    for (Relationship rel : node.getRelationships(Direction.OUTGOING, getToTagRelationship())) {
+      linked.add(rel.getEndNodeId());
+    }
+
+    long created = 0L;
+    for (String tag : tags) {
+      Node tagNode = getTagNode(tx, tag);
+      if (linked.contains(tagNode.getId())) continue;
+      node.createRelationshipTo(tagNode, getToTagRelationship());
+      created++;
+    }
+    return created;
+  }
+
+  // Find or create the tag node, cached for the transaction
+  private Node getTagNode(Transaction tx, String tag) {
+    if (tx != tagNodesTransaction) {
+      tagNodes.clear();
+      tagNodesTransaction = tx;
+    }
+
+    Node tagNode = tagNodes.get(tag);
+    if (tagNode != null) return tagNode;
+
+    tagNode = tx.findNode(getTagLabelProperty(), TAG_NAME_PROPERTY, tag);
+    if (tagNode == null) {
+      tagNode = tx.createNode(getTagLabelProperty());
+      tagNode.setProperty(TAG_NAME_PROPERTY, tag);
+    }
+    tagNodes.put(tag, tagNode);
+    return tagNode;
+  }
+}
@@ -0,0 +1,160 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.database.Neo4jTypeManager;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.utils.IdBitmap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Last tagging of a group on an application : the tag applied, the fingerprint of the request
+ * executed and the ids of the nodes tagged, stored as a serialized bitmap. Used to apply only the
+ * differences when the group is executed again.
+ */
+public class TagState {
+  // Label
+  private static final String LABEL_PROPERTY = "ParisTagState";
+
+  // Relationships
+  private static final String FROM_GROUP_RELATIONSHIP = "HAS_TAG_STATE";
+
+  // Properties
+  private static final String APPLICATION_PROPERTY = "Application";
+  private static final String TAG_PROPERTY = "Tag";
+  private static final String FINGERPRINT_PROPERTY = "Fingerprint";
+  private static final String TAGGED_IDS_PROPERTY = "TaggedIds";
+  private static final String TAGGED_COUNT_PROPERTY = "TaggedCount";
+  private static final String LAST_UPDATE_PROPERTY = "LastUpdate";
+
+  private final Node node;
+
+  private TagState(Node node) {
+    this.node = node;
+  }
+
+  public static Label getLabelProperty() {
+    return Label.label(LABEL_PROPERTY);
+  }
+
+  public static String getLabelPropertyAsString() {
+    return LABEL_PROPERTY;
+  }
+
+  public static RelationshipType getFromGroupRelationship() {
+    return RelationshipType.withName(FROM_GROUP_RELATIONSHIP);
+  }
+
+  /**
+   * Find the state of a group on an application
+   *
+   * @param group Node of the group
+   * @param application Name of the application
+   * @return The state, null if the group was never executed incrementally on the application
+   */
+  public static TagState find(Node group, String application) {
+    for (Relationship rel : group.getRelationships(Direction.OUTGOING, getFromGroupRelationship())) {
+      Node n = rel.getEndNode();
+      if (application.equals(n.getProperty(APPLICATION_PROPERTY, null))) return new TagState(n);
+    }
+    return null;
+  }
+
+  /**
+   * Get all the states of a group
+   *
+   * @param group Node of the group
+   * @return The list of states, one per application
+   */
+  public static List<TagState> findAll(Node group) {
+    List<TagState> states = new ArrayList<>();
+    for (Relationship rel : group.getRelationships(Direction.OUTGOING, getFromGroupRelationship())) {
+      states.add(new TagState(rel.getEndNode()));
+    }
+    return states;
+  }
+
+  /**
+   * Create an empty state for a group on an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param group Node of the group
+   * @param application Name of the application
+   * @return The state created
+   * @throws Neo4jQueryException
+   */
+  public static TagState create(Neo4jAL neo4jAL, Node group, String application)
+      throws Neo4jQueryException {
+    Node n = neo4jAL.createNode(getLabelProperty());
+    n.setProperty(APPLICATION_PROPERTY, application);
+    n.setProperty(TAG_PROPERTY, "");
+    n.setProperty(FINGERPRINT_PROPERTY, "");
+    n.setProperty(TAGGED_COUNT_PROPERTY, 0L);
+    group.createRelationshipTo(n, getFromGroupRelationship());
+    return new TagState(n);
+  }
+
+  public String getApplication() {
+    return Neo4jTypeManager.getAsString(node, APPLICATION_PROPERTY, "");
+  }
+
+  public String getTag() {
+    return Neo4jTypeManager.getAsString(node, TAG_PROPERTY, "");
+  }
+
+  public String getFingerprint() {
+    return Neo4jTypeManager.getAsString(node, FINGERPRINT_PROPERTY, "");
+  }
+
+  /**
+   * Get the ids of the nodes tagged during the last execution
+   *
+   * @return The bitmap of the ids
+   */
+  public IdBitmap getTaggedIds() {
+    return IdBitmap.fromBytes((byte[]) node.getProperty(TAGGED_IDS_PROPERTY, null));
+  }
+
+  /**
+   * Record the result of an execution
+   *
+   * @param tag Tag applied
+   * @param fingerprint Fingerprint of the request executed
+   * @param taggedIds Ids of the nodes carrying the tag
+   */
+  public void update(String tag, String fingerprint, IdBitmap taggedIds) {
+    node.setProperty(TAG_PROPERTY, tag);
+    node.setProperty(FINGERPRINT_PROPERTY, fingerprint);
+    node.setProperty(TAGGED_IDS_PROPERTY, taggedIds.toBytes());
+    node.setProperty(TAGGED_COUNT_PROPERTY, taggedIds.size());
+    node.setProperty(LAST_UPDATE_PROPERTY, System.currentTimeMillis());
+  }
+
+  /**
+   * Attach the state to another group node
+   *
+   * @param group New node of the group
+   */
+  public void moveTo(Node group) {
+    for (Relationship rel : node.getRelationships(Direction.INCOMING, getFromGroupRelationship())) {
+      rel.delete();
+    }
+    group.createRelationshipTo(node, getFromGroupRelationship());
+  }
+
+  /** Delete the state and its relationships */
+  public void delete() {
+    for (Relationship rel : node.getRelationships()) rel.delete();
+    node.delete();
+  }
+
+  public Node getNode() {
+    return node;
+  }
+}
@@ -0,0 +1,29 @@
+package com.castsoftware.paris.models.Group;
+
+public enum TagStorage {
+	PROPERTY("Property"),
+	RELATIONSHIP("Relationship");
+
+	private final String name;
+
+	private TagStorage(String s) {
+		name = s;
+	}
+
+	public String toString() {
+		return this.name;
+	}
+
+	/**
+	 * Get the corresponding enum of a string ( case insensitive )
+	 * @param storage
+	 * @return
+	 */
+	public static TagStorage getFromString(String storage) {
+		for(TagStorage i : TagStorage.values()) {
+			if(i.name.equalsIgnoreCase(storage)) return i;
+		}
+
+		return null;
+	}
+}
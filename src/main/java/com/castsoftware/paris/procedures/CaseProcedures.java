@@ -74,6 +74,37 @@ public class CaseProcedures {
 		}
 	}
 
+	@Procedure(value = "paris.cases.search.categories", mode = Mode.WRITE)
+	@Description("paris.cases.search.categories(String prefix, Long limit) - Get the categories of the cases starting with a prefix ( case insensitive )")
+	public Stream<OutputMessage> searchCasesCategories(@Name(value = "Prefix") String prefix,
+													   @Name(value = "Limit", defaultValue = "20") Long limit) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			List<String> categories = ParisCaseController.searchCaseCategories(nal, prefix, limit);
+			return categories.stream().map(OutputMessage::new);
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.cases.get.all.by.category", mode = Mode.WRITE)
+	@Description("paris.cases.get.all.by.category(String category) - Get the list of cases holding a category")
+	public Stream<CustomCaseResult> getCasesByCategory(@Name(value = "Category") String category) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			List<Case> cases = ParisCaseController.getCasesByCategory(nal, category);
+			return cases.stream().map(CustomCaseResult::new);
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
 	@Procedure(value = "paris.cases.delete.by.id", mode = Mode.WRITE)
 	@Description("paris.cases.delete.by.id(Long id) - Delete a specific case using its id")
 	public Stream<BooleanResult> deleteById(@Name(value = "Id") Long id) throws ProcedureException {
@@ -163,13 +194,13 @@ public class CaseProcedures {
 	@Procedure(value = "paris.cases.detach.from.case", mode = Mode.WRITE)
 	@Description(
 			"paris.cases.detach.from.case(Long IdParent, Long IdChild) - Detach to use case")
-	public Stream<RelationshipResult> detachToUseCase(@Name(value = "IdParent") Long idParent, @Name(value = "IdChild") Long idChild)
+	public Stream<BooleanResult> detachToUseCase(@Name(value = "IdParent") Long idParent, @Name(value = "IdChild") Long idChild)
 			throws ProcedureException {
 
 		try {
 			Neo4jAL nal = new Neo4jAL(db, transaction, log);
-			Relationship rel = ParisCaseController.detachFromCase(nal, idParent, idChild);
-			return Stream.of(new RelationshipResult(rel));
+			Boolean detached = ParisCaseController.detachFromCase(nal, idParent, idChild);
+			return Stream.of(new BooleanResult(detached));
 		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
 			ProcedureException ex = new ProcedureException(e);
 			log.error("An error occurred while executing the procedure", e);
@@ -225,4 +256,52 @@ public class CaseProcedures {
 		}
 	}
 
+	@Procedure(value = "paris.cases.get.hierarchy", mode = Mode.WRITE)
+	@Description("paris.cases.get.hierarchy() - Get all the cases with their parents, their child cases and their groups in one call")
+	public Stream<CaseHierarchyResult> getHierarchy() throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+
+			List<CaseHierarchyResult> hierarchy = ParisCaseController.getHierarchy(nal);
+			return hierarchy.stream();
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.cases.get.tree", mode = Mode.WRITE)
+	@Description("paris.cases.get.tree() - Get the whole tree of cases and groups, flattened in pre-order as (id, parentId, depth, kind, payload). Cases only reachable through a cycle of INCLUDES are returned as roots, with cycle set in their payload")
+	public Stream<CaseTreeResult> getTree() throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+
+			List<CaseTreeResult> tree = ParisCaseController.getTree(nal);
+			return tree.stream();
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.cases.refresh.hierarchy", mode = Mode.WRITE)
+	@Description("paris.cases.refresh.hierarchy() - Reload the cached hierarchy of cases from the database")
+	public Stream<OutputMessage> refreshHierarchy() throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+
+			ParisCaseController.refreshHierarchy(nal);
+			return Stream.of(new OutputMessage("The hierarchy of cases and the category indexes will be reloaded at the next call."));
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
 }
@@ -0,0 +1,89 @@
+package com.castsoftware.paris.procedures;
+
+import com.castsoftware.paris.controllers.ColumnarCacheController;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ProcedureException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.results.BooleanResult;
+import com.castsoftware.paris.results.ColumnarCacheResult;
+import com.castsoftware.paris.results.LongResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public class ColumnarCacheProcedures {
+
+	@Context
+	public GraphDatabaseService db;
+
+	@Context public Transaction transaction;
+
+	@Context public Log log;
+
+	@Procedure(value = "paris.columnar.build", mode = Mode.WRITE)
+	@Description("paris.columnar.build(String Application, List<String> Properties) - Build the columnar cache of the objects of an application, used to evaluate the simple groups and forecasts without reading the nodes. " +
+			"Uses the properties of the configuration if none are given. Returns nothing if the cache exceeds the size bound")
+	public Stream<ColumnarCacheResult> build(@Name(value = "Application") String application,
+											 @Name(value = "Properties", defaultValue = "[]") List<String> properties) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return ColumnarCacheController.build(nal, application, properties).stream();
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.columnar.match", mode = Mode.WRITE)
+	@Description("paris.columnar.match(String Application, String Request, String ReturnValue) - Get the ids of the objects matching a simple request, evaluated on the columnar cache. " +
+			"Ex : CALL paris.columnar.match('App', 'MATCH (o:Object:App) WHERE o.Type CONTAINS \"Java\" RETURN o', 'o')")
+	public Stream<LongResult> match(@Name(value = "Application") String application,
+									@Name(value = "Request") String request,
+									@Name(value = "ReturnValue") String returnValue) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return ColumnarCacheController.match(nal, application, request, returnValue).stream().map(LongResult::new);
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.columnar.count", mode = Mode.WRITE)
+	@Description("paris.columnar.count(String Application, String Request, String ReturnValue) - Count the objects matching a simple request, evaluated on the columnar cache")
+	public Stream<LongResult> count(@Name(value = "Application") String application,
+									@Name(value = "Request") String request,
+									@Name(value = "ReturnValue") String returnValue) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return Stream.of(new LongResult(ColumnarCacheController.count(nal, application, request, returnValue)));
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.columnar.drop", mode = Mode.WRITE)
+	@Description("paris.columnar.drop(String Application) - Drop the columnar cache of an application")
+	public Stream<BooleanResult> drop(@Name(value = "Application") String application) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return Stream.of(new BooleanResult(ColumnarCacheController.drop(nal, application)));
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.exceptions.ProcedureException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
 import com.castsoftware.paris.results.BooleanResult;
+import com.castsoftware.paris.results.RequestValidationResult;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
@@ -37,5 +38,33 @@ public class CypherProcedures {
 		}
 	}
 
+	@Procedure(value = "paris.cypher.validate.request", mode = Mode.WRITE)
+	@Description("paris.cypher.validate.request(String request, String awaitedReturn) - Validate a request without executing it. Returns the error if the request is invalid, and the rows estimated by the planner")
+	public Stream<RequestValidationResult> validateRequest(@Name(value = "Request") String request, @Name(value = "AwaitedReturn") String awaitedReturn) throws ProcedureException {
 
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+
+			ParisCypherRequestsController.Verdict verdict = ParisCypherRequestsController.validateRequest(nal, request, awaitedReturn);
+			return Stream.of(new RequestValidationResult(verdict.valid, verdict.error, verdict.estimatedRows));
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.cypher.validate.cache.clear", mode = Mode.WRITE)
+	@Description("paris.cypher.validate.cache.clear() - Drop the cached validations, to validate the requests again after a change of the schema")
+	public Stream<BooleanResult> clearValidationCache() throws ProcedureException {
+
+		try {
+			ParisCypherRequestsController.clearValidationCache();
+			return Stream.of(new BooleanResult(true));
+		} catch (Exception e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
 }
@@ -1,12 +1,15 @@
 package com.castsoftware.paris.procedures;
 
 import com.castsoftware.paris.controllers.ParisGroupController;
+import com.castsoftware.paris.controllers.ParisTagController;
 import com.castsoftware.paris.database.Neo4jAL;
 import com.castsoftware.paris.exceptions.ProcedureException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4JTemplateLanguageException;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
 import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.models.Group.ExecutionBudget;
 import com.castsoftware.paris.models.Group.Group;
+import com.castsoftware.paris.models.Group.GroupProfiler;
 import com.castsoftware.paris.models.Group.GroupResult;
 import com.castsoftware.paris.results.*;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -16,6 +19,8 @@ import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class GroupProcedures {
@@ -74,6 +79,25 @@ public class GroupProcedures {
     }
   }
 
+  @Procedure(value = "paris.groups.search.categories", mode = Mode.WRITE)
+  @Description(
+      "paris.groups.search.categories(String prefix, Long limit) - Get the categories of the groups starting with a prefix ( case insensitive )")
+  public Stream<OutputMessage> searchGroupCategories(
+      @Name(value = "Prefix") String prefix,
+      @Name(value = "Limit", defaultValue = "20") Long limit)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<String> categories = ParisGroupController.searchGroupCategories(nal, prefix, limit);
+      return categories.stream().map(OutputMessage::new);
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
   @Procedure(value = "paris.groups.delete.by.id", mode = Mode.WRITE)
   @Description("paris.groups.delete.by.id() - Delete a specific groups using its id")
   public Stream<BooleanResult> deleteById(@Name(value = "Id") Long id) throws ProcedureException {
@@ -120,7 +144,29 @@ public class GroupProcedures {
               name,
               selected,
               types);
-      return Stream.of(new CustomGroupResult(group));
+
+      CustomGroupResult result = new CustomGroupResult(group);
+      result.lint = lintMessages(nal, group);
+      return Stream.of(result);
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.merge.bulk", mode = Mode.WRITE)
+  @Description(
+      "paris.groups.merge.bulk(List<Map> groups, Boolean toSort) - Merge a list of groups in one pass. Groups with the same normalized request are only created once. Returns the groups created.")
+  public Stream<CustomGroupResult> mergeBulk(
+      @Name(value = "Groups") List<Map<String, Object>> groups,
+      @Name(value = "ToSort", defaultValue = "true") Boolean toSort)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<Group> created = ParisGroupController.mergeBulk(nal, groups, toSort);
+      return created.stream().map(CustomGroupResult::new);
     } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
       ProcedureException ex = new ProcedureException(e);
       log.error("An error occurred while executing the procedure", e);
@@ -203,7 +249,10 @@ public class GroupProcedures {
               name,
               selected,
               types);
-      return Stream.of(new CustomGroupResult(group));
+
+      CustomGroupResult result = new CustomGroupResult(group);
+      result.lint = lintMessages(nal, group);
+      return Stream.of(result);
     } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
       ProcedureException ex = new ProcedureException(e);
       log.error("An error occurred while executing the procedure", e);
@@ -231,14 +280,14 @@ public class GroupProcedures {
   @Procedure(value = "paris.groups.detach.from.case", mode = Mode.WRITE)
   @Description(
       "paris.groups.detach.from.case(Long IdUseCase, Long IdGroup) - Detach a group from a use case")
-  public Stream<RelationshipResult> detachToUseCase(
+  public Stream<BooleanResult> detachToUseCase(
       @Name(value = "IdUseCase") Long idUseCase, @Name(value = "IdGroup") Long idGroup)
       throws ProcedureException {
 
     try {
       Neo4jAL nal = new Neo4jAL(db, transaction, log);
-      Relationship rel = ParisGroupController.detachFromCase(nal, idGroup, idUseCase);
-      return Stream.of(new RelationshipResult(rel));
+      Boolean detached = ParisGroupController.detachFromCase(nal, idGroup, idUseCase);
+      return Stream.of(new BooleanResult(detached));
     } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
       ProcedureException ex = new ProcedureException(e);
       log.error("An error occurred while executing the procedure", e);
@@ -279,4 +328,301 @@ public class GroupProcedures {
       throw ex;
     }
   }
+
+  @Procedure(value = "paris.groups.execute.list.bounded", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.list.bounded(String application, List<Long> idList, String executionType, Long timeoutMs, Long maxRows) - Execute a list of group on a specific application, each group bounded by a timeout and a maximum number of rows. Returns the status of each group ( OK, TIMED_OUT, TRUNCATED, ... )")
+  public Stream<GroupExecutionResult> executeListBounded(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID,  @Name(value = "ExecutionType")  String executionType,
+                                                         @Name(value = "TimeoutMs", defaultValue = "-1") Long timeoutMs, @Name(value = "MaxRows", defaultValue = "-1") Long maxRows)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      ExecutionBudget budget = ExecutionBudget.getDefault(timeoutMs, maxRows);
+      List<GroupExecutionResult> results = ParisGroupController.executeListBounded(nal, listID, application, executionType, budget);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.list.in.database", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.list.in.database(String application, List<Long> idList, Long batchSize, String storage) - Execute a list of groups as tags set by the database, without returning the rows. With a batch size, each transaction tags at most a batch of nodes. Storage is 'Property' ( Tags array ) or 'Relationship' ( links to ParisTag nodes )")
+  public Stream<GroupExecutionResult> executeListInDatabase(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID,
+                                                            @Name(value = "BatchSize", defaultValue = "0") Long batchSize,
+                                                            @Name(value = "Storage", defaultValue = "") String storage)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<GroupExecutionResult> results = ParisGroupController.executeListInDatabase(nal, listID, application, batchSize, storage);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.benchmark.tag.in.database", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.benchmark.tag.in.database(String application, List<Long> idList) - Compare the tagging row by row in the procedure with the tagging done by the requests in the database. The tags are rolled back")
+  public Stream<TagWriteResult> benchmarkTagInDatabase(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<TagWriteResult> results = ParisTagController.benchmarkInDatabase(nal, listID, application);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.validate.all", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.validate.all(String application) - Validate the requests of all the groups with EXPLAIN, in parallel and without executing them. Returns the status, the error and the rows estimated of each group")
+  public Stream<GroupValidationResult> validateAll(@Name(value = "Application", defaultValue = "") String application)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return ParisGroupController.validateAllGroups(nal, application);
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.stats", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.stats(Long limit) - Get the slowest groups of the last executions, with the percentiles of their execution time and the time spent forging, planning, executing and writing the tags")
+  public Stream<GroupStatsResult> getStats(@Name(value = "Limit", defaultValue = "20") Long limit)
+          throws ProcedureException {
+
+    try {
+      return GroupProfiler.getSlowestGroups(limit).stream();
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.stats.profile", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.stats.profile(Boolean enabled) - Run the next group requests with PROFILE to collect their db hits. Slows the requests down.")
+  public Stream<BooleanResult> setStatsProfiling(@Name(value = "Enabled") Boolean enabled)
+          throws ProcedureException {
+
+    try {
+      GroupProfiler.setProfilingQueries(enabled);
+      return Stream.of(new BooleanResult(GroupProfiler.isProfilingQueries()));
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.stats.clear", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.stats.clear() - Drop the profiles of the last group executions")
+  public Stream<BooleanResult> clearStats()
+          throws ProcedureException {
+
+    try {
+      GroupProfiler.clear();
+      return Stream.of(new BooleanResult(true));
+    } catch (Exception e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.incremental", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.incremental(String application, List<Long> idList) - Execute a list of groups as tags on an application, applying only the tags added and removed since their last incremental execution")
+  public Stream<IncrementalTagResult> executeIncremental(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<IncrementalTagResult> results = ParisGroupController.executeIncremental(nal, listID, application);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.untag", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.untag(Long id, String application) - Remove the tag of a group from the nodes recorded during its incremental executions. Leave the application empty to clean all the applications")
+  public Stream<IncrementalTagResult> untag(@Name(value = "Id") Long id, @Name(value = "Application", defaultValue = "") String application)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<IncrementalTagResult> results = ParisTagController.untagGroup(nal, id, application);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.list.batched", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.list.batched(String application, List<Long> idList, String storage) - Execute a list of groups as tags, writing each node once with all its tags. Storage is 'Property' ( Tags array ) or 'Relationship' ( links to ParisTag nodes )")
+  public Stream<TagWriteResult> executeListBatched(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID, @Name(value = "Storage", defaultValue = "") String storage)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      TagWriteResult result = ParisGroupController.executeListTagsBatched(nal, listID, application, storage);
+      return Stream.of(result);
+    } catch (Exception | Neo4jConnectionError e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.benchmark.tag.storage", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.benchmark.tag.storage(String application, List<Long> idList) - Compare the per-group append, the batched Tags property and the tag relationships on a list of groups. The writes are rolled back")
+  public Stream<TagWriteResult> benchmarkTagStorage(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<TagWriteResult> results = ParisTagController.benchmarkStorage(nal, listID, application);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.set.dependencies", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.set.dependencies(Long id, List<String> reads, List<String> writes) - Declare the tags or properties read and written by a group. A group is scheduled after the groups writing what it reads")
+  public Stream<CustomGroupResult> setDependencies(@Name(value = "Id") Long id, @Name(value = "Reads") List<String> reads, @Name(value = "Writes", defaultValue = "[]") List<String> writes)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      Group group = ParisGroupController.setDependencies(nal, id, reads, writes);
+      if(group == null) return Stream.empty();
+      return Stream.of(new CustomGroupResult(group));
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.scheduled", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.scheduled(String application, List<Long> idList) - Execute a list of groups as tags in the order of their dependencies, running the independent groups in parallel waves")
+  public Stream<ScheduleResult> executeScheduled(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      ScheduleResult result = ParisGroupController.executeScheduled(nal, listID, application);
+      return Stream.of(result);
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.statistics", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.statistics(String application, List<Long> idList) - Compute in parallel the number of rows and distinct elements returned by a list of groups, and save them on the group")
+  public Stream<StatisticsResult> executeStatistics(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      List<StatisticsResult> results = ParisGroupController.executeStatistics(nal, listID, application);
+      return results.stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.execute.rules", mode = Mode.WRITE)
+  @Description(
+          "paris.groups.execute.rules(String application, List<Long> idList) - Evaluate in parallel a list of architecture rules and stream their violations ( status VIOLATION ), followed by one row per rule with the status of its evaluation, its error and its number of violations")
+  public Stream<ViolationResult> executeRules(@Name(value = "Application") String application, @Name(value = "ListID") List<Long> listID)
+          throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return ParisGroupController.evaluateRules(nal, listID, application);
+    } catch (Exception | Neo4jConnectionError e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  @Procedure(value = "paris.groups.lint", mode = Mode.WRITE)
+  @Description(
+      "paris.groups.lint(Long Id, String Application) - Lint the plan of a group request and report the slow patterns ( cartesian products, label-less scans, unbounded variable-length paths, substring filters ). The application is optional.")
+  public Stream<LintResult> lintGroup(
+      @Name(value = "Id") Long id,
+      @Name(value = "Application", defaultValue = "") String application)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return ParisGroupController.lintGroup(nal, id, application).stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
+
+  // Findings of the linter returned with a group created or updated
+  private static List<String> lintMessages(Neo4jAL nal, Group group) {
+    return ParisGroupController.lintGroup(nal, group, "").stream()
+        .map(Object::toString)
+        .collect(Collectors.toList());
+  }
+
+  @Procedure(value = "paris.groups.execute.list.fused", mode = Mode.WRITE)
+  @Description(
+      "paris.groups.execute.list.fused(String Application, List<Long> ListID) - Execute a list of groups as tags. The simple groups ( a label and predicates on the node properties ) are evaluated together in a single scan of the nodes, the others by the database.")
+  public Stream<GroupExecutionResult> executeListFused(
+      @Name(value = "Application") String application,
+      @Name(value = "ListID") List<Long> listID)
+      throws ProcedureException {
+
+    try {
+      Neo4jAL nal = new Neo4jAL(db, transaction, log);
+      return ParisGroupController.executeListFused(nal, listID, application).stream();
+    } catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+      ProcedureException ex = new ProcedureException(e);
+      log.error("An error occurred while executing the procedure", e);
+      throw ex;
+    }
+  }
 }
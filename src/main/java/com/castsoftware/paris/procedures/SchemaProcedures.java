@@ -0,0 +1,59 @@
+package com.castsoftware.paris.procedures;
+
+import com.castsoftware.paris.controllers.SchemaController;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ProcedureException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jBadRequestException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.results.IndexRecommendationResult;
+import com.castsoftware.paris.results.SchemaResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public class SchemaProcedures {
+
+	@Context
+	public GraphDatabaseService db;
+
+	@Context public Transaction transaction;
+
+	@Context public Log log;
+
+	@Procedure(value = "paris.schema.bootstrap", mode = Mode.SCHEMA)
+	@Description("paris.schema.bootstrap() - Create and verify the indexes and constraints of the Paris labels. Report the plan of the lookups before and after")
+	public Stream<SchemaResult> bootstrap() throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			List<SchemaResult> results = SchemaController.bootstrapSchema(nal);
+			return results.stream();
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.schema.recommend.indexes", mode = Mode.SCHEMA)
+	@Description("paris.schema.recommend.indexes(String Application, Long Limit, Boolean Create) - Recommend the indexes removing the most scans from the group requests forged for an existing application, weighted by the executions of the groups. Optionally create them, and compare the cost of the plans before and after")
+	public Stream<IndexRecommendationResult> recommendIndexes(@Name(value = "Application") String application,
+															  @Name(value = "Limit", defaultValue = "10") Long limit,
+															  @Name(value = "Create", defaultValue = "false") Boolean create) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			List<IndexRecommendationResult> results = SchemaController.recommendIndexes(nal, application, limit, create);
+			return results.stream();
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException | Neo4jBadRequestException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.castsoftware.paris.procedures;
+
+import com.castsoftware.paris.controllers.TrigramIndexController;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.exceptions.ProcedureException;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jConnectionError;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import com.castsoftware.paris.results.LongResult;
+import com.castsoftware.paris.results.TrigramIndexResult;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public class TrigramIndexProcedures {
+
+	@Context
+	public GraphDatabaseService db;
+
+	@Context public Transaction transaction;
+
+	@Context public Log log;
+
+	@Procedure(value = "paris.index.trigram.build", mode = Mode.WRITE)
+	@Description("paris.index.trigram.build(String Application, List<String> Properties) - Build the trigram indexes of string properties of the objects of an application, used to find the substrings without scanning the label")
+	public Stream<TrigramIndexResult> build(@Name(value = "Application") String application,
+											@Name(value = "Properties", defaultValue = "[\"Name\", \"FullName\"]") List<String> properties) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return TrigramIndexController.build(nal, application, properties).stream();
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.index.trigram.search", mode = Mode.WRITE)
+	@Description("paris.index.trigram.search(String Application, String Property, String Substring, Boolean Verify) - Get the ids of the objects whose property contains the substring. " +
+			"Replaces a scan in a request : CALL paris.index.trigram.search('App', 'Name', 'Controller') YIELD value MATCH (o) WHERE ID(o)=value ...")
+	public Stream<LongResult> search(@Name(value = "Application") String application,
+									 @Name(value = "Property") String property,
+									 @Name(value = "Substring") String substring,
+									 @Name(value = "Verify", defaultValue = "true") Boolean verify) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return TrigramIndexController.search(nal, application, property, substring, verify).stream().map(LongResult::new);
+		} catch (Exception | Neo4jConnectionError | Neo4jQueryException e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+
+	@Procedure(value = "paris.index.trigram.drop", mode = Mode.WRITE)
+	@Description("paris.index.trigram.drop(String Application) - Drop the trigram indexes of an application")
+	public Stream<LongResult> drop(@Name(value = "Application") String application) throws ProcedureException {
+
+		try {
+			Neo4jAL nal = new Neo4jAL(db, transaction, log);
+			return Stream.of(new LongResult(TrigramIndexController.drop(nal, application)));
+		} catch (Exception | Neo4jConnectionError e) {
+			ProcedureException ex = new ProcedureException(e);
+			log.error("An error occurred while executing the procedure", e);
+			throw ex;
+		}
+	}
+}
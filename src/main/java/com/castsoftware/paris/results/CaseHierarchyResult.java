@@ -0,0 +1,32 @@
+package com.castsoftware.paris.results;
+
+import com.castsoftware.paris.models.Case.Case;
+
+import java.util.List;
+
+public class CaseHierarchyResult {
+
+	public Long id;
+	public String title;
+	public String description;
+	public List<String> categories;
+	public Boolean active;
+	public Boolean selected;
+	public List<Long> parents;
+	public List<Long> cases;
+	public List<Long> groups;
+
+	public CaseHierarchyResult(Case dc, List<Long> parents, List<Long> cases, List<Long> groups) {
+		assert dc.getNode() != null :  "Cannot create a result from a not instantiated Case";
+
+		this.id = dc.getNode().getId();
+		this.title = dc.getTitle();
+		this.description = dc.getDescription();
+		this.categories = dc.getCategories();
+		this.active = dc.getActive();
+		this.selected = dc.getSelected();
+		this.parents = parents;
+		this.cases = cases;
+		this.groups = groups;
+	}
+}
@@ -0,0 +1,20 @@
+package com.castsoftware.paris.results;
+
+import java.util.Map;
+
+public class CaseTreeResult {
+
+	public Long id;
+	public Long parentId;
+	public Long depth;
+	public String kind;
+	public Map<String, Object> payload;
+
+	public CaseTreeResult(Long id, Long parentId, Long depth, String kind, Map<String, Object> payload) {
+		this.id = id;
+		this.parentId = parentId;
+		this.depth = depth;
+		this.kind = kind;
+		this.payload = payload;
+	}
+}
@@ -0,0 +1,22 @@
+package com.castsoftware.paris.results;
+
+import com.castsoftware.paris.utils.ColumnarCache;
+
+import java.util.List;
+
+public class ColumnarCacheResult {
+
+	public String application;
+	public Long nodes;
+	public List<String> properties;
+	public Long sizeInBytes;
+	public Long buildTime;
+
+	public ColumnarCacheResult(ColumnarCache cache) {
+		this.application = cache.getApplication();
+		this.nodes = (long) cache.size();
+		this.properties = cache.getProperties();
+		this.sizeInBytes = cache.sizeInBytes();
+		this.buildTime = cache.getBuildTime();
+	}
+}
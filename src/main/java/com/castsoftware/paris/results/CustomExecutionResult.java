@@ -8,11 +8,13 @@ public class CustomExecutionResult {
 	public Long objectConcerned;
 	public String name;
 	public String description;
+	public String status;
 
 	public CustomExecutionResult(GroupResult dr) {
 		this.idGroup = dr.getIdGroup();
 		this.objectConcerned = dr.getObjectConcerned();
 		this.name = dr.getName();
 		this.description = dr.getDescription();
+		this.status = dr.getStatus();
 	}
 }
@@ -19,6 +19,9 @@ public class CustomGroupResult {
 	public String name;
 	public Boolean selected;
 	public List<String> types;
+	public List<String> reads;
+	public List<String> writes;
+	public List<String> lint = List.of();
 
 	public CustomGroupResult(Long id, Boolean active, List<String> categories, Long creationDate, String cypherRequest, String cypherRequestReturn, String description, String groupName, String name, Boolean selected, List<String> types) {
 		this.id = id;
@@ -32,6 +35,8 @@ public class CustomGroupResult {
 		this.name = name;
 		this.selected = selected;
 		this.types = types;
+		this.reads = List.of();
+		this.writes = List.of();
 	}
 
 	public CustomGroupResult(Group dn) {
@@ -50,5 +55,7 @@ public class CustomGroupResult {
 		this.name = dn.getName();
 		this.selected = dn.getSelected();
 		this.types = dn.getTypes().stream().map(GroupType::toString).collect(Collectors.toList());
+		this.reads = dn.getReads();
+		this.writes = dn.getWrites();
 	}
 }
@@ -0,0 +1,28 @@
+package com.castsoftware.paris.results;
+
+import java.util.List;
+
+public class GroupExecutionResult {
+
+	public Long idGroup;
+	public String name;
+	public String application;
+	public String status;
+	public Long rows;
+	public Long result;
+	public Long elapsed;
+	public Long sharedWith = -1L;
+	public String engine = "CYPHER";
+	// Ids of a bounded sample of the elements found, for the architecture rules
+	public List<Long> sample = List.of();
+
+	public GroupExecutionResult(Long idGroup, String name, String application, String status, Long rows, Long result, Long elapsed) {
+		this.idGroup = idGroup;
+		this.name = name;
+		this.application = application;
+		this.status = status;
+		this.rows = rows;
+		this.result = result;
+		this.elapsed = elapsed;
+	}
+}
@@ -0,0 +1,46 @@
+package com.castsoftware.paris.results;
+
+public class GroupStatsResult {
+
+	public Long idGroup;
+	public String name;
+	public String application;
+	public Long executions;
+	public Long totalTime;
+	public Long maxTime;
+	public Long p50;
+	public Long p90;
+	public Long p99;
+	public Long avgForgeTime;
+	public Long avgPlanningTime;
+	public Long avgExecutionTime;
+	public Long avgWriteTime;
+	public Long avgRows;
+	public Long maxRows;
+	public Long avgDbHits;
+	public Long maxDbHits;
+	public Long incomplete;
+
+	public GroupStatsResult(Long idGroup, String name, String application, Long executions, Long totalTime, Long maxTime,
+							Long p50, Long p90, Long p99, Long avgForgeTime, Long avgPlanningTime, Long avgExecutionTime,
+							Long avgWriteTime, Long avgRows, Long maxRows, Long avgDbHits, Long maxDbHits, Long incomplete) {
+		this.idGroup = idGroup;
+		this.name = name;
+		this.application = application;
+		this.executions = executions;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.avgForgeTime = avgForgeTime;
+		this.avgPlanningTime = avgPlanningTime;
+		this.avgExecutionTime = avgExecutionTime;
+		this.avgWriteTime = avgWriteTime;
+		this.avgRows = avgRows;
+		this.maxRows = maxRows;
+		this.avgDbHits = avgDbHits;
+		this.maxDbHits = maxDbHits;
+		this.incomplete = incomplete;
+	}
+}
@@ -0,0 +1,18 @@
+package com.castsoftware.paris.results;
+
+public class GroupValidationResult {
+
+	public Long idGroup;
+	public String name;
+	public String status;
+	public String error;
+	public Long estimatedRows;
+
+	public GroupValidationResult(Long idGroup, String name, String status, String error, Long estimatedRows) {
+		this.idGroup = idGroup;
+		this.name = name;
+		this.status = status;
+		this.error = error;
+		this.estimatedRows = estimatedRows;
+	}
+}
@@ -0,0 +1,18 @@
+package com.castsoftware.paris.results;
+
+import java.util.List;
+
+public class ICUResult {
+
+	public String page;
+	public String method;
+	public Long endpointCount;
+	public List<String> endpoints;
+
+	public ICUResult(String page, String method, List<String> endpoints) {
+		this.page = page;
+		this.method = method;
+		this.endpointCount = (long) endpoints.size();
+		this.endpoints = endpoints;
+	}
+}
@@ -0,0 +1,24 @@
+package com.castsoftware.paris.results;
+
+import com.castsoftware.paris.models.Group.Group;
+
+public class IncrementalTagResult {
+
+	public Long idGroup;
+	public String name;
+	public String tag;
+	public String status;
+	public Long added;
+	public Long removed;
+	public Long unchanged;
+
+	public IncrementalTagResult(Group group, String status, Long added, Long removed, Long unchanged) {
+		this.idGroup = group.getNode().getId();
+		this.name = group.getName();
+		this.tag = group.getTagName();
+		this.status = status;
+		this.added = added;
+		this.removed = removed;
+		this.unchanged = unchanged;
+	}
+}
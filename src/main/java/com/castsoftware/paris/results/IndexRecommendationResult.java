@@ -0,0 +1,33 @@
+package com.castsoftware.paris.results;
+
+import java.util.List;
+
+public class IndexRecommendationResult {
+
+	public String label;
+	public String property;
+	public String status;
+	public List<Long> idGroups;
+	public Long executions;
+	public List<String> operators;
+	public Long estimatedDbHitsBefore;
+	public Long estimatedDbHitsAfter;
+	public Double planCostBefore;
+	public Double planCostAfter;
+	public String message;
+
+	public IndexRecommendationResult(String label, String property, String status, List<Long> idGroups, Long executions, List<String> operators,
+									 Long estimatedDbHitsBefore, Long estimatedDbHitsAfter, Double planCostBefore, Double planCostAfter, String message) {
+		this.label = label;
+		this.property = property;
+		this.status = status;
+		this.idGroups = idGroups;
+		this.executions = executions;
+		this.operators = operators;
+		this.estimatedDbHitsBefore = estimatedDbHitsBefore;
+		this.estimatedDbHitsAfter = estimatedDbHitsAfter;
+		this.planCostBefore = planCostBefore;
+		this.planCostAfter = planCostAfter;
+		this.message = message;
+	}
+}
@@ -0,0 +1,24 @@
+package com.castsoftware.paris.results;
+
+import com.castsoftware.paris.metaLanguage.RequestLinter;
+
+public class LintResult {
+
+	public Long idGroup;
+	public String name;
+	public String operator;
+	public String severity;
+	public String message;
+	public Long estimatedRows;
+	public Double estimatedCost;
+
+	public LintResult(Long idGroup, String name, RequestLinter.Finding finding) {
+		this.idGroup = idGroup;
+		this.name = name;
+		this.operator = finding.operator;
+		this.severity = finding.severity;
+		this.message = finding.message;
+		this.estimatedRows = finding.estimatedRows;
+		this.estimatedCost = finding.estimatedCost;
+	}
+}
@@ -0,0 +1,14 @@
+package com.castsoftware.paris.results;
+
+public class RequestValidationResult {
+
+	public Boolean valid;
+	public String error;
+	public Long estimatedRows;
+
+	public RequestValidationResult(Boolean valid, String error, Long estimatedRows) {
+		this.valid = valid;
+		this.error = error;
+		this.estimatedRows = estimatedRows;
+	}
+}
@@ -0,0 +1,29 @@
+package com.castsoftware.paris.results;
+
+import java.util.List;
+
+public class ScheduleResult {
+
+	public Long groups;
+	public Long waves;
+	public Long nodesTagged;
+	public Long elapsed;
+	public Long totalGroupTime;
+	public Long criticalPathTime;
+	public List<String> criticalPath;
+	public List<String> failed;
+	public List<String> cycles;
+
+	public ScheduleResult(Long groups, Long waves, Long nodesTagged, Long elapsed, Long totalGroupTime,
+						  Long criticalPathTime, List<String> criticalPath, List<String> failed, List<String> cycles) {
+		this.groups = groups;
+		this.waves = waves;
+		this.nodesTagged = nodesTagged;
+		this.elapsed = elapsed;
+		this.totalGroupTime = totalGroupTime;
+		this.criticalPathTime = criticalPathTime;
+		this.criticalPath = criticalPath;
+		this.failed = failed;
+		this.cycles = cycles;
+	}
+}
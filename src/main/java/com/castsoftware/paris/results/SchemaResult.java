@@ -0,0 +1,18 @@
+package com.castsoftware.paris.results;
+
+public class SchemaResult {
+
+	public String kind;
+	public String target;
+	public String before;
+	public String after;
+	public String message;
+
+	public SchemaResult(String kind, String target, String before, String after, String message) {
+		this.kind = kind;
+		this.target = target;
+		this.before = before;
+		this.after = after;
+		this.message = message;
+	}
+}
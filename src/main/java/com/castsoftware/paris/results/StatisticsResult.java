@@ -0,0 +1,22 @@
+package com.castsoftware.paris.results;
+
+public class StatisticsResult {
+
+	public Long idGroup;
+	public String name;
+	public String application;
+	public String status;
+	public Long rows;
+	public Long matches;
+	public Long elapsed;
+
+	public StatisticsResult(Long idGroup, String name, String application, String status, Long rows, Long matches, Long elapsed) {
+		this.idGroup = idGroup;
+		this.name = name;
+		this.application = application;
+		this.status = status;
+		this.rows = rows;
+		this.matches = matches;
+		this.elapsed = elapsed;
+	}
+}
@@ -0,0 +1,20 @@
+package com.castsoftware.paris.results;
+
+public class TagWriteResult {
+
+	public String mode;
+	public Long groups;
+	public Long matches;
+	public Long nodes;
+	public Long writes;
+	public Long elapsed;
+
+	public TagWriteResult(String mode, Long groups, Long matches, Long nodes, Long writes, Long elapsed) {
+		this.mode = mode;
+		this.groups = groups;
+		this.matches = matches;
+		this.nodes = nodes;
+		this.writes = writes;
+		this.elapsed = elapsed;
+	}
+}
@@ -0,0 +1,22 @@
+package com.castsoftware.paris.results;
+
+import com.castsoftware.paris.utils.TrigramIndex;
+
+public class TrigramIndexResult {
+
+	public String application;
+	public String property;
+	public Long nodes;
+	public Long trigrams;
+	public Long sizeInBytes;
+	public Long buildTime;
+
+	public TrigramIndexResult(TrigramIndex index) {
+		this.application = index.getApplication();
+		this.property = index.getProperty();
+		this.nodes = (long) index.getNodes();
+		this.trigrams = (long) index.getTrigrams();
+		this.sizeInBytes = index.sizeInBytes();
+		this.buildTime = index.getBuildTime();
+	}
+}
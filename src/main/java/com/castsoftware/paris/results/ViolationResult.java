@@ -0,0 +1,47 @@
+package com.castsoftware.paris.results;
+
+public class ViolationResult {
+
+	// Status of the rows reporting a violation, the summary of each rule carries the status of its execution
+	public static final String VIOLATION = "VIOLATION";
+
+	public Long idGroup;
+	public String rule;
+	public String application;
+	public String status;
+	public String error;
+	public Long violations;
+	public Long id;
+	public String name;
+	public String type;
+	public String fullName;
+
+	public ViolationResult(Long idGroup, String rule, String application, Long id, String name, String type, String fullName) {
+		this.idGroup = idGroup;
+		this.rule = rule;
+		this.application = application;
+		this.status = VIOLATION;
+		this.error = "";
+		this.violations = 1L;
+		this.id = id;
+		this.name = name;
+		this.type = type;
+		this.fullName = fullName;
+	}
+
+	/**
+	 * Summary of the evaluation of a rule
+	 * @param idGroup Id of the rule
+	 * @param rule Name of the rule
+	 * @param application Name of the application
+	 * @param status Status of the evaluation ( OK, TIMED_OUT, FAILED, NOT_FOUND or CANCELLED )
+	 * @param error Message of the error, empty if none
+	 * @param violations Number of violations streamed
+	 */
+	public ViolationResult(Long idGroup, String rule, String application, String status, String error, Long violations) {
+		this(idGroup, rule, application, -1L, "", "", "");
+		this.status = status;
+		this.error = error;
+		this.violations = violations;
+	}
+}
@@ -0,0 +1,179 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.database.Neo4jTypeManager;
+import com.castsoftware.paris.exceptions.neo4j.Neo4jQueryException;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Inverted index from the categories to the ids of the nodes holding them. One index is kept per
+ * database and per label, loaded from a dedicated read transaction so it only holds committed
+ * data. It is bound to the version of the label and of the categories property, and loaded again
+ * once a committed transaction changed them, whoever made it.
+ */
+public class CategoryIndex {
+
+  private static final VersionedCache<CategoryIndex> INSTANCES = new VersionedCache<>();
+
+  // Category -> ids, sorted by category
+  private final TreeMap<String, Set<Long>> idsByCategory = new TreeMap<>();
+  // Lower-cased category -> categories, used by the prefix search
+  private final TreeMap<String, Set<String>> categoriesByKey = new TreeMap<>();
+  // Id -> categories, used while loading
+  private final Map<Long, List<String>> categoriesById = new HashMap<>();
+
+  private CategoryIndex() {}
+
+  /**
+   * Get the index of a label. The index is loaded at the first call, and again once a committed
+   * transaction changed the nodes of the label or their categories.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param label Label of the nodes indexed
+   * @param property Property holding the categories
+   * @return The index
+   * @throws Neo4jQueryException If the index couldn't be loaded
+   */
+  public static CategoryIndex getInstance(Neo4jAL neo4jAL, Label label, String property)
+      throws Neo4jQueryException {
+    String key = neo4jAL.getDb().databaseName() + "::" + label.name();
+    long version =
+        GraphVersion.get(
+            neo4jAL, List.of(GraphVersion.label(label.name()), GraphVersion.property(property)));
+    try {
+      return INSTANCES.get(key, version, () -> load(neo4jAL, label, property));
+    } catch (RuntimeException e) {
+      throw new Neo4jQueryException(
+          String.format("Failed to load the category index of '%s'.", label.name()),
+          e,
+          "CATIxGETI1");
+    }
+  }
+
+  /**
+   * Drop the indexes of the database. They will be reloaded at the next call.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   */
+  public static void invalidate(Neo4jAL neo4jAL) {
+    String prefix = neo4jAL.getDb().databaseName() + "::";
+    INSTANCES.invalidateIf(k -> k.startsWith(prefix));
+  }
+
+  private static CategoryIndex load(Neo4jAL neo4jAL, Label label, String property) {
+    CategoryIndex index = new CategoryIndex();
+    try (Transaction tx = neo4jAL.getDb().beginTx();
+        ResourceIterator<Node> it = tx.findNodes(label)) {
+      while (it.hasNext()) {
+        Node n = it.next();
+        index.update(n.getId(), Neo4jTypeManager.getAsStringList(n, property));
+      }
+    }
+
+    neo4jAL.logInfo(
+        String.format(
+            "Category index of '%s' loaded with %d categories.",
+            label.name(), index.idsByCategory.size()));
+    return index;
+  }
+
+  /**
+   * Set the categories of a node, replacing the previous ones
+   *
+   * @param id Id of the node
+   * @param categories New categories
+   */
+  private void update(Long id, List<String> categories) {
+    remove(id);
+    if (categories == null || categories.isEmpty()) return;
+
+    List<String> distinct = new ArrayList<>(new LinkedHashSet<>(categories));
+    categoriesById.put(id, distinct);
+    for (String category : distinct) {
+      if (category == null) continue;
+      idsByCategory.computeIfAbsent(category, k -> new LinkedHashSet<>()).add(id);
+      categoriesByKey
+          .computeIfAbsent(category.toLowerCase(Locale.ROOT), k -> new TreeSet<>())
+          .add(category);
+    }
+  }
+
+  /**
+   * Remove a node from the index
+   *
+   * @param id Id of the node
+   */
+  private void remove(Long id) {
+    List<String> previous = categoriesById.remove(id);
+    if (previous == null) return;
+
+    for (String category : previous) {
+      if (category == null) continue;
+      Set<Long> ids = idsByCategory.get(category);
+      if (ids == null) continue;
+      ids.remove(id);
+      if (!ids.isEmpty()) continue;
+
+      // Last node of the category
+      idsByCategory.remove(category);
+      String key = category.toLowerCase(Locale.ROOT);
+      Set<String> sameKey = categoriesByKey.get(key);
+      if (sameKey != null) {
+        sameKey.remove(category);
+        if (sameKey.isEmpty()) categoriesByKey.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Get the ids of the nodes holding a category
+   *
+   * @param category Category
+   * @return List of ids, empty if the category doesn't exist
+   */
+  public List<Long> getIds(String category) {
+    return new ArrayList<>(idsByCategory.getOrDefault(category, Collections.emptySet()));
+  }
+
+  /**
+   * Get all the categories, sorted
+   *
+   * @return List of the categories
+   */
+  public List<String> getCategories() {
+    return new ArrayList<>(idsByCategory.keySet());
+  }
+
+  /**
+   * Get the categories starting with a prefix, case insensitive. Used for the type-ahead.
+   *
+   * @param prefix Beginning of the category
+   * @param limit Maximum number of categories returned, negative for no limit
+   * @return List of the matching categories, sorted
+   */
+  public List<String> getCategories(String prefix, long limit) {
+    String key = prefix == null ? "" : prefix.toLowerCase(Locale.ROOT);
+    List<String> matches = new ArrayList<>();
+    for (Set<String> categories : categoriesByKey.subMap(key, key + Character.MAX_VALUE).values()) {
+      for (String category : categories) {
+        if (limit >= 0 && matches.size() >= limit) return matches;
+        matches.add(category);
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,538 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import com.castsoftware.paris.metaLanguage.SimpleRequestCompiler;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Columnar copy of the properties of the nodes of an application, used to evaluate the simple
+ * group requests without reading the property store. The ids of the nodes are kept in a primitive
+ * array, and each property in a column of dictionary codes : the distinct values are stored once,
+ * and every node holds the index of its value. The sets of labels are encoded the same way.
+ *
+ * <p>The caches are kept per database and application, bound to the version of the application
+ * label, of the properties cached and of the labels found on the nodes : other writes don't
+ * invalidate them. A cache is built from the committed state of the graph, outside of any lock ;
+ * the callers asking for the cache of an application being built wait for that build. The least
+ * recently used caches are dropped once the size bound is reached, and a cache larger than the
+ * bound is not kept.
+ */
+public class ColumnarCache {
+
+  private static final boolean ENABLED =
+      Boolean.parseBoolean(Configuration.get("paris.columnar.enabled"));
+  private static final List<String> DEFAULT_PROPERTIES =
+      Arrays.stream(Configuration.get("paris.columnar.properties").split(","))
+          .map(String::trim)
+          .filter(s -> !s.isEmpty())
+          .collect(Collectors.toList());
+  private static final long MAX_SIZE_BYTES =
+      Long.parseLong(Configuration.get("paris.columnar.max_size_mb")) * 1024 * 1024;
+  private static final int PARALLELISM =
+      Integer.parseInt(Configuration.get("paris.runner.parallelism"));
+  private static final int CHUNK_SIZE =
+      Integer.parseInt(Configuration.get("paris.tag.batch_size"));
+
+  // Code of the nodes without value
+  private static final int NULL_CODE = -1;
+
+  private static final LinkedHashMap<String, ColumnarCache> INSTANCES =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private static long totalSizeInBytes = 0L;
+
+  // Builds in progress, by key
+  private static final Map<String, CompletableFuture<ColumnarCache>> BUILDS =
+      new ConcurrentHashMap<>();
+
+  /** Dictionary-encoded column */
+  private static class Column {
+    private final Object[] dictionary;
+    private final int[] codes;
+
+    private Column(Object[] dictionary, int[] codes) {
+      this.dictionary = dictionary;
+      this.codes = codes;
+    }
+
+    private Object get(int row) {
+      int code = codes[row];
+      return code == NULL_CODE ? null : dictionary[code];
+    }
+  }
+
+  private final String application;
+  private final List<String> scopes;
+  private final long version;
+  private final long buildTime;
+  private final long[] ids;
+  private final Map<String, Column> columns;
+  private final List<Set<String>> labelSets;
+  private final int[] labelCodes;
+  private final long sizeInBytes;
+
+  private ColumnarCache(
+      String application,
+      List<String> scopes,
+      long version,
+      long buildTime,
+      long[] ids,
+      Map<String, Column> columns,
+      List<Set<String>> labelSets,
+      int[] labelCodes) {
+    this.application = application;
+    this.scopes = scopes;
+    this.version = version;
+    this.buildTime = buildTime;
+    this.ids = ids;
+    this.columns = columns;
+    this.labelSets = labelSets;
+    this.labelCodes = labelCodes;
+    this.sizeInBytes = estimateSize();
+  }
+
+  private static String key(Neo4jAL neo4jAL, String application) {
+    return neo4jAL.getDb().databaseName() + "::" + application;
+  }
+
+  /**
+   * Get the cache of an application if it matches the current version of the nodes it holds. When
+   * the cache is enabled in the configuration, a missing or outdated cache is built.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @return The cache, null if not available
+   */
+  public static ColumnarCache getIfValid(Neo4jAL neo4jAL, String application) {
+    ColumnarCache cache;
+    synchronized (ColumnarCache.class) {
+      cache = INSTANCES.get(key(neo4jAL, application));
+    }
+    if (cache != null && cache.isValid(neo4jAL)) return cache;
+    if (!ENABLED) return null;
+    return build(neo4jAL, application, DEFAULT_PROPERTIES);
+  }
+
+  /**
+   * Build the cache of an application, replacing the previous one. The nodes are read in parallel
+   * chunks, each worker in its own transaction. If the cache of the application is already being
+   * built, that build is reused when it holds the properties requested and is still valid.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param properties Properties to cache, the configured ones if empty
+   * @return The cache, null if it is larger than the size bound
+   */
+  public static ColumnarCache build(Neo4jAL neo4jAL, String application, List<String> properties) {
+    String key = key(neo4jAL, application);
+    List<String> keys =
+        properties == null || properties.isEmpty() ? DEFAULT_PROPERTIES : properties;
+
+    while (true) {
+      CompletableFuture<ColumnarCache> mine = new CompletableFuture<>();
+      CompletableFuture<ColumnarCache> running = BUILDS.putIfAbsent(key, mine);
+      if (running == null) return build(neo4jAL, application, keys, mine);
+
+      ColumnarCache built;
+      try {
+        built = running.join();
+      } catch (CompletionException e) {
+        throw new IllegalStateException("Failed to build the columnar cache.", e.getCause());
+      }
+      if (built == null) return null;
+      if (built.columns.keySet().containsAll(keys) && built.isValid(neo4jAL)) return built;
+    }
+  }
+
+  // Build owned by the caller, shared with the callers of the same key through its future
+  private static ColumnarCache build(
+      Neo4jAL neo4jAL, String application, List<String> keys, CompletableFuture<ColumnarCache> mine) {
+    String key = key(neo4jAL, application);
+    ColumnarCache cache;
+    try {
+      cache = keep(neo4jAL, key, load(neo4jAL, application, keys.toArray(new String[0])));
+    } catch (RuntimeException | Error e) {
+      BUILDS.remove(key, mine);
+      mine.completeExceptionally(e);
+      throw e;
+    }
+
+    // Removed first, so the callers waiting for another set of properties can start their build
+    BUILDS.remove(key, mine);
+    mine.complete(cache);
+    return cache;
+  }
+
+  // Replace the cache of a key, null if the cache is larger than the size bound
+  private static synchronized ColumnarCache keep(Neo4jAL neo4jAL, String key, ColumnarCache cache) {
+    ColumnarCache previous = INSTANCES.remove(key);
+    if (previous != null) totalSizeInBytes -= previous.sizeInBytes;
+    if (cache.sizeInBytes > MAX_SIZE_BYTES) {
+      neo4jAL.logInfo(
+          String.format("Columnar cache not kept, larger than the size bound : %s", cache));
+      return null;
+    }
+
+    INSTANCES.put(key, cache);
+    totalSizeInBytes += cache.sizeInBytes;
+    evict();
+    neo4jAL.logInfo(String.format("Columnar cache built : %s", cache));
+    return cache;
+  }
+
+  // Read the committed nodes of the application and encode their columns
+  private static ColumnarCache load(Neo4jAL neo4jAL, String application, String[] keys) {
+    long start = System.currentTimeMillis();
+    // The labels read are only known at the end : the version is computed on the counters read before
+    Map<String, Long> snapshot = GraphVersion.snapshot(neo4jAL);
+
+    IdBitmap bitmap = new IdBitmap();
+    try (Transaction tx = neo4jAL.getDb().beginTx();
+        ResourceIterator<Node> it = tx.findNodes(Label.label(application))) {
+      while (it.hasNext()) bitmap.add(it.next().getId());
+    }
+    long[] ids = bitmap.toArray();
+    Arrays.sort(ids);
+
+    // Each chunk is encoded with its own dictionaries, merged afterwards
+    List<Future<ChunkColumns>> futures = new ArrayList<>();
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, PARALLELISM));
+    List<ChunkColumns> chunks = new ArrayList<>();
+    try {
+      for (int from = 0; from < ids.length; from += CHUNK_SIZE) {
+        int chunkStart = from;
+        int chunkEnd = Math.min(ids.length, from + CHUNK_SIZE);
+        futures.add(pool.submit(() -> readChunk(neo4jAL, ids, chunkStart, chunkEnd, keys)));
+      }
+      for (Future<ChunkColumns> future : futures) chunks.add(future.get());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("The build of the columnar cache was interrupted.", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to build the columnar cache.", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+
+    Map<String, Column> columns = new LinkedHashMap<>();
+    for (int k = 0; k < keys.length; k++) {
+      Dictionary<Object> dictionary = new Dictionary<>();
+      int[] codes = new int[ids.length];
+      int row = 0;
+      for (ChunkColumns chunk : chunks) {
+        int[] mapping = dictionary.merge(chunk.values[k]);
+        for (int code : chunk.codes[k]) codes[row++] = code == NULL_CODE ? NULL_CODE : mapping[code];
+      }
+      columns.put(keys[k], new Column(dictionary.values.toArray(), codes));
+    }
+
+    Dictionary<Set<String>> labelDictionary = new Dictionary<>();
+    int[] labelCodes = new int[ids.length];
+    int row = 0;
+    for (ChunkColumns chunk : chunks) {
+      int[] mapping = labelDictionary.merge(chunk.labelSets);
+      for (int code : chunk.labelCodes) labelCodes[row++] = mapping[code];
+    }
+
+    // Scopes : the application, the properties cached and every label found on the nodes
+    Set<String> scopes = new TreeSet<>();
+    scopes.add(GraphVersion.label(application));
+    for (String k : keys) scopes.add(GraphVersion.property(k));
+    for (Set<String> labels : labelDictionary.values) {
+      for (String label : labels) scopes.add(GraphVersion.label(label));
+    }
+    List<String> scopeList = new ArrayList<>(scopes);
+
+    return new ColumnarCache(
+        application,
+        scopeList,
+        GraphVersion.get(snapshot, scopeList),
+        System.currentTimeMillis() - start,
+        ids,
+        columns,
+        labelDictionary.values,
+        labelCodes);
+  }
+
+  /**
+   * Check if the nodes, properties and labels held by the cache are unchanged since its build
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return True if the cache can be used
+   */
+  public boolean isValid(Neo4jAL neo4jAL) {
+    return version != GraphVersion.UNKNOWN && GraphVersion.get(neo4jAL, scopes) == version;
+  }
+
+  /**
+   * Drop the cache of an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @return True if a cache was dropped
+   */
+  public static synchronized boolean drop(Neo4jAL neo4jAL, String application) {
+    ColumnarCache previous = INSTANCES.remove(key(neo4jAL, application));
+    if (previous == null) return false;
+    totalSizeInBytes -= previous.sizeInBytes;
+    return true;
+  }
+
+  // Remove the least recently used caches, always keep the last one built
+  private static void evict() {
+    Iterator<Map.Entry<String, ColumnarCache>> it = INSTANCES.entrySet().iterator();
+    while (totalSizeInBytes > MAX_SIZE_BYTES && INSTANCES.size() > 1 && it.hasNext()) {
+      totalSizeInBytes -= it.next().getValue().sizeInBytes;
+      it.remove();
+    }
+  }
+
+  private static ChunkColumns readChunk(
+      Neo4jAL neo4jAL, long[] ids, int from, int to, String[] keys) {
+    ChunkColumns chunk = new ChunkColumns(keys.length, to - from);
+    try (Transaction tx = neo4jAL.getDb().beginTx()) {
+      for (int i = from; i < to; i++) {
+        Map<String, Object> values = Map.of();
+        Set<String> labels = Set.of();
+        try {
+          Node node = tx.getNodeById(ids[i]);
+          values = node.getProperties(keys);
+          labels = new HashSet<>();
+          for (Label l : node.getLabels()) labels.add(l.name());
+        } catch (NotFoundException ignored) {
+          // Deleted since the scan, kept without value nor label
+        }
+
+        for (int k = 0; k < keys.length; k++) {
+          Object value = values.get(keys[k]);
+          chunk.codes[k][i - from] =
+              value == null ? NULL_CODE : chunk.dictionaries[k].encode(value);
+        }
+        chunk.labelCodes[i - from] = chunk.labelDictionary.encode(labels);
+      }
+    }
+
+    for (int k = 0; k < keys.length; k++) chunk.values[k] = chunk.dictionaries[k].values;
+    chunk.labelSets = chunk.labelDictionary.values;
+    return chunk;
+  }
+
+  /** Columns of a chunk, encoded with the dictionaries of the chunk */
+  private static class ChunkColumns {
+    private final int[][] codes;
+    private final int[] labelCodes;
+    private final Dictionary<Object>[] dictionaries;
+    private final Dictionary<Set<String>> labelDictionary = new Dictionary<>();
+    private final List<Object>[] values;
+    private List<Set<String>> labelSets;
+
+    @SuppressWarnings("unchecked")
+    private ChunkColumns(int columns, int rows) {
+      this.codes = new int[columns][rows];
+      this.labelCodes = new int[rows];
+      this.dictionaries = new Dictionary[columns];
+      this.values = new List[columns];
+      for (int k = 0; k < columns; k++) dictionaries[k] = new Dictionary<>();
+    }
+  }
+
+  /** Distinct values and their codes. The array values are compared on their content. */
+  private static class Dictionary<T> {
+    private final Map<Object, Integer> codes = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    private int encode(T value) {
+      Object key = keyOf(value);
+      Integer code = codes.get(key);
+      if (code != null) return code;
+      codes.put(key, values.size());
+      values.add(value);
+      return values.size() - 1;
+    }
+
+    // Arrays don't implement equals : they are keyed by their type and their elements
+    private static Object keyOf(Object value) {
+      if (value == null || !value.getClass().isArray()) return value;
+
+      int length = Array.getLength(value);
+      List<Object> elements = new ArrayList<>(length);
+      for (int i = 0; i < length; i++) elements.add(Array.get(value, i));
+      return List.of(value.getClass(), elements);
+    }
+
+    // Add the values of another dictionary, and return the new code of each of its codes
+    private int[] merge(List<T> other) {
+      int[] mapping = new int[other.size()];
+      for (int i = 0; i < mapping.length; i++) mapping[i] = encode(other.get(i));
+      return mapping;
+    }
+  }
+
+  /**
+   * Check if the cache holds all the properties and the labels read by a request
+   *
+   * @param request Compiled request
+   * @return True if the request can be evaluated on the cache
+   */
+  public boolean covers(SimpleRequestCompiler.SimpleRequest request) {
+    if (!columns.keySet().containsAll(request.getProperties())) return false;
+
+    // A label absent at the build is not followed by the version, it may have been added since
+    for (String label : request.getLabels()) {
+      if (!scopes.contains(GraphVersion.label(label))) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Get a row of the cache, as read by the compiled requests
+   *
+   * @param row Index of the row
+   * @return The values of the row
+   */
+  public SimpleRequestCompiler.Row row(int row) {
+    return new SimpleRequestCompiler.Row() {
+      @Override
+      public Object getProperty(String key) {
+        Column column = columns.get(key);
+        return column == null ? null : column.get(row);
+      }
+
+      @Override
+      public boolean hasLabel(String label) {
+        return labelSets.get(labelCodes[row]).contains(label);
+      }
+    };
+  }
+
+  /**
+   * Apply a consumer on the index of every row matching a request. A request reading a single
+   * property is evaluated once per distinct value and set of labels, then the codes are scanned ;
+   * the other requests are evaluated row by row, on the columns.
+   *
+   * @param request Compiled request, covered by the cache
+   * @param consumer Consumer of the rows matching
+   */
+  public void forEachMatch(SimpleRequestCompiler.SimpleRequest request, IntConsumer consumer) {
+    if (request.getProperties().size() > 1) {
+      for (int i = 0; i < ids.length; i++) {
+        if (request.matches(row(i))) consumer.accept(i);
+      }
+      return;
+    }
+
+    Column column =
+        request.getProperties().isEmpty()
+            ? null
+            : columns.get(request.getProperties().iterator().next());
+    int width = column == null ? 1 : column.dictionary.length + 1;
+
+    // 0 : not evaluated, 1 : no match, 2 : match
+    byte[] memo = new byte[labelSets.size() * width];
+    for (int i = 0; i < ids.length; i++) {
+      int slot = labelCodes[i] * width + (column == null ? 0 : column.codes[i] + 1);
+      if (memo[slot] == 0) memo[slot] = request.matches(row(i)) ? (byte) 2 : (byte) 1;
+      if (memo[slot] == 2) consumer.accept(i);
+    }
+  }
+
+  /**
+   * Count the nodes matching a request
+   *
+   * @param request Compiled request, covered by the cache
+   * @return The number of nodes
+   */
+  public long count(SimpleRequestCompiler.SimpleRequest request) {
+    long[] count = {0L};
+    forEachMatch(request, i -> count[0]++);
+    return count[0];
+  }
+
+  /**
+   * Get the ids of the nodes matching a request
+   *
+   * @param request Compiled request, covered by the cache
+   * @return The ids
+   */
+  public IdBitmap match(SimpleRequestCompiler.SimpleRequest request) {
+    IdBitmap matches = new IdBitmap();
+    forEachMatch(request, i -> matches.add(ids[i]));
+    return matches;
+  }
+
+  public long[] getIds() {
+    return Arrays.copyOf(ids, ids.length);
+  }
+
+  public long getId(int row) {
+    return ids[row];
+  }
+
+  public int size() {
+    return ids.length;
+  }
+
+  public String getApplication() {
+    return application;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public long getBuildTime() {
+    return buildTime;
+  }
+
+  public List<String> getProperties() {
+    return new ArrayList<>(columns.keySet());
+  }
+
+  public long sizeInBytes() {
+    return sizeInBytes;
+  }
+
+  // Approximate memory used by the arrays and the dictionaries
+  private long estimateSize() {
+    long size = (long) ids.length * (Long.BYTES + Integer.BYTES);
+    for (Column column : columns.values()) {
+      size += (long) column.codes.length * Integer.BYTES;
+      for (Object value : column.dictionary) {
+        size += 48L + (value instanceof String ? 2L * ((String) value).length() : 16L);
+      }
+    }
+    return size + labelSets.size() * 128L;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "ColumnarCache{application=%s, nodes=%d, columns=%s, size=%d bytes, build=%d ms}",
+        application, ids.length, columns.keySet(), sizeInBytes, buildTime);
+  }
+}
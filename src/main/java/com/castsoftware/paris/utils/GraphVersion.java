@@ -0,0 +1,213 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListenerAdapter;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counter of a database. A transaction listener is registered at the first call and
+ * increments the counter after each committed write, so any value computed on the graph can be
+ * stored with the version it was computed on and discarded once the graph moved.
+ *
+ * <p>Counters are also kept per scope : a label, a property key or a relationship type. A scope is
+ * incremented only when a committed transaction touched it, so a value depending on a few labels
+ * and properties is not discarded by unrelated writes. Rolled back transactions change nothing.
+ */
+public class GraphVersion {
+
+  /** Returned when the changes of the database can't be followed */
+  public static final long UNKNOWN = -1L;
+
+  private static final Map<String, Versions> VERSIONS = new ConcurrentHashMap<>();
+
+  /** Counters of a database */
+  private static class Versions {
+    private final AtomicLong global = new AtomicLong(0L);
+    private final Map<String, AtomicLong> scopes = new ConcurrentHashMap<>();
+
+    private void increment(Set<String> touched) {
+      if (touched == null) {
+        // The changes couldn't be read, every scope may have moved
+        scopes.values().forEach(AtomicLong::incrementAndGet);
+      } else {
+        for (String scope : touched) {
+          scopes.computeIfAbsent(scope, k -> new AtomicLong(0L)).incrementAndGet();
+        }
+      }
+      global.incrementAndGet();
+    }
+  }
+
+  private GraphVersion() {}
+
+  /**
+   * Get the current version of the database
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The version, UNKNOWN if the listener couldn't be registered
+   */
+  public static long get(Neo4jAL neo4jAL) {
+    return getVersions(neo4jAL).global.get();
+  }
+
+  /**
+   * Get the version of a set of scopes. It changes only when a committed transaction touched one
+   * of them. Two versions are comparable only if they were read on the same scopes.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param scopes Scopes, built with {@link #label}, {@link #property} and {@link #relationship}
+   * @return The version, UNKNOWN if the listener couldn't be registered
+   */
+  public static long get(Neo4jAL neo4jAL, Collection<String> scopes) {
+    Versions versions = getVersions(neo4jAL);
+    if (versions.global.get() == UNKNOWN) return UNKNOWN;
+
+    long version = 0L;
+    for (String scope : scopes) {
+      version += versions.scopes.computeIfAbsent(scope, k -> new AtomicLong(0L)).get();
+    }
+    return version;
+  }
+
+  /**
+   * Read the counters of all the scopes, for a value whose scopes are only known once it is built
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return The counter of each scope, null if the listener couldn't be registered
+   */
+  public static Map<String, Long> snapshot(Neo4jAL neo4jAL) {
+    Versions versions = getVersions(neo4jAL);
+    if (versions.global.get() == UNKNOWN) return null;
+
+    Map<String, Long> snapshot = new HashMap<>();
+    versions.scopes.forEach((scope, counter) -> snapshot.put(scope, counter.get()));
+    return snapshot;
+  }
+
+  /**
+   * Get the version of a set of scopes at the time of a snapshot. Comparable with the versions
+   * read later on the same scopes.
+   *
+   * @param snapshot Counters read by {@link #snapshot}, can be null
+   * @param scopes Scopes of the value
+   * @return The version, UNKNOWN if the snapshot is null
+   */
+  public static long get(Map<String, Long> snapshot, Collection<String> scopes) {
+    if (snapshot == null) return UNKNOWN;
+
+    long version = 0L;
+    for (String scope : scopes) version += snapshot.getOrDefault(scope, 0L);
+    return version;
+  }
+
+  /**
+   * Scope of the nodes holding a label : creation, deletion, label added or removed
+   *
+   * @param label Name of the label
+   * @return The scope
+   */
+  public static String label(String label) {
+    return "label:" + label;
+  }
+
+  /**
+   * Scope of a property key, on the nodes and on the relationships
+   *
+   * @param key Property key
+   * @return The scope
+   */
+  public static String property(String key) {
+    return "property:" + key;
+  }
+
+  /**
+   * Scope of the relationships of a type : creation and deletion
+   *
+   * @param type Type of the relationships
+   * @return The scope
+   */
+  public static String relationship(String type) {
+    return "relationship:" + type;
+  }
+
+  private static Versions getVersions(Neo4jAL neo4jAL) {
+    return VERSIONS.computeIfAbsent(neo4jAL.getDb().databaseName(), k -> register(neo4jAL));
+  }
+
+  private static Versions register(Neo4jAL neo4jAL) {
+    GraphDatabaseService db = neo4jAL.getDb();
+    Versions versions = new Versions();
+
+    try {
+      DatabaseManagementService dbms =
+          ((GraphDatabaseAPI) db)
+              .getDependencyResolver()
+              .resolveDependency(DatabaseManagementService.class);
+      dbms.registerTransactionEventListener(
+          db.databaseName(),
+          new TransactionEventListenerAdapter<Set<String>>() {
+            @Override
+            public Set<String> beforeCommit(
+                TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+              // Collected before the commit, while the deleted entities can still be read
+              return getTouchedScopes(data);
+            }
+
+            @Override
+            public void afterCommit(
+                TransactionData data, Set<String> touched, GraphDatabaseService databaseService) {
+              versions.increment(touched);
+            }
+          });
+      neo4jAL.logInfo(
+          String.format("Change listener registered on the database '%s'.", db.databaseName()));
+    } catch (Exception e) {
+      // Without the listener, the changes can't be followed : the cached values are never reused
+      neo4jAL.logError(
+          String.format(
+              "Failed to register the change listener on the database '%s'.", db.databaseName()),
+          e);
+      versions.global.set(UNKNOWN);
+    }
+    return versions;
+  }
+
+  /**
+   * Get the scopes touched by a transaction
+   *
+   * @param data Changes of the transaction
+   * @return The scopes, null if the changes couldn't be read
+   */
+  private static Set<String> getTouchedScopes(TransactionData data) {
+    Set<String> touched = new HashSet<>();
+    try {
+      // Labels of the created and deleted nodes are reported as assigned and removed
+      for (LabelEntry entry : data.assignedLabels()) touched.add(label(entry.label().name()));
+      for (LabelEntry entry : data.removedLabels()) touched.add(label(entry.label().name()));
+      for (PropertyEntry<?> entry : data.assignedNodeProperties()) touched.add(property(entry.key()));
+      for (PropertyEntry<?> entry : data.removedNodeProperties()) touched.add(property(entry.key()));
+      for (PropertyEntry<?> entry : data.assignedRelationshipProperties()) touched.add(property(entry.key()));
+      for (PropertyEntry<?> entry : data.removedRelationshipProperties()) touched.add(property(entry.key()));
+      for (Relationship rel : data.createdRelationships()) touched.add(relationship(rel.getType().name()));
+      for (Relationship rel : data.deletedRelationships()) touched.add(relationship(rel.getType().name()));
+    } catch (Exception e) {
+      return null;
+    }
+    return touched;
+  }
+}
@@ -0,0 +1,249 @@
+package com.castsoftware.paris.utils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+/**
+ * Compact set of Neo4j ids. The ids are split in chunks of 4096 consecutive values, each chunk
+ * being stored as a plain bit array. Avoids the boxing and the linear lookups of a List<Long>.
+ */
+public class IdBitmap {
+
+  private static final int CHUNK_SHIFT = 12;
+  private static final int WORDS_PER_CHUNK = 1 << (CHUNK_SHIFT - 6);
+  private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+  private final Map<Long, long[]> chunks = new HashMap<>();
+  private long cardinality = 0L;
+
+  // Last chunk accessed, most of the lookups hit the same region of the store
+  private long lastKey = -1L;
+  private long[] lastChunk = null;
+
+  public IdBitmap() {}
+
+  private long[] getChunk(long key, boolean create) {
+    if (key == lastKey && lastChunk != null) return lastChunk;
+
+    long[] chunk = chunks.get(key);
+    if (chunk == null && create) {
+      chunk = new long[WORDS_PER_CHUNK];
+      chunks.put(key, chunk);
+    }
+
+    if (chunk != null) {
+      lastKey = key;
+      lastChunk = chunk;
+    }
+    return chunk;
+  }
+
+  /**
+   * Add an id to the set
+   *
+   * @param id Id to add
+   * @return True if the id was not present before
+   */
+  public boolean add(long id) {
+    assert id >= 0 : "Negative ids cannot be stored in the bitmap";
+    long[] chunk = getChunk(id >>> CHUNK_SHIFT, true);
+    int bit = (int) (id & CHUNK_MASK);
+    long mask = 1L << (bit & 63);
+
+    if ((chunk[bit >>> 6] & mask) != 0) return false;
+    chunk[bit >>> 6] |= mask;
+    cardinality++;
+    return true;
+  }
+
+  /**
+   * Remove an id from the set
+   *
+   * @param id Id to remove
+   * @return True if the id was present
+   */
+  public boolean remove(long id) {
+    if (id < 0) return false;
+    long[] chunk = getChunk(id >>> CHUNK_SHIFT, false);
+    if (chunk == null) return false;
+
+    int bit = (int) (id & CHUNK_MASK);
+    long mask = 1L << (bit & 63);
+    if ((chunk[bit >>> 6] & mask) == 0) return false;
+
+    chunk[bit >>> 6] &= ~mask;
+    cardinality--;
+    return true;
+  }
+
+  public boolean contains(long id) {
+    if (id < 0) return false;
+    long[] chunk = getChunk(id >>> CHUNK_SHIFT, false);
+    if (chunk == null) return false;
+
+    int bit = (int) (id & CHUNK_MASK);
+    return (chunk[bit >>> 6] & (1L << (bit & 63))) != 0;
+  }
+
+  public long size() {
+    return cardinality;
+  }
+
+  public boolean isEmpty() {
+    return cardinality == 0;
+  }
+
+  /**
+   * Apply the consumer on every id of the set. The order of the chunks is not guaranteed.
+   *
+   * @param consumer Consumer to apply
+   */
+  public void forEach(LongConsumer consumer) {
+    for (Map.Entry<Long, long[]> en : chunks.entrySet()) {
+      long base = en.getKey() << CHUNK_SHIFT;
+      long[] chunk = en.getValue();
+
+      for (int w = 0; w < chunk.length; w++) {
+        long word = chunk[w];
+        while (word != 0) {
+          int bit = Long.numberOfTrailingZeros(word);
+          consumer.accept(base + ((long) w << 6) + bit);
+          word &= word - 1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Get the ids as a primitive array
+   *
+   * @return Array of ids
+   */
+  public long[] toArray() {
+    long[] ids = new long[(int) cardinality];
+    int[] i = {0};
+    forEach(id -> ids[i[0]++] = id);
+    return ids;
+  }
+
+  /**
+   * Build a bitmap from a list of ids
+   *
+   * @param ids Ids to insert
+   * @return The bitmap
+   */
+  public static IdBitmap of(long... ids) {
+    IdBitmap bitmap = new IdBitmap();
+    for (long id : ids) bitmap.add(id);
+    return bitmap;
+  }
+
+  /**
+   * Get the ids of this set that are not in the other one
+   *
+   * @param other Set to subtract
+   * @return A new bitmap
+   */
+  public IdBitmap andNot(IdBitmap other) {
+    IdBitmap result = new IdBitmap();
+    for (Map.Entry<Long, long[]> en : chunks.entrySet()) {
+      long[] otherChunk = other.chunks.get(en.getKey());
+      long[] chunk = en.getValue();
+      long[] diff = new long[WORDS_PER_CHUNK];
+      long count = 0L;
+
+      for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+        diff[w] = otherChunk == null ? chunk[w] : chunk[w] & ~otherChunk[w];
+        count += Long.bitCount(diff[w]);
+      }
+
+      if (count == 0) continue;
+      result.chunks.put(en.getKey(), diff);
+      result.cardinality += count;
+    }
+    return result;
+  }
+
+  /**
+   * Serialize the bitmap. Each non-empty chunk is written as its key, a mask of its non-empty words
+   * and the non-empty words, so sparse chunks stay small.
+   *
+   * @return The bitmap as bytes
+   */
+  public byte[] toBytes() {
+    List<Long> keys = new ArrayList<>(chunks.keySet());
+    Collections.sort(keys);
+
+    int size = 0;
+    for (Long key : keys) {
+      int words = nonEmptyWords(chunks.get(key));
+      if (words > 0) size += (2 + words) * Long.BYTES;
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    for (Long key : keys) {
+      long[] chunk = chunks.get(key);
+      long mask = 0L;
+      for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+        if (chunk[w] != 0) mask |= 1L << w;
+      }
+      if (mask == 0) continue;
+
+      buffer.putLong(key);
+      buffer.putLong(mask);
+      for (int w = 0; w < WORDS_PER_CHUNK; w++) {
+        if (chunk[w] != 0) buffer.putLong(chunk[w]);
+      }
+    }
+    return buffer.array();
+  }
+
+  /**
+   * Rebuild a bitmap serialized with {@link #toBytes()}
+   *
+   * @param bytes Serialized bitmap
+   * @return The bitmap, empty if the bytes are null
+   */
+  public static IdBitmap fromBytes(byte[] bytes) {
+    IdBitmap bitmap = new IdBitmap();
+    if (bytes == null) return bitmap;
+
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.remaining() >= 2 * Long.BYTES) {
+      long key = buffer.getLong();
+      long mask = buffer.getLong();
+      long[] chunk = new long[WORDS_PER_CHUNK];
+
+      while (mask != 0) {
+        int w = Long.numberOfTrailingZeros(mask);
+        chunk[w] = buffer.getLong();
+        bitmap.cardinality += Long.bitCount(chunk[w]);
+        mask &= mask - 1;
+      }
+      bitmap.chunks.put(key, chunk);
+    }
+    return bitmap;
+  }
+
+  private static int nonEmptyWords(long[] chunk) {
+    int count = 0;
+    for (long word : chunk) {
+      if (word != 0) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Approximate memory used by the bitmap
+   *
+   * @return Size in bytes
+   */
+  public long sizeInBytes() {
+    return (long) chunks.size() * (WORDS_PER_CHUNK * Long.BYTES + 48L);
+  }
+}
@@ -0,0 +1,133 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Membership index between the Transaction nodes and the Objects they contain. The bitmap of a
+ * transaction is built the first time it is requested and shared by all the rows of the run. The
+ * least recently used bitmaps are evicted once the size bound is reached.
+ */
+public class TransactionMembershipCache {
+
+  private static final RelationshipType CONTAINS = RelationshipType.withName("Contains");
+  private static final Label OBJECT_LABEL = Label.label("Object");
+
+  private final Neo4jAL neo4jAL;
+  private final long maxSizeInBytes;
+  private final LinkedHashMap<Long, IdBitmap> memberships = new LinkedHashMap<>(256, 0.75f, true);
+
+  private long sizeInBytes = 0L;
+  private long hits = 0L;
+  private long misses = 0L;
+  private long evictions = 0L;
+
+  /**
+   * Create a cache bounded by the size set in the configuration
+   *
+   * @param neo4jAL Neo4j Access Layer
+   */
+  public TransactionMembershipCache(Neo4jAL neo4jAL) {
+    this(
+        neo4jAL,
+        Long.parseLong(Configuration.get("paris.icu.membership_cache.max_size_mb")) * 1024 * 1024);
+  }
+
+  /**
+   * Create a cache with an explicit bound
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param maxSizeInBytes Maximum size of the bitmaps kept in memory
+   */
+  public TransactionMembershipCache(Neo4jAL neo4jAL, long maxSizeInBytes) {
+    this.neo4jAL = neo4jAL;
+    this.maxSizeInBytes = maxSizeInBytes;
+  }
+
+  /**
+   * Get the ids of the objects contained in a transaction
+   *
+   * @param idTransaction Id of the Transaction node
+   * @return The bitmap of the objects ids, empty if the transaction doesn't exist
+   */
+  public IdBitmap getObjects(long idTransaction) {
+    IdBitmap objects = memberships.get(idTransaction);
+    if (objects != null) {
+      hits++;
+      return objects;
+    }
+
+    misses++;
+    objects = buildMembership(idTransaction);
+    memberships.put(idTransaction, objects);
+    sizeInBytes += objects.sizeInBytes();
+    evict();
+    return objects;
+  }
+
+  /**
+   * Check if an object belongs to a transaction
+   *
+   * @param idTransaction Id of the Transaction node
+   * @param idObject Id of the object
+   * @return True if the transaction contains the object
+   */
+  public boolean contains(long idTransaction, long idObject) {
+    return getObjects(idTransaction).contains(idObject);
+  }
+
+  private IdBitmap buildMembership(long idTransaction) {
+    IdBitmap objects = new IdBitmap();
+    Node transaction;
+    try {
+      transaction = neo4jAL.getTransaction().getNodeById(idTransaction);
+    } catch (NotFoundException e) {
+      return objects;
+    }
+
+    for (Relationship rel : transaction.getRelationships(Direction.OUTGOING, CONTAINS)) {
+      Node end = rel.getEndNode();
+      if (end.hasLabel(OBJECT_LABEL)) objects.add(end.getId());
+    }
+    return objects;
+  }
+
+  // Remove the least recently used memberships, always keep the last one inserted
+  private void evict() {
+    Iterator<Map.Entry<Long, IdBitmap>> it = memberships.entrySet().iterator();
+    while (sizeInBytes > maxSizeInBytes && memberships.size() > 1 && it.hasNext()) {
+      sizeInBytes -= it.next().getValue().sizeInBytes();
+      it.remove();
+      evictions++;
+    }
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TransactionMembershipCache{entries=%d, size=%d bytes, hits=%d, misses=%d, evictions=%d}",
+        memberships.size(), sizeInBytes, hits, misses, evictions);
+  }
+}
@@ -0,0 +1,404 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.configuration.Configuration;
+import com.castsoftware.paris.database.Neo4jAL;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Trigram index over a string property of the objects of an application, used to answer the
+ * CONTAINS predicates without scanning the label. Each string is split in its sequences of three
+ * characters, and every trigram points to the sorted ids of the nodes holding it. The ids are
+ * stored as variable-length deltas in a direct buffer, outside of the heap. A substring matches
+ * the nodes holding all its trigrams : the result is a superset of the exact matches, to be
+ * verified on the nodes.
+ *
+ * <p>The indexes are kept per database, application and property, bound to the version of the
+ * application label, the Object label and the property indexed : other writes don't invalidate
+ * them. An index is built from the committed state of the graph, in its own transaction and outside
+ * of any lock. The least recently used indexes are dropped once the size bound is reached.
+ */
+public class TrigramIndex {
+
+  private static final Label OBJECT_LABEL = Label.label("Object");
+  private static final long MAX_SIZE_BYTES =
+      Long.parseLong(Configuration.get("paris.trigram.max_size_mb")) * 1024 * 1024;
+
+  private static final VersionedCache<TrigramIndex> CACHE = new VersionedCache<>();
+
+  // Indexes kept, by order of use, to bound their size
+  private static final LinkedHashMap<String, TrigramIndex> INSTANCES =
+      new LinkedHashMap<>(16, 0.75f, true);
+  private static long totalSizeInBytes = 0L;
+
+  private final String application;
+  private final String property;
+  private final long version;
+  private final long buildTime;
+
+  // Sorted trigrams, and for each one the position and the number of its ids in the postings
+  private final long[] trigrams;
+  private final int[] offsets;
+  private final int[] counts;
+  private final ByteBuffer postings;
+
+  // Ids of all the nodes holding the property, for the substrings shorter than a trigram
+  private final ByteBuffer allIds;
+  private final int nodes;
+
+  private TrigramIndex(
+      String application,
+      String property,
+      long version,
+      long buildTime,
+      long[] trigrams,
+      int[] offsets,
+      int[] counts,
+      ByteBuffer postings,
+      ByteBuffer allIds,
+      int nodes) {
+    this.application = application;
+    this.property = property;
+    this.version = version;
+    this.buildTime = buildTime;
+    this.trigrams = trigrams;
+    this.offsets = offsets;
+    this.counts = counts;
+    this.postings = postings;
+    this.allIds = allIds;
+    this.nodes = nodes;
+  }
+
+  private static String key(Neo4jAL neo4jAL, String application, String property) {
+    return neo4jAL.getDb().databaseName() + "::" + application + "::" + property;
+  }
+
+  // Version of the labels and the property read by the index
+  private static long getVersion(Neo4jAL neo4jAL, String application, String property) {
+    return GraphVersion.get(
+        neo4jAL,
+        List.of(
+            GraphVersion.label(application),
+            GraphVersion.label(OBJECT_LABEL.name()),
+            GraphVersion.property(property)));
+  }
+
+  /**
+   * Get the index of a property. The index is built if missing, or if the objects of the
+   * application or the property changed since it was built.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param property String property indexed
+   * @return The index
+   */
+  public static TrigramIndex getInstance(Neo4jAL neo4jAL, String application, String property) {
+    String key = key(neo4jAL, application, property);
+    long version = getVersion(neo4jAL, application, property);
+    TrigramIndex index = CACHE.get(key, version, () -> load(neo4jAL, application, property, version));
+    if (version != GraphVersion.UNKNOWN) keep(key, index);
+    return index;
+  }
+
+  /**
+   * Build the index of a property, replacing the previous one
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @param property String property indexed
+   * @return The index
+   */
+  public static TrigramIndex build(Neo4jAL neo4jAL, String application, String property) {
+    CACHE.invalidate(key(neo4jAL, application, property));
+    return getInstance(neo4jAL, application, property);
+  }
+
+  /**
+   * Drop the indexes of an application
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @param application Name of the application
+   * @return The number of indexes dropped
+   */
+  public static synchronized int drop(Neo4jAL neo4jAL, String application) {
+    String prefix = neo4jAL.getDb().databaseName() + "::" + application + "::";
+    CACHE.invalidateIf(k -> k.startsWith(prefix));
+
+    int dropped = 0;
+    Iterator<Map.Entry<String, TrigramIndex>> it = INSTANCES.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, TrigramIndex> en = it.next();
+      if (!en.getKey().startsWith(prefix)) continue;
+      totalSizeInBytes -= en.getValue().sizeInBytes();
+      it.remove();
+      dropped++;
+    }
+    return dropped;
+  }
+
+  // Record the use of an index, and account for its size the first time it is seen
+  private static synchronized void keep(String key, TrigramIndex index) {
+    TrigramIndex previous = INSTANCES.get(key);
+    if (previous == index) return;
+
+    INSTANCES.put(key, index);
+    if (previous != null) totalSizeInBytes -= previous.sizeInBytes();
+    totalSizeInBytes += index.sizeInBytes();
+    evict();
+  }
+
+  // Remove the least recently used indexes, always keep the last one built
+  private static void evict() {
+    Iterator<Map.Entry<String, TrigramIndex>> it = INSTANCES.entrySet().iterator();
+    while (totalSizeInBytes > MAX_SIZE_BYTES && INSTANCES.size() > 1 && it.hasNext()) {
+      Map.Entry<String, TrigramIndex> en = it.next();
+      totalSizeInBytes -= en.getValue().sizeInBytes();
+      CACHE.invalidate(en.getKey());
+      it.remove();
+    }
+  }
+
+  // Read the committed values of the property and build the index
+  private static TrigramIndex load(
+      Neo4jAL neo4jAL, String application, String property, long version) {
+    long start = System.currentTimeMillis();
+
+    Map<Long, LongList> staging = new HashMap<>();
+    LongList ids = new LongList();
+    Set<Long> seen = new HashSet<>();
+
+    try (Transaction tx = neo4jAL.getDb().beginTx();
+        ResourceIterator<Node> it = tx.findNodes(Label.label(application))) {
+      while (it.hasNext()) {
+        Node n = it.next();
+        if (!n.hasLabel(OBJECT_LABEL)) continue;
+        Object value = n.getProperty(property, null);
+        if (!(value instanceof String)) continue;
+
+        long id = n.getId();
+        ids.add(id);
+        seen.clear();
+        String str = (String) value;
+        for (int i = 0; i + 3 <= str.length(); i++) {
+          long trigram = trigram(str, i);
+          if (seen.add(trigram)) staging.computeIfAbsent(trigram, k -> new LongList()).add(id);
+        }
+      }
+    }
+
+    long[] trigrams = staging.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+    int[] offsets = new int[trigrams.length];
+    int[] counts = new int[trigrams.length];
+
+    int size = 0;
+    for (int i = 0; i < trigrams.length; i++) {
+      LongList list = staging.get(trigrams[i]);
+      list.sort();
+      offsets[i] = size;
+      counts[i] = list.size;
+      size = Math.addExact(size, list.encodedSize());
+    }
+
+    ByteBuffer postings = ByteBuffer.allocateDirect(size);
+    for (long trigram : trigrams) staging.get(trigram).encode(postings);
+    staging.clear();
+
+    ids.sort();
+    ByteBuffer allIds = ByteBuffer.allocateDirect(ids.encodedSize());
+    ids.encode(allIds);
+
+    TrigramIndex index =
+        new TrigramIndex(
+            application,
+            property,
+            version,
+            System.currentTimeMillis() - start,
+            trigrams,
+            offsets,
+            counts,
+            postings,
+            allIds,
+            ids.size);
+
+    neo4jAL.logInfo(String.format("Trigram index built : %s", index));
+    return index;
+  }
+
+  // Three UTF-16 characters packed in a long
+  private static long trigram(String str, int i) {
+    return ((long) str.charAt(i) << 32) | ((long) str.charAt(i + 1) << 16) | str.charAt(i + 2);
+  }
+
+  /**
+   * Get the ids of the nodes which may contain a substring. All the nodes holding the property are
+   * returned for a substring shorter than three characters.
+   *
+   * @param substring Substring searched
+   * @return The sorted ids of the candidates
+   */
+  public long[] getCandidates(String substring) {
+    if (substring == null) return new long[0];
+    if (substring.length() < 3) return decode(allIds, 0, nodes);
+
+    // Distinct trigrams of the substring, the rarest first
+    Set<Long> distinct = new HashSet<>();
+    for (int i = 0; i + 3 <= substring.length(); i++) distinct.add(trigram(substring, i));
+
+    int[] positions = new int[distinct.size()];
+    int p = 0;
+    for (Long trigram : distinct) {
+      int position = Arrays.binarySearch(trigrams, trigram);
+      if (position < 0) return new long[0];
+      positions[p++] = position;
+    }
+    int[] byCount =
+        Arrays.stream(positions)
+            .boxed()
+            .sorted((a, b) -> Integer.compare(counts[a], counts[b]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    long[] candidates = decode(postings, offsets[byCount[0]], counts[byCount[0]]);
+    for (int i = 1; i < byCount.length && candidates.length > 0; i++) {
+      candidates = intersect(candidates, byCount[i]);
+    }
+    return candidates;
+  }
+
+  // Keep the candidates present in the postings of a trigram, walking both sorted lists
+  private long[] intersect(long[] candidates, int position) {
+    ByteBuffer buffer = postings.duplicate();
+    buffer.position(offsets[position]);
+
+    long[] kept = new long[candidates.length];
+    int size = 0;
+    int c = 0;
+    long id = 0L;
+    for (int i = 0; i < counts[position] && c < candidates.length; i++) {
+      id += readVarLong(buffer);
+      while (c < candidates.length && candidates[c] < id) c++;
+      if (c < candidates.length && candidates[c] == id) kept[size++] = candidates[c++];
+    }
+    return Arrays.copyOf(kept, size);
+  }
+
+  private static long[] decode(ByteBuffer source, int offset, int count) {
+    ByteBuffer buffer = source.duplicate();
+    buffer.position(offset);
+    long[] ids = new long[count];
+    long id = 0L;
+    for (int i = 0; i < count; i++) {
+      id += readVarLong(buffer);
+      ids[i] = id;
+    }
+    return ids;
+  }
+
+  private static long readVarLong(ByteBuffer buffer) {
+    long value = 0L;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  public String getApplication() {
+    return application;
+  }
+
+  public String getProperty() {
+    return property;
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public long getBuildTime() {
+    return buildTime;
+  }
+
+  public int getNodes() {
+    return nodes;
+  }
+
+  public int getTrigrams() {
+    return trigrams.length;
+  }
+
+  /**
+   * Approximate memory used by the index, in and out of the heap
+   *
+   * @return Size in bytes
+   */
+  public long sizeInBytes() {
+    return (long) trigrams.length * (Long.BYTES + 2 * Integer.BYTES)
+        + postings.capacity()
+        + allIds.capacity();
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "TrigramIndex{application=%s, property=%s, nodes=%d, trigrams=%d, size=%d bytes, build=%d ms}",
+        application, property, nodes, trigrams.length, sizeInBytes(), buildTime);
+  }
+
+  /** Growable list of primitive ids, used during the build */
+  private static class LongList {
+    private long[] values = new long[4];
+    private int size = 0;
+
+    private void add(long value) {
+      if (size == values.length) values = Arrays.copyOf(values, size * 2);
+      values[size++] = value;
+    }
+
+    private void sort() {
+      Arrays.sort(values, 0, size);
+    }
+
+    private int encodedSize() {
+      int bytes = 0;
+      long previous = 0L;
+      for (int i = 0; i < size; i++) {
+        long delta = values[i] - previous;
+        previous = values[i];
+        do {
+          bytes++;
+          delta >>>= 7;
+        } while (delta != 0);
+      }
+      return bytes;
+    }
+
+    private void encode(ByteBuffer buffer) {
+      long previous = 0L;
+      for (int i = 0; i < size; i++) {
+        long delta = values[i] - previous;
+        previous = values[i];
+        while ((delta & ~0x7FL) != 0) {
+          buffer.put((byte) ((delta & 0x7F) | 0x80));
+          delta >>>= 7;
+        }
+        buffer.put((byte) delta);
+      }
+    }
+  }
+}
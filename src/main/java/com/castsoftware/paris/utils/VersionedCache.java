@@ -0,0 +1,102 @@
+package com.castsoftware.paris.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Values bound to the version of the graph they were built on. A missing or outdated value is
+ * built by the first caller, outside of any lock : the other callers asking for the same key wait
+ * for that build instead of starting their own, and the callers of other keys are not blocked.
+ *
+ * @param <T> Type of the values
+ */
+public class VersionedCache<T> {
+
+  /** Value of a key, complete once built */
+  private static class Entry<T> {
+    private final long version;
+    private final CompletableFuture<T> value = new CompletableFuture<>();
+
+    private Entry(long version) {
+      this.version = version;
+    }
+  }
+
+  private final Map<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+  /**
+   * Get the value of a key, built if missing or older than a version. With an UNKNOWN version, the
+   * value is built and not kept.
+   *
+   * @param key Key of the value
+   * @param version Version of the graph, read before the build
+   * @param loader Build of the value, reading the committed state of the graph
+   * @return The value
+   */
+  public T get(String key, long version, Supplier<T> loader) {
+    if (version == GraphVersion.UNKNOWN) return loader.get();
+
+    while (true) {
+      Entry<T> current = entries.get(key);
+      if (current != null && current.version >= version) {
+        try {
+          return current.value.join();
+        } catch (CompletionException e) {
+          // The build of another caller failed and was removed, try again
+          continue;
+        }
+      }
+
+      Entry<T> mine = new Entry<>(version);
+      boolean owner =
+          current == null ? entries.putIfAbsent(key, mine) == null : entries.replace(key, current, mine);
+      if (!owner) continue;
+
+      try {
+        T value = loader.get();
+        mine.value.complete(value);
+        return value;
+      } catch (RuntimeException e) {
+        entries.remove(key, mine);
+        mine.value.completeExceptionally(e);
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Get the value of a key if it was built on a version at least as recent
+   *
+   * @param key Key of the value
+   * @param version Version of the graph
+   * @return The value, null if missing, outdated or still building
+   */
+  public T getIfPresent(String key, long version) {
+    Entry<T> current = entries.get(key);
+    if (version == GraphVersion.UNKNOWN || current == null || current.version < version) return null;
+    if (!current.value.isDone() || current.value.isCompletedExceptionally()) return null;
+    return current.value.join();
+  }
+
+  /**
+   * Drop the value of a key
+   *
+   * @param key Key of the value
+   */
+  public void invalidate(String key) {
+    entries.remove(key);
+  }
+
+  /**
+   * Drop the values of the keys matching a predicate
+   *
+   * @param predicate Predicate on the keys
+   */
+  public void invalidateIf(Predicate<String> predicate) {
+    entries.keySet().removeIf(predicate);
+  }
+}
@@ -157,6 +157,21 @@ public class Workspace {
     return dataFolder.resolve(Configuration.get("paris.install_data.paris_group_file"));
   }
 
+  /**
+   * Get the folder hosting the reports generated by Paris. The folder is created if missing.
+   *
+   * @param neo4jAL Neo4j Access Layer
+   * @return
+   */
+  public static Path getReportFolder(Neo4jAL neo4jAL) {
+    Path reportFolder =
+        getWorkspacePath(neo4jAL).resolve(Configuration.get("paris.reports.folder"));
+    for (String message : checkOrCreateFolder(reportFolder, "Report folder")) {
+      neo4jAL.logInfo(message);
+    }
+    return reportFolder;
+  }
+
   /**
    * Get the path  of the user configuration file
    * @param neo4jAL Neo4j Access Layer
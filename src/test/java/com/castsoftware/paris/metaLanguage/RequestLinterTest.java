@@ -0,0 +1,112 @@
+package com.castsoftware.paris.metaLanguage;
+
+import org.junit.Test;
+import org.neo4j.graphdb.ExecutionPlanDescription;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestLinterTest {
+
+	/** Operator of a plan built by hand */
+	private static class Operator implements ExecutionPlanDescription {
+		private final String name;
+		private final Map<String, Object> arguments = new HashMap<>();
+		private final List<ExecutionPlanDescription> children;
+
+		private Operator(String name, double estimatedRows, ExecutionPlanDescription... children) {
+			this.name = name;
+			this.arguments.put("EstimatedRows", estimatedRows);
+			this.children = Arrays.asList(children);
+		}
+
+		private Operator with(String argument, Object value) {
+			arguments.put(argument, value);
+			return this;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public List<ExecutionPlanDescription> getChildren() {
+			return children;
+		}
+
+		@Override
+		public Map<String, Object> getArguments() {
+			return arguments;
+		}
+
+		@Override
+		public Set<String> getIdentifiers() {
+			return Set.of("n");
+		}
+
+		@Override
+		public boolean hasProfilerStatistics() {
+			return false;
+		}
+
+		@Override
+		public ProfilerStatistics getProfilerStatistics() {
+			return null;
+		}
+	}
+
+	@Test
+	public void emptyPlanHasNoFinding() {
+		assertTrue(RequestLinter.lint(null).isEmpty());
+		assertTrue(RequestLinter.lint(new Operator("ProduceResults", 1, new Operator("NodeByLabelScan", 10))).isEmpty());
+	}
+
+	@Test
+	public void allNodesScanIsReported() {
+		List<RequestLinter.Finding> findings = RequestLinter.lint(new Operator("ProduceResults", 100, new Operator("AllNodesScan", 100)));
+
+		assertEquals(1, findings.size());
+		assertEquals("AllNodesScan", findings.get(0).operator);
+		assertEquals(RequestLinter.HIGH, findings.get(0).severity);
+		assertEquals(100L, findings.get(0).estimatedRows);
+	}
+
+	@Test
+	public void unboundedVariableLengthIsReported() {
+		assertEquals(1, RequestLinter.lint(new Operator("VarLengthExpand(All)", 10).with("ExpandExpression", "(a)-[*]->(b)")).size());
+		assertEquals(1, RequestLinter.lint(new Operator("VarLengthExpand(All)", 10).with("ExpandExpression", "(a)-[*1..]->(b)")).size());
+		assertTrue(RequestLinter.lint(new Operator("VarLengthExpand(All)", 10).with("ExpandExpression", "(a)-[*3]->(b)")).isEmpty());
+		assertTrue(RequestLinter.lint(new Operator("VarLengthExpand(All)", 10).with("ExpandExpression", "(a)-[*1..5]->(b)")).isEmpty());
+		assertTrue(RequestLinter.lint(new Operator("VarLengthExpand(All)", 10).with("Details", "(a)-[*..5]->(b)")).isEmpty());
+	}
+
+	@Test
+	public void substringFilterIsReported() {
+		List<RequestLinter.Finding> findings = RequestLinter.lint(new Operator("Filter", 10).with("Expression", "n.Name CONTAINS 'get'"));
+		assertEquals(1, findings.size());
+		assertEquals(RequestLinter.MEDIUM, findings.get(0).severity);
+
+		assertTrue(RequestLinter.lint(new Operator("Filter", 10).with("Expression", "n.Name STARTS WITH 'get'")).isEmpty());
+	}
+
+	@Test
+	public void findingsAreSortedBySeverityThenCost() {
+		ExecutionPlanDescription plan = new Operator("ProduceResults", 1,
+				new Operator("Filter", 5000, new Operator("NodeByLabelScan", 5000)).with("Expression", "n.Name ENDS WITH 'Dao'"),
+				new Operator("CartesianProduct", 50, new Operator("AllNodesScan", 1000)));
+
+		List<RequestLinter.Finding> findings = RequestLinter.lint(plan);
+		assertEquals(3, findings.size());
+		assertEquals("CartesianProduct", findings.get(0).operator);
+		assertEquals(1050.0, findings.get(0).estimatedCost, 0.0);
+		assertEquals("AllNodesScan", findings.get(1).operator);
+		assertEquals("Filter", findings.get(2).operator);
+	}
+}
@@ -0,0 +1,74 @@
+package com.castsoftware.paris.metaLanguage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestNormalizerTest {
+
+	@Test
+	public void layoutAndKeywordCaseAreIgnored() {
+		assertEquals(RequestNormalizer.normalize("MATCH (n:Object) RETURN n"),
+				RequestNormalizer.normalize("match   (n:Object)\n\treturn n ;"));
+	}
+
+	@Test
+	public void commentsAreRemoved() {
+		String expected = RequestNormalizer.normalize("MATCH (n) RETURN n");
+		assertEquals(expected, RequestNormalizer.normalize("MATCH (n) // All the nodes\nRETURN n"));
+		assertEquals(expected, RequestNormalizer.normalize("MATCH /* All the nodes */ (n) RETURN n"));
+	}
+
+	@Test
+	public void namesAreCaseSensitive() {
+		assertEquals("MATCH(n:match)", RequestNormalizer.normalize("match (n:match)"));
+		assertNotEquals(RequestNormalizer.normalize("MATCH (n) RETURN n.Name"),
+				RequestNormalizer.normalize("MATCH (n) RETURN n.name"));
+	}
+
+	@Test
+	public void parametersAreCaseSensitive() {
+		assertEquals("MATCH(n)RETURN n SKIP $skip LIMIT $limit",
+				RequestNormalizer.normalize("match (n) return n skip $skip limit $limit"));
+		assertEquals("WHERE n.Name CONTAINS $contains AND n.Size<$end",
+				RequestNormalizer.normalize("where n.Name contains $contains and n.Size < $end"));
+		assertNotEquals(RequestNormalizer.normalize("RETURN $limit"), RequestNormalizer.normalize("RETURN $LIMIT"));
+	}
+
+	@Test
+	public void relationshipTypeAlternativesAreCaseSensitive() {
+		assertEquals("MATCH(a)-[:CALL|IN|in]->(b)", RequestNormalizer.normalize("match (a)-[:CALL|IN|in]->(b)"));
+		assertNotEquals(RequestNormalizer.normalize("MATCH (a)-[:CALL|in]->(b)"),
+				RequestNormalizer.normalize("MATCH (a)-[:CALL|IN]->(b)"));
+	}
+
+	@Test
+	public void literalsAreKeptUntouched() {
+		String normalized = RequestNormalizer.normalize("RETURN 'A  b // c', `my  where`");
+		assertTrue(normalized.contains("'A  b // c'"));
+		assertTrue(normalized.contains("`my  where`"));
+		assertNotEquals(normalized, RequestNormalizer.normalize("RETURN 'a  b // c', `my  where`"));
+	}
+
+	@Test
+	public void nullRequestIsEmpty() {
+		assertEquals("", RequestNormalizer.normalize(null));
+		assertEquals("", RequestNormalizer.stripTerminator(null));
+	}
+
+	@Test
+	public void terminatorIsStripped() {
+		assertEquals("MATCH (n) RETURN n", RequestNormalizer.stripTerminator("MATCH (n) RETURN n ;; \n"));
+	}
+
+	@Test
+	public void hashFollowsTheNormalizedParts() {
+		String hash = RequestNormalizer.hash("MATCH (n) RETURN n", "n");
+		assertEquals(64, hash.length());
+		assertEquals(hash, RequestNormalizer.hash("match (n)\nreturn n;", "n"));
+		assertNotEquals(hash, RequestNormalizer.hash("MATCH (n) RETURN n", "m"));
+		assertNotEquals(RequestNormalizer.hash("a", "b"), RequestNormalizer.hash("ab"));
+	}
+}
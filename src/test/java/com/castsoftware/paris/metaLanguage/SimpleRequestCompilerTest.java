@@ -0,0 +1,123 @@
+package com.castsoftware.paris.metaLanguage;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SimpleRequestCompilerTest {
+
+	/** Node held in memory */
+	private static class MapRow implements SimpleRequestCompiler.Row {
+		private final Set<String> labels;
+		private final Map<String, Object> values = new HashMap<>();
+
+		private MapRow(String... labels) {
+			this.labels = Set.of(labels);
+		}
+
+		private MapRow with(String key, Object value) {
+			values.put(key, value);
+			return this;
+		}
+
+		@Override
+		public Object getProperty(String key) {
+			return values.get(key);
+		}
+
+		@Override
+		public boolean hasLabel(String label) {
+			return labels.contains(label);
+		}
+	}
+
+	private static SimpleRequestCompiler.SimpleRequest compile(String where) {
+		SimpleRequestCompiler.SimpleRequest request = SimpleRequestCompiler.compile("MATCH (o:Object) WHERE " + where + " RETURN o AS val", "val");
+		assertNotNull(where, request);
+		return request;
+	}
+
+	@Test
+	public void simpleRequestIsCompiled() {
+		SimpleRequestCompiler.SimpleRequest request = SimpleRequestCompiler.compile(
+				"match (o:Object:`My App`) where o.Type = 'C# Class' and o.Name contains 'Controller' return distinct o as val;", "val");
+
+		assertNotNull(request);
+		assertEquals(List.of("Object", "My App"), request.getLabels());
+		assertEquals(Set.of("Type", "Name"), request.getProperties());
+		assertTrue(request.matches(new MapRow("Object", "My App").with("Type", "C# Class").with("Name", "UserController")));
+		assertFalse(request.matches(new MapRow("Object").with("Type", "C# Class").with("Name", "UserController")));
+		assertFalse(request.matches(new MapRow("Object", "My App").with("Type", "C# Class").with("Name", "UserService")));
+	}
+
+	@Test
+	public void otherRequestsAreNotCompiled() {
+		assertNull(SimpleRequestCompiler.compile(null, "val"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o) RETURN o", "o"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object)-[:CALL]->(p:Object) RETURN o", "o"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object) WHERE o.Name = $name RETURN o", "o"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object) WHERE o.Name = p.Name RETURN o", "o"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object) RETURN o.Name", "o"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object) RETURN o AS val", "other"));
+		assertNull(SimpleRequestCompiler.compile("MATCH (o:Object) WHERE o.Name =~ '[' RETURN o", "o"));
+	}
+
+	@Test
+	public void nullValuesAreUnknown() {
+		MapRow noName = new MapRow("Object").with("Type", "A");
+
+		assertFalse(compile("o.Name CONTAINS 'x'").matches(noName));
+		assertFalse(compile("NOT o.Name CONTAINS 'x'").matches(noName));
+		assertFalse(compile("o.Name <> 'x'").matches(noName));
+		assertTrue(compile("o.Name CONTAINS 'x' OR o.Type = 'A'").matches(noName));
+		assertFalse(compile("o.Name CONTAINS 'x' AND o.Type = 'A'").matches(noName));
+		assertTrue(compile("o.Name IS NULL").matches(noName));
+		assertFalse(compile("o.Name IS NOT NULL").matches(noName));
+		assertTrue(compile("exists(o.Type)").matches(noName));
+	}
+
+	@Test
+	public void stringPredicatesAreEvaluated() {
+		MapRow row = new MapRow("Object").with("Name", "UserDao");
+
+		assertTrue(compile("o.Name STARTS WITH 'User'").matches(row));
+		assertTrue(compile("o.Name ENDS WITH 'Dao'").matches(row));
+		assertTrue(compile("o.Name =~ '.*Dao'").matches(row));
+		assertFalse(compile("o.Name =~ 'Dao'").matches(row));
+		assertTrue(compile("o.Name IN ['UserDao', 'OrderDao']").matches(row));
+		assertFalse(compile("o.Name IN []").matches(row));
+		assertTrue(compile("o.Name >= 'User' AND o.Name < 'V'").matches(row));
+	}
+
+	@Test
+	public void numbersAreComparedAcrossTypes() {
+		MapRow row = new MapRow("Object").with("Size", 10).with("Ratio", 0.25);
+
+		assertTrue(compile("o.Size = 10").matches(row));
+		assertTrue(compile("o.Size = 10.0").matches(row));
+		assertTrue(compile("o.Size >= 10 AND o.Size > -1").matches(row));
+		assertFalse(compile("o.Size < 10").matches(row));
+		assertTrue(compile("o.Ratio < 0.5").matches(row));
+		assertFalse(compile("o.Size = '10'").matches(row));
+	}
+
+	@Test
+	public void labelsAndListsAreChecked() {
+		MapRow row = new MapRow("Object", "Interface").with("Tags", new String[] {"Dao", "Legacy"});
+
+		assertTrue(compile("o:Interface").matches(row));
+		assertFalse(compile("NOT o:Interface").matches(row));
+		assertTrue(compile("'Legacy' IN o.Tags").matches(row));
+		assertFalse(compile("'Service' IN o.Tags").matches(row));
+		assertTrue(compile("(o:Class OR 'Dao' IN o.Tags) AND NOT exists(o.Name)").matches(row));
+	}
+}
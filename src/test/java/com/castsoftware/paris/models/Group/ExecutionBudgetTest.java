@@ -0,0 +1,103 @@
+package com.castsoftware.paris.models.Group;
+
+import com.castsoftware.paris.configuration.Configuration;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExecutionBudgetTest {
+
+  @Test
+  public void rowsAreCappedByTheLimit() {
+    ExecutionBudget.Execution execution = new ExecutionBudget(-1L, 2L, -1L).start();
+
+    assertTrue(execution.next(0L));
+    assertTrue(execution.next(0L));
+    assertFalse(execution.next(0L));
+    assertEquals(2L, execution.getRows());
+    assertEquals(ExecutionBudget.TRUNCATED, execution.getStatus());
+  }
+
+  @Test
+  public void memoryIsCappedByTheLimit() {
+    ExecutionBudget.Execution execution = new ExecutionBudget(-1L, -1L, 100L).start();
+
+    assertTrue(execution.next(100L));
+    assertFalse(execution.next(101L));
+    assertEquals(1L, execution.getRows());
+    assertEquals(ExecutionBudget.TRUNCATED, execution.getStatus());
+  }
+
+  @Test
+  public void disabledLimitsNeverStopTheExecution() {
+    ExecutionBudget budget = new ExecutionBudget(0L, -1L, -1L);
+    ExecutionBudget.Execution execution = budget.start();
+
+    for (int i = 0; i < 10_000; i++) assertTrue(execution.next(Long.MAX_VALUE));
+    assertTrue(execution.isOk());
+    assertFalse(budget.isExpired(0L));
+    assertFalse(execution.checkExpired());
+  }
+
+  @Test
+  public void countedRowsAreCappedByTheLimit() {
+    ExecutionBudget budget = new ExecutionBudget(-1L, 10L, -1L);
+
+    ExecutionBudget.Execution under = budget.start();
+    under.count(10L);
+    assertEquals(10L, under.getRows());
+    assertTrue(under.isOk());
+
+    ExecutionBudget.Execution over = budget.start();
+    over.count(11L);
+    assertEquals(10L, over.getRows());
+    assertEquals(ExecutionBudget.TRUNCATED, over.getStatus());
+  }
+
+  @Test
+  public void processedRowsAreNotCapped() {
+    ExecutionBudget.Execution execution = new ExecutionBudget(-1L, 10L, -1L).start();
+
+    execution.addRows(50L);
+    execution.addRows(5L);
+    assertEquals(55L, execution.getRows());
+    assertTrue(execution.isOk());
+  }
+
+  @Test
+  public void timeoutIsMeasuredFromTheStart() {
+    ExecutionBudget budget = new ExecutionBudget(1_000L, -1L, -1L);
+
+    assertTrue(budget.isExpired(System.currentTimeMillis() - 1_000L));
+    assertFalse(budget.isExpired(System.currentTimeMillis()));
+  }
+
+  @Test
+  public void expiredExecutionIsTimedOut() throws InterruptedException {
+    ExecutionBudget.Execution execution = new ExecutionBudget(1L, -1L, -1L).start();
+    Thread.sleep(5L);
+
+    assertFalse(execution.next(0L));
+    assertTrue(execution.isTimedOut());
+    assertTrue(execution.checkExpired());
+  }
+
+  @Test
+  public void defaultLimitsCanBeOverridden() {
+    long timeout = Long.parseLong(Configuration.get("paris.budget.timeout_ms"));
+    long maxRows = Long.parseLong(Configuration.get("paris.budget.max_rows"));
+    long maxMemory = Long.parseLong(Configuration.get("paris.budget.max_memory_mb")) * 1024 * 1024;
+
+    ExecutionBudget def = ExecutionBudget.getDefault();
+    assertEquals(timeout, def.getTimeoutMs());
+    assertEquals(maxRows, def.getMaxRows());
+    assertEquals(maxMemory, def.getMaxMemoryBytes());
+
+    ExecutionBudget custom = ExecutionBudget.getDefault(10L, -1L);
+    assertEquals(10L, custom.getTimeoutMs());
+    assertEquals(maxRows, custom.getMaxRows());
+    assertEquals(maxMemory, custom.getMaxMemoryBytes());
+  }
+}
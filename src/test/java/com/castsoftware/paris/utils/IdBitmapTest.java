@@ -0,0 +1,75 @@
+package com.castsoftware.paris.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IdBitmapTest {
+
+  private static long[] sorted(IdBitmap bitmap) {
+    long[] ids = bitmap.toArray();
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  @Test
+  public void addAndRemoveKeepTheCardinality() {
+    IdBitmap bitmap = new IdBitmap();
+    assertTrue(bitmap.isEmpty());
+
+    assertTrue(bitmap.add(5L));
+    assertFalse(bitmap.add(5L));
+    assertTrue(bitmap.add(4096L));
+    assertTrue(bitmap.add(1L << 40));
+    assertEquals(3L, bitmap.size());
+
+    assertTrue(bitmap.contains(4096L));
+    assertFalse(bitmap.contains(4097L));
+
+    assertTrue(bitmap.remove(4096L));
+    assertFalse(bitmap.remove(4096L));
+    assertEquals(2L, bitmap.size());
+    assertFalse(bitmap.contains(4096L));
+  }
+
+  @Test
+  public void toArrayReturnsEveryId() {
+    IdBitmap bitmap = IdBitmap.of(0L, 63L, 64L, 4095L, 4096L, 100_000L);
+    assertArrayEquals(new long[] {0L, 63L, 64L, 4095L, 4096L, 100_000L}, sorted(bitmap));
+  }
+
+  @Test
+  public void andNotKeepsTheIdsMissingFromTheOther() {
+    IdBitmap left = IdBitmap.of(1L, 2L, 3L, 5000L, 9000L);
+    IdBitmap right = IdBitmap.of(2L, 5000L, 7L);
+
+    IdBitmap diff = left.andNot(right);
+    assertArrayEquals(new long[] {1L, 3L, 9000L}, sorted(diff));
+    assertEquals(3L, diff.size());
+    assertTrue(IdBitmap.of(1L).andNot(IdBitmap.of(1L)).isEmpty());
+  }
+
+  @Test
+  public void bytesRoundTrip() {
+    IdBitmap bitmap = IdBitmap.of(0L, 1L, 64L, 4096L, 8191L, 1L << 33);
+    IdBitmap copy = IdBitmap.fromBytes(bitmap.toBytes());
+
+    assertEquals(bitmap.size(), copy.size());
+    assertArrayEquals(sorted(bitmap), sorted(copy));
+  }
+
+  @Test
+  public void emptyBitmapsSerializeToNothing() {
+    IdBitmap bitmap = IdBitmap.of(12L);
+    bitmap.remove(12L);
+
+    assertEquals(0, bitmap.toBytes().length);
+    assertTrue(IdBitmap.fromBytes(bitmap.toBytes()).isEmpty());
+    assertTrue(IdBitmap.fromBytes(null).isEmpty());
+  }
+}
@@ -0,0 +1,117 @@
+package com.castsoftware.paris.utils;
+
+import com.castsoftware.paris.database.Neo4jAL;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.neo4j.logging.NullLog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+public class TrigramIndexTest {
+
+  private static final String APPLICATION = "TrigramApp";
+  private static final String PROPERTY = "Name";
+
+  private static Neo4j neo4j;
+  private static GraphDatabaseService db;
+  private static final Map<String, Long> IDS = new HashMap<>();
+
+  @BeforeClass
+  public static void setUp() {
+    neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+    db = neo4j.defaultDatabaseService();
+
+    try (Transaction tx = db.beginTx()) {
+      for (String name : new String[] {"getUserById", "setUser", "getOrder", "ab", "abcXbcd"}) {
+        IDS.put(name, createObject(tx, APPLICATION, name).getId());
+      }
+      // Not indexed : not an object, another application, not a string
+      tx.createNode(Label.label(APPLICATION)).setProperty(PROPERTY, "getUser");
+      createObject(tx, "OtherApp", "getUser");
+      tx.createNode(Label.label(APPLICATION), Label.label("Object")).setProperty(PROPERTY, 42L);
+      tx.commit();
+    }
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    neo4j.close();
+  }
+
+  private static Node createObject(Transaction tx, String application, String name) {
+    Node node = tx.createNode(Label.label(application), Label.label("Object"));
+    node.setProperty(PROPERTY, name);
+    return node;
+  }
+
+  private static long[] ids(String... names) {
+    return Arrays.stream(names).mapToLong(IDS::get).sorted().toArray();
+  }
+
+  private static TrigramIndex getIndex(String application) throws Exception {
+    try (Transaction tx = db.beginTx()) {
+      return TrigramIndex.getInstance(new Neo4jAL(db, tx, NullLog.getInstance()), application, PROPERTY);
+    }
+  }
+
+  @Test
+  public void onlyTheStringsOfTheObjectsAreIndexed() throws Exception {
+    TrigramIndex index = getIndex(APPLICATION);
+
+    assertEquals(5, index.getNodes());
+    assertArrayEquals(ids("getUserById", "setUser"), index.getCandidates("User"));
+  }
+
+  @Test
+  public void shortSubstringsReturnAllTheNodes() throws Exception {
+    TrigramIndex index = getIndex(APPLICATION);
+
+    assertArrayEquals(ids("getUserById", "setUser", "getOrder", "ab", "abcXbcd"), index.getCandidates("ge"));
+    assertEquals(0, index.getCandidates(null).length);
+  }
+
+  @Test
+  public void missingTrigramsReturnNothing() throws Exception {
+    assertEquals(0, getIndex(APPLICATION).getCandidates("xyz").length);
+  }
+
+  @Test
+  public void candidatesAreASupersetOfTheMatches() throws Exception {
+    // Holds the trigrams of "abcd", not the substring
+    assertArrayEquals(ids("abcXbcd"), getIndex(APPLICATION).getCandidates("abcd"));
+  }
+
+  @Test
+  public void indexIsRebuiltOnceTheApplicationChanged() throws Exception {
+    String application = "TrigramChangedApp";
+    try (Transaction tx = db.beginTx()) {
+      createObject(tx, application, "findAll");
+      tx.commit();
+    }
+    TrigramIndex before = getIndex(application);
+    assertEquals(1, before.getNodes());
+
+    long id;
+    try (Transaction tx = db.beginTx()) {
+      id = createObject(tx, application, "findAllUsers").getId();
+      tx.commit();
+    }
+    TrigramIndex after = getIndex(application);
+    assertNotSame(before, after);
+    assertEquals(2, after.getNodes());
+    assertArrayEquals(new long[] {id}, after.getCandidates("Users"));
+  }
+}